@@ -31,6 +31,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.jackson.JsonSnakeCase;
 import java.util.Objects;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.hibernate.validator.constraints.NotEmpty;
 
@@ -41,7 +42,7 @@ public final class Id {
 
   private final long id;
 
-  @NotEmpty private final String idStr;
+  @Nullable private final String idStr;
 
   /**
    * Constructor
@@ -56,13 +57,13 @@ public final class Id {
   }
 
   /**
-   * Constructor
+   * Constructor. The string form of the ID is only built if it is asked for.
    *
    * @param id Generated ID
    */
   public Id(final long id) {
     this.id = id;
-    this.idStr = String.valueOf(id);
+    this.idStr = null;
   }
 
   /**
@@ -80,8 +81,12 @@ public final class Id {
    *
    * @return the ID as a string value
    */
+  @NotEmpty
   @JsonProperty("id_str")
   public String getIdAsString() {
+    if (idStr == null) {
+      return String.valueOf(id);
+    }
     return idStr;
   }
 
@@ -105,6 +110,6 @@ public final class Id {
 
   @Override
   public String toString() {
-    return "Id{id=" + id + ", idStr=" + idStr + "}";
+    return "Id{id=" + id + ", idStr=" + getIdAsString() + "}";
   }
 }
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.api;
+
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.IdRange;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
+import com.smoketurner.snowizard.common.IdLayout;
+import java.util.stream.LongStream;
+
+/** How the IDs in a {@link SnowizardResponse} are encoded. */
+public enum IdEncoding {
+
+  /** Varints in the {@code id} field, about 9 bytes per ID */
+  VARINT,
+
+  /** 8-byte values in the {@code fixed_id} field, which are the cheapest to encode and decode */
+  FIXED64,
+
+  /**
+   * The first ID followed by the difference from each ID to the one before it in the {@code
+   * delta_id} field. IDs generated together differ by very little, so after the first each one
+   * usually takes a single byte.
+   */
+  DELTA,
+
+  /**
+   * Runs of consecutive IDs generated in the same millisecond in the {@code range} field. A batch
+   * usually takes a few runs, however many IDs it holds, and clients expand them locally.
+   */
+  RANGES;
+
+  /**
+   * Return the IDs in a response, whichever encoding it uses
+   *
+   * @param response Response to decode
+   * @return the IDs in the response
+   */
+  public static long[] decode(final SnowizardResponse response) {
+    if (response.getRangeCount() > 0) {
+      return stream(response).toArray();
+    }
+
+    if (response.getFixedIdCount() > 0) {
+      final long[] ids = new long[response.getFixedIdCount()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = response.getFixedId(i);
+      }
+      return ids;
+    }
+
+    if (response.getDeltaIdCount() > 0) {
+      final long[] ids = new long[response.getDeltaIdCount()];
+      long previous = 0L;
+      for (int i = 0; i < ids.length; i++) {
+        previous += response.getDeltaId(i);
+        ids[i] = previous;
+      }
+      return ids;
+    }
+
+    final long[] ids = new long[response.getIdCount()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = response.getId(i);
+    }
+    return ids;
+  }
+
+  /**
+   * Return the IDs in a response, whichever encoding it uses. Ranges are expanded lazily as the
+   * stream is consumed.
+   *
+   * @param response Response to decode
+   * @return the IDs in the response
+   */
+  public static LongStream stream(final SnowizardResponse response) {
+    if (response.getRangeCount() > 0) {
+      return response.getRangeList().stream().flatMapToLong(IdEncoding::expand);
+    }
+    return LongStream.of(decode(response));
+  }
+
+  /**
+   * Return the IDs in a range
+   *
+   * @param range Range of IDs
+   * @return the IDs in the range, in order
+   */
+  public static LongStream expand(final IdRange range) {
+    final long first =
+        IdLayout.compose(
+            range.getTimestamp(),
+            range.getDatacenterId(),
+            range.getWorkerId(),
+            range.getFirstSequence());
+    final long last = first + range.getLastSequence() - range.getFirstSequence();
+    return LongStream.rangeClosed(first, last);
+  }
+}
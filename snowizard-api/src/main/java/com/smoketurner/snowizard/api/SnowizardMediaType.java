@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.api;
+
+/** Media types used by Snowizard beyond the ones provided by JAX-RS and Dropwizard. */
+public final class SnowizardMediaType {
+
+  /** A stream of varint length-delimited {@code SnowizardResponse} messages */
+  public static final String APPLICATION_PROTOBUF_DELIMITED = "application/x-protobuf-delimited";
+
+  /** Concise Binary Object Representation (RFC 7049) */
+  public static final String APPLICATION_CBOR = "application/cbor";
+
+  /** Jackson's binary JSON format */
+  public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+  /** MessagePack */
+  public static final String APPLICATION_MSGPACK = "application/x-msgpack";
+
+  private SnowizardMediaType() {}
+}
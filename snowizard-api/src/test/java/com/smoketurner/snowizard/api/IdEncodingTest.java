@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.IdRange;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
+import com.smoketurner.snowizard.common.IdLayout;
+import org.junit.Test;
+
+public class IdEncodingTest {
+
+  private static final long FIRST = 1158010981449748480L;
+
+  @Test
+  public void testDecodeVarint() {
+    final SnowizardResponse response =
+        SnowizardResponse.newBuilder().addId(FIRST).addId(FIRST + 1).build();
+    assertThat(IdEncoding.decode(response)).containsExactly(FIRST, FIRST + 1);
+  }
+
+  @Test
+  public void testDecodeFixed64() {
+    final SnowizardResponse response =
+        SnowizardResponse.newBuilder().addFixedId(FIRST).addFixedId(FIRST + 1).build();
+    assertThat(IdEncoding.decode(response)).containsExactly(FIRST, FIRST + 1);
+  }
+
+  @Test
+  public void testDecodeDelta() {
+    final SnowizardResponse response =
+        SnowizardResponse.newBuilder().addDeltaId(FIRST).addDeltaId(1L).addDeltaId(4L).build();
+    assertThat(IdEncoding.decode(response)).containsExactly(FIRST, FIRST + 1, FIRST + 5);
+  }
+
+  @Test
+  public void testDecodeRanges() {
+    final long timestamp = IdLayout.TWEPOCH + 1000L;
+    final SnowizardResponse response =
+        SnowizardResponse.newBuilder()
+            .addRange(
+                IdRange.newBuilder()
+                    .setTimestamp(timestamp)
+                    .setDatacenterId(1)
+                    .setWorkerId(2)
+                    .setFirstSequence(4094)
+                    .setLastSequence(4095))
+            .addRange(
+                IdRange.newBuilder()
+                    .setTimestamp(timestamp + 1)
+                    .setDatacenterId(1)
+                    .setWorkerId(2)
+                    .setFirstSequence(0)
+                    .setLastSequence(0))
+            .build();
+
+    assertThat(IdEncoding.decode(response))
+        .containsExactly(
+            IdLayout.compose(timestamp, 1, 2, 4094),
+            IdLayout.compose(timestamp, 1, 2, 4095),
+            IdLayout.compose(timestamp + 1, 1, 2, 0));
+    assertThat(IdEncoding.stream(response).limit(1).toArray())
+        .containsExactly(IdLayout.compose(timestamp, 1, 2, 4094));
+  }
+
+  @Test
+  public void testDecodeEmpty() {
+    assertThat(IdEncoding.decode(SnowizardResponse.getDefaultInstance())).isEmpty();
+  }
+
+  @Test
+  public void testDeltaIsSmaller() {
+    final SnowizardResponse.Builder varint = SnowizardResponse.newBuilder();
+    final SnowizardResponse.Builder delta = SnowizardResponse.newBuilder().addDeltaId(FIRST);
+    varint.addId(FIRST);
+    for (int i = 1; i < 1000; i++) {
+      varint.addId(FIRST + i);
+      delta.addDeltaId(1L);
+    }
+    assertThat(delta.build().getSerializedSize() * 5)
+        .isLessThan(varint.build().getSerializedSize());
+  }
+}
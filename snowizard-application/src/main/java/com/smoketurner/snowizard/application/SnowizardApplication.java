@@ -32,17 +32,38 @@ import com.smoketurner.dropwizard.zipkin.ZipkinBundle;
 import com.smoketurner.dropwizard.zipkin.ZipkinFactory;
 import com.smoketurner.snowizard.application.config.SnowizardConfiguration;
 import com.smoketurner.snowizard.application.exceptions.SnowizardExceptionMapper;
-import com.smoketurner.snowizard.application.health.EmptyHealthCheck;
+import com.smoketurner.snowizard.application.filters.ConcurrencyLimitFilter;
+import com.smoketurner.snowizard.application.filters.HeadroomFilter;
+import com.smoketurner.snowizard.application.health.ClockHealthCheck;
+import com.smoketurner.snowizard.application.health.SaturationHealthCheck;
+import com.smoketurner.snowizard.application.providers.CborIdWriter;
+import com.smoketurner.snowizard.application.providers.JsonIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.JsonIdWriter;
+import com.smoketurner.snowizard.application.providers.MessagePackIdWriter;
+import com.smoketurner.snowizard.application.providers.ProtobufIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.SmileIdWriter;
+import com.smoketurner.snowizard.application.providers.TextIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.TextIdWriter;
+import com.smoketurner.snowizard.application.resources.CoalescingIdResource;
+import com.smoketurner.snowizard.application.resources.IdEventResource;
 import com.smoketurner.snowizard.application.resources.IdResource;
 import com.smoketurner.snowizard.application.resources.PingResource;
 import com.smoketurner.snowizard.application.resources.VersionResource;
+import com.smoketurner.snowizard.application.streaming.IdRingFeeder;
+import com.smoketurner.snowizard.core.IdCoalescer;
 import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
 import io.dropwizard.Application;
 import io.dropwizard.configuration.EnvironmentVariableSubstitutor;
 import io.dropwizard.configuration.SubstitutingSourceProvider;
 import io.dropwizard.jersey.protobuf.ProtobufBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import org.glassfish.jersey.media.sse.SseFeature;
 
 public class SnowizardApplication extends Application<SnowizardConfiguration> {
 
@@ -82,11 +103,21 @@ public class SnowizardApplication extends Application<SnowizardConfiguration> {
     config.getZipkin().build(environment);
 
     environment.jersey().register(SnowizardExceptionMapper.class);
+    environment.jersey().register(ProtobufIdBatchWriter.class);
+    environment.jersey().register(JsonIdWriter.class);
+    environment.jersey().register(JsonIdBatchWriter.class);
+    environment.jersey().register(TextIdWriter.class);
+    environment.jersey().register(TextIdBatchWriter.class);
+    environment.jersey().register(CborIdWriter.class);
+    environment.jersey().register(SmileIdWriter.class);
+    environment.jersey().register(MessagePackIdWriter.class);
 
     final IdWorker worker =
         IdWorker.builder(config.getWorkerId(), config.getDatacenterId())
             .withMetricRegistry(environment.metrics())
             .withValidateUserAgent(config.validateUserAgent())
+            .withReservedSequence(config.getReservedSequence())
+            .withHighPriorityAgents(config.getHighPriorityAgents())
             .build();
 
     environment
@@ -101,12 +132,107 @@ public class SnowizardApplication extends Application<SnowizardConfiguration> {
             MetricRegistry.name(SnowizardApplication.class, "datacenter_id"),
             (Gauge<Integer>) config::getDatacenterId);
 
-    // health check
-    environment.healthChecks().register("empty", new EmptyHealthCheck());
+    environment
+        .metrics()
+        .register(
+            MetricRegistry.name(SnowizardApplication.class, "headroom"),
+            (Gauge<Double>) worker::getHeadroom);
+
+    environment.jersey().register(new HeadroomFilter(worker, config.getHeadroomThreshold()));
+
+    if (config.getConcurrencyLimit().isEnabled()) {
+      final AdaptiveConcurrencyLimiter limiter = config.getConcurrencyLimit().build();
+      environment.jersey().register(new ConcurrencyLimitFilter(limiter));
+
+      environment
+          .metrics()
+          .register(
+              MetricRegistry.name(ConcurrencyLimitFilter.class, "limit"),
+              (Gauge<Integer>) limiter::getLimit);
+
+      environment
+          .metrics()
+          .register(
+              MetricRegistry.name(ConcurrencyLimitFilter.class, "inflight"),
+              (Gauge<Integer>) limiter::getInflight);
+    }
+
+    // health checks
+    environment
+        .healthChecks()
+        .register("clock", new ClockHealthCheck(worker, config.getMaxClockDrift()));
+    environment
+        .healthChecks()
+        .register("saturation", new SaturationHealthCheck(worker, config.getMaxSaturation()));
+
+    IdCoalescer coalescer = null;
+    if (config.getCoalescing().isEnabled()) {
+      final ScheduledExecutorService scheduler =
+          environment.lifecycle().scheduledExecutorService("id-coalescer-%d").threads(1).build();
+      coalescer = config.getCoalescing().build(worker, scheduler, environment.metrics());
+      environment
+          .metrics()
+          .register(
+              MetricRegistry.name(IdCoalescer.class, "pending"),
+              (Gauge<Integer>) coalescer::getPending);
+    }
+
+    if (config.getIpc().isEnabled()) {
+      final ScheduledExecutorService scheduler =
+          environment.lifecycle().scheduledExecutorService("id-rings-%d").threads(1).build();
+      final IdRingFeeder feeder = config.getIpc().build(worker, scheduler, environment.metrics());
+      environment.lifecycle().manage(feeder);
+    }
 
     // resources
-    environment.jersey().register(new IdResource(worker));
+    final AgentRateLimiter rateLimiter = config.getRateLimit().build();
+    final ExecutorService publishers =
+        environment
+            .lifecycle()
+            .executorService("id-events-%d")
+            .minThreads(0)
+            .maxThreads(config.getMaxSubscribers())
+            .workQueue(new SynchronousQueue<>())
+            .build();
+    environment.jersey().register(SseFeature.class);
+    if (coalescer != null) {
+      environment
+          .jersey()
+          .register(
+              new CoalescingIdResource(
+                  worker,
+                  rateLimiter,
+                  config.getMaxCount(),
+                  config.getMaxStreamCount(),
+                  coalescer));
+    } else {
+      environment
+          .jersey()
+          .register(
+              new IdResource(
+                  worker, rateLimiter, config.getMaxCount(), config.getMaxStreamCount()));
+    }
+    environment
+        .jersey()
+        .register(new IdEventResource(worker, rateLimiter, publishers, config.getMaxCount()));
     environment.jersey().register(new PingResource());
     environment.jersey().register(new VersionResource());
+
+    // gRPC shares the worker and rate limits, but sheds load independently of the REST endpoints
+    if (config.getGrpc().isEnabled()) {
+      final AdaptiveConcurrencyLimiter grpcLimiter =
+          config.getConcurrencyLimit().isEnabled() ? config.getConcurrencyLimit().build() : null;
+      environment
+          .lifecycle()
+          .manage(
+              config
+                  .getGrpc()
+                  .build(
+                      worker,
+                      rateLimiter,
+                      config.getHeadroomThreshold(),
+                      grpcLimiter,
+                      environment.metrics()));
+    }
   }
 }
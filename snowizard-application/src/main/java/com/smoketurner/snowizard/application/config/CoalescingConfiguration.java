@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.snowizard.core.IdCoalescer;
+import com.smoketurner.snowizard.core.IdWorker;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MaxDuration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class CoalescingConfiguration {
+
+  private boolean enabled = false;
+
+  @Min(1)
+  @Max(4096)
+  private int maxBatch = 64;
+
+  @NotNull
+  @MaxDuration(value = 10, unit = TimeUnit.MILLISECONDS)
+  private Duration maxDelay = Duration.microseconds(100);
+
+  @JsonProperty
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @JsonProperty
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @JsonProperty("max_batch")
+  public int getMaxBatch() {
+    return maxBatch;
+  }
+
+  @JsonProperty("max_batch")
+  public void setMaxBatch(final int maxBatch) {
+    this.maxBatch = maxBatch;
+  }
+
+  @JsonProperty("max_delay")
+  public Duration getMaxDelay() {
+    return maxDelay;
+  }
+
+  @JsonProperty("max_delay")
+  public void setMaxDelay(final Duration maxDelay) {
+    this.maxDelay = maxDelay;
+  }
+
+  /**
+   * Build a new {@link IdCoalescer}
+   *
+   * @param worker ID worker
+   * @param scheduler Executor which closes each coalescing window
+   * @param registry Metric registry
+   * @return new IdCoalescer
+   */
+  public IdCoalescer build(
+      final IdWorker worker,
+      final ScheduledExecutorService scheduler,
+      final MetricRegistry registry) {
+    return new IdCoalescer(
+        worker, scheduler, maxBatch, maxDelay.getQuantity(), maxDelay.getUnit(), registry);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import javax.validation.constraints.Min;
+
+public class ConcurrencyLimitConfiguration {
+
+  private boolean enabled = false;
+
+  @Min(1)
+  private int initialLimit = 20;
+
+  @Min(1)
+  private int minLimit = 4;
+
+  @Min(1)
+  private int maxLimit = 1000;
+
+  @JsonProperty
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @JsonProperty
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @JsonProperty("initial_limit")
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  @JsonProperty("initial_limit")
+  public void setInitialLimit(final int initialLimit) {
+    this.initialLimit = initialLimit;
+  }
+
+  @JsonProperty("min_limit")
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  @JsonProperty("min_limit")
+  public void setMinLimit(final int minLimit) {
+    this.minLimit = minLimit;
+  }
+
+  @JsonProperty("max_limit")
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  @JsonProperty("max_limit")
+  public void setMaxLimit(final int maxLimit) {
+    this.maxLimit = maxLimit;
+  }
+
+  /**
+   * Build a new {@link AdaptiveConcurrencyLimiter}
+   *
+   * @return new AdaptiveConcurrencyLimiter
+   */
+  public AdaptiveConcurrencyLimiter build() {
+    return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit);
+  }
+}
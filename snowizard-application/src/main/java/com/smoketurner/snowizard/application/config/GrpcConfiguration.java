@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.snowizard.application.grpc.ManagedGrpcServer;
+import com.smoketurner.snowizard.application.grpc.MetricsInterceptor;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.grpc.SnowizardServer;
+import com.smoketurner.snowizard.grpc.util.Netty;
+import com.smoketurner.snowizard.grpc.util.TlsContext;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.PortRange;
+import io.dropwizard.validation.ValidationMethod;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import java.io.IOException;
+import javax.annotation.Nullable;
+import javax.validation.constraints.NotNull;
+
+public class GrpcConfiguration {
+
+  private boolean enabled = false;
+
+  @PortRange private int port = 9090;
+
+  @Nullable private String socket;
+
+  @Nullable private String trustedCerts;
+
+  @Nullable private String cert;
+
+  @Nullable private String key;
+
+  @NotNull private Duration shutdownGracePeriod = Duration.seconds(5);
+
+  @JsonProperty
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @JsonProperty
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @JsonProperty
+  public int getPort() {
+    return port;
+  }
+
+  @JsonProperty
+  public void setPort(final int port) {
+    this.port = port;
+  }
+
+  @JsonProperty
+  @Nullable
+  public String getSocket() {
+    return socket;
+  }
+
+  @JsonProperty
+  public void setSocket(@Nullable final String socket) {
+    this.socket = socket;
+  }
+
+  @JsonProperty("trusted_certs")
+  @Nullable
+  public String getTrustedCerts() {
+    return trustedCerts;
+  }
+
+  @JsonProperty("trusted_certs")
+  public void setTrustedCerts(@Nullable final String trustedCerts) {
+    this.trustedCerts = trustedCerts;
+  }
+
+  @JsonProperty
+  @Nullable
+  public String getCert() {
+    return cert;
+  }
+
+  @JsonProperty
+  public void setCert(@Nullable final String cert) {
+    this.cert = cert;
+  }
+
+  @JsonProperty
+  @Nullable
+  public String getKey() {
+    return key;
+  }
+
+  @JsonProperty
+  public void setKey(@Nullable final String key) {
+    this.key = key;
+  }
+
+  @JsonProperty("shutdown_grace_period")
+  public Duration getShutdownGracePeriod() {
+    return shutdownGracePeriod;
+  }
+
+  @JsonProperty("shutdown_grace_period")
+  public void setShutdownGracePeriod(final Duration shutdownGracePeriod) {
+    this.shutdownGracePeriod = shutdownGracePeriod;
+  }
+
+  @JsonIgnore
+  @ValidationMethod(message = "trusted_certs, cert and key must be set together")
+  public boolean isTlsConfigured() {
+    return (trustedCerts == null) == (cert == null) && (cert == null) == (key == null);
+  }
+
+  /**
+   * Build a gRPC server for the given worker. Listens on {@code socket} if it is set, otherwise on
+   * {@code port}, with mutual TLS if certificates are configured.
+   *
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param headroomThreshold Headroom below which responses carry a headroom trailer
+   * @param concurrencyLimiter Adaptive concurrency limiter, or null to disable load shedding
+   * @param registry Metric registry
+   * @return new ManagedGrpcServer
+   * @throws IOException if unable to set up TLS or the domain socket
+   */
+  public ManagedGrpcServer build(
+      final IdWorker worker,
+      final AgentRateLimiter limiter,
+      final double headroomThreshold,
+      @Nullable final AdaptiveConcurrencyLimiter concurrencyLimiter,
+      final MetricRegistry registry)
+      throws IOException {
+    final NettyServerBuilder builder;
+    final String address;
+    if (socket != null) {
+      address = socket;
+      builder =
+          NettyServerBuilder.forAddress(Netty.bindableDomainSocket(socket))
+              .channelType(Netty.serverDomainSocketChannelType());
+    } else {
+      address = Integer.toString(port);
+      builder = NettyServerBuilder.forPort(port).channelType(Netty.serverChannelType());
+      if (cert != null) {
+        builder.sslContext(new TlsContext(trustedCerts, cert, key).toServerContext());
+      }
+    }
+
+    final EventLoopGroup bossEventLoopGroup = Netty.newBossEventLoopGroup();
+    final EventLoopGroup workerEventLoopGroup = Netty.newWorkerEventLoopGroup();
+    builder
+        .bossEventLoopGroup(bossEventLoopGroup)
+        .workerEventLoopGroup(workerEventLoopGroup)
+        .addService(
+            ServerInterceptors.intercept(
+                SnowizardServer.service(worker, limiter, headroomThreshold, concurrencyLimiter),
+                new MetricsInterceptor(registry)));
+
+    return new ManagedGrpcServer(
+        builder.build(), bossEventLoopGroup, workerEventLoopGroup, address, shutdownGracePeriod);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.snowizard.application.streaming.IdRingFeeder;
+import com.smoketurner.snowizard.core.IdWorker;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MaxDuration;
+import io.dropwizard.validation.MinDuration;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import org.hibernate.validator.constraints.NotEmpty;
+
+public class IpcConfiguration {
+
+  private boolean enabled = false;
+
+  @NotEmpty private String directory = "/dev/shm/snowizard";
+
+  @NotNull private List<String> consumers = new ArrayList<>();
+
+  @Min(64)
+  @Max(16777216)
+  private int capacity = 65536;
+
+  @NotNull
+  @MinDuration(value = 10, unit = TimeUnit.MICROSECONDS)
+  @MaxDuration(value = 1, unit = TimeUnit.SECONDS)
+  private Duration refillInterval = Duration.microseconds(100);
+
+  @JsonProperty
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @JsonProperty
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @JsonProperty
+  public String getDirectory() {
+    return directory;
+  }
+
+  @JsonProperty
+  public void setDirectory(final String directory) {
+    this.directory = directory;
+  }
+
+  @JsonProperty
+  public List<String> getConsumers() {
+    return consumers;
+  }
+
+  @JsonProperty
+  public void setConsumers(final List<String> consumers) {
+    this.consumers = consumers;
+  }
+
+  @JsonProperty
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @JsonProperty
+  public void setCapacity(final int capacity) {
+    this.capacity = capacity;
+  }
+
+  @JsonProperty("refill_interval")
+  public Duration getRefillInterval() {
+    return refillInterval;
+  }
+
+  @JsonProperty("refill_interval")
+  public void setRefillInterval(final Duration refillInterval) {
+    this.refillInterval = refillInterval;
+  }
+
+  /**
+   * Build a new {@link IdRingFeeder}
+   *
+   * @param worker ID worker
+   * @param scheduler Executor which refills the rings
+   * @param registry Metric registry
+   * @return new IdRingFeeder
+   */
+  public IdRingFeeder build(
+      final IdWorker worker,
+      final ScheduledExecutorService scheduler,
+      final MetricRegistry registry) {
+    return new IdRingFeeder(
+        worker,
+        scheduler,
+        Paths.get(directory),
+        consumers,
+        capacity,
+        refillInterval.getQuantity(),
+        refillInterval.getUnit(),
+        registry);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.MinDuration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class RateLimitConfiguration {
+
+  private boolean enabled = false;
+
+  @Min(0)
+  private long idsPerSecond = 0L;
+
+  @NotNull
+  @MinDuration(value = 1, unit = TimeUnit.MILLISECONDS)
+  private Duration burst = Duration.seconds(1);
+
+  @NotNull private Map<String, Long> agents = Collections.emptyMap();
+
+  @Min(1)
+  private int maxAgents = AgentRateLimiter.DEFAULT_MAX_AGENTS;
+
+  @JsonProperty
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @JsonProperty
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @JsonProperty("ids_per_second")
+  public long getIdsPerSecond() {
+    return idsPerSecond;
+  }
+
+  @JsonProperty("ids_per_second")
+  public void setIdsPerSecond(final long idsPerSecond) {
+    this.idsPerSecond = idsPerSecond;
+  }
+
+  @JsonProperty
+  public Duration getBurst() {
+    return burst;
+  }
+
+  @JsonProperty
+  public void setBurst(final Duration burst) {
+    this.burst = burst;
+  }
+
+  @JsonProperty
+  public Map<String, Long> getAgents() {
+    return agents;
+  }
+
+  @JsonProperty
+  public void setAgents(final Map<String, Long> agents) {
+    this.agents = agents;
+  }
+
+  @JsonProperty("max_agents")
+  public int getMaxAgents() {
+    return maxAgents;
+  }
+
+  @JsonProperty("max_agents")
+  public void setMaxAgents(final int maxAgents) {
+    this.maxAgents = maxAgents;
+  }
+
+  /**
+   * Build a new {@link AgentRateLimiter}
+   *
+   * @return new AgentRateLimiter, or an unlimited one if rate limiting is disabled
+   */
+  public AgentRateLimiter build() {
+    if (!enabled) {
+      return AgentRateLimiter.unlimited();
+    }
+    return new AgentRateLimiter(
+        idsPerSecond, agents, burst.getQuantity(), burst.getUnit(), maxAgents);
+  }
+}
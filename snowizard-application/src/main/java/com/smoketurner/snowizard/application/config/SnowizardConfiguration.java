@@ -30,13 +30,20 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.smoketurner.dropwizard.zipkin.ConsoleZipkinFactory;
 import com.smoketurner.dropwizard.zipkin.ZipkinFactory;
 import io.dropwizard.Configuration;
+import io.dropwizard.util.Duration;
+import java.util.Collections;
+import java.util.Set;
 import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 public class SnowizardConfiguration extends Configuration {
   private static final int MAX_ID = 1024;
+  private static final int MAX_SEQUENCE = 4095;
+  private static final int MAX_COUNT = 1_000_000;
 
   @Min(1)
   @Max(MAX_ID)
@@ -48,6 +55,43 @@ public class SnowizardConfiguration extends Configuration {
 
   private boolean validateUserAgent = false;
 
+  @Min(0)
+  @Max(MAX_SEQUENCE)
+  private int reservedSequence = 0;
+
+  @NotNull private Set<String> highPriorityAgents = Collections.emptySet();
+
+  @Min(1)
+  @Max(MAX_COUNT)
+  private int maxCount = 10_000;
+
+  @Min(1)
+  private int maxStreamCount = 1_000_000;
+
+  @Min(1)
+  private int maxSubscribers = 100;
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double headroomThreshold = 0.1;
+
+  @NotNull private Duration maxClockDrift = Duration.milliseconds(100);
+
+  @DecimalMin("0.0")
+  @DecimalMax("1.0")
+  private double maxSaturation = 0.9;
+
+  @Valid @NotNull private RateLimitConfiguration rateLimit = new RateLimitConfiguration();
+
+  @Valid @NotNull
+  private ConcurrencyLimitConfiguration concurrencyLimit = new ConcurrencyLimitConfiguration();
+
+  @Valid @NotNull private CoalescingConfiguration coalescing = new CoalescingConfiguration();
+
+  @Valid @NotNull private IpcConfiguration ipc = new IpcConfiguration();
+
+  @Valid @NotNull private GrpcConfiguration grpc = new GrpcConfiguration();
+
   @Valid @NotNull private final ZipkinFactory zipkin = new ConsoleZipkinFactory();
 
   @JsonProperty("worker_id")
@@ -80,6 +124,136 @@ public class SnowizardConfiguration extends Configuration {
     this.validateUserAgent = validateUserAgent;
   }
 
+  @JsonProperty("reserved_sequence")
+  public int getReservedSequence() {
+    return reservedSequence;
+  }
+
+  @JsonProperty("reserved_sequence")
+  public void setReservedSequence(final int reservedSequence) {
+    this.reservedSequence = reservedSequence;
+  }
+
+  @JsonProperty("high_priority_agents")
+  public Set<String> getHighPriorityAgents() {
+    return highPriorityAgents;
+  }
+
+  @JsonProperty("high_priority_agents")
+  public void setHighPriorityAgents(final Set<String> highPriorityAgents) {
+    this.highPriorityAgents = highPriorityAgents;
+  }
+
+  @JsonProperty("max_count")
+  public int getMaxCount() {
+    return maxCount;
+  }
+
+  @JsonProperty("max_count")
+  public void setMaxCount(final int maxCount) {
+    this.maxCount = maxCount;
+  }
+
+  @JsonProperty("max_stream_count")
+  public int getMaxStreamCount() {
+    return maxStreamCount;
+  }
+
+  @JsonProperty("max_stream_count")
+  public void setMaxStreamCount(final int maxStreamCount) {
+    this.maxStreamCount = maxStreamCount;
+  }
+
+  @JsonProperty("max_subscribers")
+  public int getMaxSubscribers() {
+    return maxSubscribers;
+  }
+
+  @JsonProperty("max_subscribers")
+  public void setMaxSubscribers(final int maxSubscribers) {
+    this.maxSubscribers = maxSubscribers;
+  }
+
+  @JsonProperty("headroom_threshold")
+  public double getHeadroomThreshold() {
+    return headroomThreshold;
+  }
+
+  @JsonProperty("headroom_threshold")
+  public void setHeadroomThreshold(final double headroomThreshold) {
+    this.headroomThreshold = headroomThreshold;
+  }
+
+  @JsonProperty("max_clock_drift")
+  public Duration getMaxClockDrift() {
+    return maxClockDrift;
+  }
+
+  @JsonProperty("max_clock_drift")
+  public void setMaxClockDrift(final Duration maxClockDrift) {
+    this.maxClockDrift = maxClockDrift;
+  }
+
+  @JsonProperty("max_saturation")
+  public double getMaxSaturation() {
+    return maxSaturation;
+  }
+
+  @JsonProperty("max_saturation")
+  public void setMaxSaturation(final double maxSaturation) {
+    this.maxSaturation = maxSaturation;
+  }
+
+  @JsonProperty("rate_limit")
+  public RateLimitConfiguration getRateLimit() {
+    return rateLimit;
+  }
+
+  @JsonProperty("rate_limit")
+  public void setRateLimit(final RateLimitConfiguration rateLimit) {
+    this.rateLimit = rateLimit;
+  }
+
+  @JsonProperty("concurrency_limit")
+  public ConcurrencyLimitConfiguration getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  @JsonProperty("concurrency_limit")
+  public void setConcurrencyLimit(final ConcurrencyLimitConfiguration concurrencyLimit) {
+    this.concurrencyLimit = concurrencyLimit;
+  }
+
+  @JsonProperty
+  public CoalescingConfiguration getCoalescing() {
+    return coalescing;
+  }
+
+  @JsonProperty
+  public void setCoalescing(final CoalescingConfiguration coalescing) {
+    this.coalescing = coalescing;
+  }
+
+  @JsonProperty
+  public IpcConfiguration getIpc() {
+    return ipc;
+  }
+
+  @JsonProperty
+  public void setIpc(final IpcConfiguration ipc) {
+    this.ipc = ipc;
+  }
+
+  @JsonProperty
+  public GrpcConfiguration getGrpc() {
+    return grpc;
+  }
+
+  @JsonProperty
+  public void setGrpc(final GrpcConfiguration grpc) {
+    this.grpc = grpc;
+  }
+
   @JsonProperty
   public ZipkinFactory getZipkin() {
     return zipkin;
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.jetty9.InstrumentedConnectionFactory;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.dropwizard.jetty.HttpConnectorFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.annotation.Nullable;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.unixsocket.UnixSocketConnector;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * An HTTP/1.1 connector listening on a Unix domain socket instead of a TCP port, for clients
+ * running on the same host. A socket file left behind by a previous run is replaced, but startup
+ * fails if the path holds anything else, or a socket another process is still listening on.
+ *
+ * <pre>{@code
+ * server:
+ *   type: simple
+ *   connector:
+ *     type: unix
+ *     path: /var/run/snowizard/snowizard.sock
+ * }</pre>
+ */
+@JsonTypeName("unix")
+public class UnixSocketConnectorFactory extends HttpConnectorFactory {
+
+  // file type bits of st_mode
+  private static final int S_IFMT = 0170000;
+  private static final int S_IFSOCK = 0140000;
+
+  @NotEmpty private String path = "/tmp/snowizard.sock";
+
+  @JsonProperty
+  public String getPath() {
+    return path;
+  }
+
+  @JsonProperty
+  public void setPath(final String path) {
+    this.path = path;
+  }
+
+  @Override
+  public Connector build(
+      final Server server,
+      final MetricRegistry metrics,
+      final String name,
+      @Nullable final ThreadPool threadPool) {
+
+    try {
+      removeStaleSocket(Paths.get(path));
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Unable to listen on " + path, e);
+    }
+
+    final HttpConnectionFactory httpConnectionFactory =
+        buildHttpConnectionFactory(buildHttpConfiguration());
+    final String timerName = MetricRegistry.name(HttpConnectionFactory.class, path, "connections");
+
+    final UnixSocketConnector connector =
+        new UnixSocketConnector(
+            server,
+            threadPool,
+            new ScheduledExecutorScheduler(),
+            buildBufferPool(),
+            getSelectorThreads().orElse(-1),
+            new InstrumentedConnectionFactory(httpConnectionFactory, metrics.timer(timerName)));
+    connector.setUnixSocket(path);
+    connector.setName(name);
+    connector.setIdleTimeout(getIdleTimeout().toMilliseconds());
+    return connector;
+  }
+
+  /**
+   * Remove the socket file left behind by a previous run, if there is one
+   *
+   * @param file Socket path
+   * @throws IOException if the path is not a socket, or a process is listening on it
+   */
+  static void removeStaleSocket(final Path file) throws IOException {
+    if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+    final int mode = (Integer) Files.getAttribute(file, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+    if ((mode & S_IFMT) != S_IFSOCK) {
+      throw new IOException("Refusing to replace " + file + ", which is not a socket");
+    }
+    if (isListening(file)) {
+      throw new IOException("Another process is already listening on " + file);
+    }
+    Files.delete(file);
+  }
+
+  private static boolean isListening(final Path file) {
+    try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(file.toFile()))) {
+      return true;
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+}
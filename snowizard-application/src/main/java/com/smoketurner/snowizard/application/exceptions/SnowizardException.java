@@ -33,7 +33,9 @@ import javax.ws.rs.core.Response;
 public final class SnowizardException extends WebApplicationException {
 
   private static final long serialVersionUID = 1L;
-  private final Response.Status status;
+  private final int code;
+
+  @Nullable private final Response.Status status;
 
   @Nullable private final String message;
 
@@ -45,6 +47,7 @@ public final class SnowizardException extends WebApplicationException {
    */
   public SnowizardException(final int code, @Nullable final String message) {
     super(code);
+    this.code = code;
     this.status = Response.Status.fromStatusCode(code);
     this.message = message;
   }
@@ -57,6 +60,7 @@ public final class SnowizardException extends WebApplicationException {
    */
   public SnowizardException(final Response.Status status, @Nullable final String message) {
     super(status);
+    this.code = status.getStatusCode();
     this.status = status;
     this.message = message;
   }
@@ -71,14 +75,16 @@ public final class SnowizardException extends WebApplicationException {
   public SnowizardException(
       final Response.Status status, @Nullable final String message, final Throwable cause) {
     super(cause, status);
+    this.code = status.getStatusCode();
     this.status = status;
     this.message = message;
   }
 
   public int getCode() {
-    return status.getStatusCode();
+    return code;
   }
 
+  @Nullable
   public Response.Status getStatus() {
     return status;
   }
@@ -43,7 +43,7 @@ public class SnowizardExceptionMapper implements ExceptionMapper<SnowizardExcept
   public Response toResponse(final SnowizardException exception) {
     LOGGER.debug("Error response ({}): {}", exception.getCode(), exception.getMessage());
 
-    return Response.status(exception.getStatus())
+    return Response.status(exception.getCode())
         .entity(new ErrorMessage(exception.getCode(), exception.getMessage()))
         .type(MediaType.APPLICATION_JSON)
         .build();
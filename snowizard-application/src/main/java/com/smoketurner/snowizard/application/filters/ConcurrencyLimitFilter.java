@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.filters;
+
+import com.smoketurner.snowizard.application.exceptions.SnowizardException;
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import java.io.IOException;
+import java.util.Objects;
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sheds requests with a 503 response once the number of requests in flight reaches the limit of an
+ * {@link AdaptiveConcurrencyLimiter}, instead of letting them queue up in Jetty.
+ *
+ * <p>A request holds its permit until its entity has been written, so a streamed response is
+ * counted for as long as it is generating IDs rather than only until the resource method returns.
+ * Responses without an entity release the permit in the response filter.
+ *
+ * <p>How long a streamed response takes depends on how fast the client reads it, so it ends without
+ * a latency sample; otherwise a single slow reader would collapse the limit.
+ */
+@Provider
+@ConcurrencyLimited
+@Priority(Priorities.AUTHENTICATION - 100)
+public class ConcurrencyLimitFilter
+    implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+  private static final String START_PROPERTY = ConcurrencyLimitFilter.class.getName() + ".start";
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  /**
+   * Constructor
+   *
+   * @param limiter Concurrency limiter
+   */
+  public ConcurrencyLimitFilter(final AdaptiveConcurrencyLimiter limiter) {
+    this.limiter = Objects.requireNonNull(limiter);
+  }
+
+  @Override
+  public void filter(final ContainerRequestContext request) {
+    if (!limiter.tryAcquire()) {
+      LOGGER.debug("Concurrency limit ({}) reached, shedding request", limiter.getLimit());
+      throw new SnowizardException(Response.Status.SERVICE_UNAVAILABLE, "Server overloaded");
+    }
+    request.setProperty(START_PROPERTY, limiter.nanoTime());
+  }
+
+  @Override
+  public void filter(
+      final ContainerRequestContext request, final ContainerResponseContext response) {
+    final Object start = request.getProperty(START_PROPERTY);
+    if (start == null) {
+      return;
+    }
+    if (response.getStatus() >= 500) {
+      request.removeProperty(START_PROPERTY);
+      limiter.cancel();
+    } else if (!response.hasEntity()) {
+      request.removeProperty(START_PROPERTY);
+      limiter.release((Long) start);
+    }
+    // otherwise the permit is released by aroundWriteTo once the entity has been written
+  }
+
+  @Override
+  public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+    final Object start = context.getProperty(START_PROPERTY);
+    if (start == null) {
+      context.proceed();
+      return;
+    }
+    context.removeProperty(START_PROPERTY);
+    final boolean sampled = !(context.getEntity() instanceof StreamingOutput);
+    boolean written = false;
+    try {
+      context.proceed();
+      written = true;
+    } finally {
+      if (written && sampled) {
+        limiter.release((Long) start);
+      } else {
+        limiter.cancel();
+      }
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.filters;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import java.util.Locale;
+import java.util.Objects;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Adds an {@code X-Snowizard-Headroom} header to responses once the worker's remaining
+ * per-millisecond sequence space drops below a threshold, so clients and load balancers can move
+ * bulk traffic to other nodes before latency degrades.
+ */
+@Provider
+@HeadroomReported
+public class HeadroomFilter implements ContainerResponseFilter {
+
+  public static final String HEADROOM_HEADER = "X-Snowizard-Headroom";
+
+  private final IdWorker worker;
+  private final double threshold;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param threshold Headroom below which the header is added
+   */
+  public HeadroomFilter(final IdWorker worker, final double threshold) {
+    this.worker = Objects.requireNonNull(worker);
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void filter(
+      final ContainerRequestContext request, final ContainerResponseContext response) {
+    final double headroom = worker.getHeadroom();
+    if (headroom < threshold) {
+      response
+          .getHeaders()
+          .putSingle(HEADROOM_HEADER, String.format(Locale.ROOT, "%.3f", headroom));
+    }
+  }
+}
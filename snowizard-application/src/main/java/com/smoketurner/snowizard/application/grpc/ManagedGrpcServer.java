@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.grpc;
+
+import io.dropwizard.lifecycle.Managed;
+import io.dropwizard.util.Duration;
+import io.grpc.Server;
+import io.netty.channel.EventLoopGroup;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the gRPC service within the application's lifecycle, so one process serves both REST and
+ * gRPC from the same worker. In-flight calls are given a grace period to complete on shutdown.
+ */
+public class ManagedGrpcServer implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ManagedGrpcServer.class);
+
+  private final Server server;
+  private final EventLoopGroup bossEventLoopGroup;
+  private final EventLoopGroup workerEventLoopGroup;
+  private final String address;
+  private final Duration shutdownGracePeriod;
+
+  /**
+   * Constructor
+   *
+   * @param server gRPC server, not yet started
+   * @param bossEventLoopGroup Event loop accepting connections
+   * @param workerEventLoopGroup Event loop serving connections
+   * @param address Address the server listens on, for logging
+   * @param shutdownGracePeriod How long to wait for in-flight calls on shutdown
+   */
+  public ManagedGrpcServer(
+      final Server server,
+      final EventLoopGroup bossEventLoopGroup,
+      final EventLoopGroup workerEventLoopGroup,
+      final String address,
+      final Duration shutdownGracePeriod) {
+    this.server = Objects.requireNonNull(server);
+    this.bossEventLoopGroup = Objects.requireNonNull(bossEventLoopGroup);
+    this.workerEventLoopGroup = Objects.requireNonNull(workerEventLoopGroup);
+    this.address = Objects.requireNonNull(address);
+    this.shutdownGracePeriod = Objects.requireNonNull(shutdownGracePeriod);
+  }
+
+  @Override
+  public void start() throws IOException {
+    server.start();
+    LOGGER.info("gRPC server started, listening on {}", address);
+  }
+
+  @Override
+  public void stop() throws InterruptedException {
+    server.shutdown();
+    if (!server.awaitTermination(shutdownGracePeriod.toMilliseconds(), TimeUnit.MILLISECONDS)) {
+      LOGGER.warn("Cancelling gRPC calls still running after {}", shutdownGracePeriod);
+      server.shutdownNow();
+    }
+    bossEventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    workerEventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.grpc;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.Objects;
+
+/**
+ * Records gRPC calls in the application's metric registry, next to the REST metrics: a timer per
+ * method, and meters of the calls which failed or were cancelled by the client.
+ */
+public class MetricsInterceptor implements ServerInterceptor {
+
+  private final MetricRegistry registry;
+
+  /**
+   * Constructor
+   *
+   * @param registry Metric registry
+   */
+  public MetricsInterceptor(final MetricRegistry registry) {
+    this.registry = Objects.requireNonNull(registry);
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      final ServerCall<ReqT, RespT> call,
+      final Metadata headers,
+      final ServerCallHandler<ReqT, RespT> next) {
+    final String method = call.getMethodDescriptor().getFullMethodName();
+    final String name = MetricRegistry.name(MetricsInterceptor.class, method);
+    final Timer.Context context = registry.timer(name).time();
+
+    final ServerCall<ReqT, RespT> timedCall =
+        new SimpleForwardingServerCall<ReqT, RespT>(call) {
+          @Override
+          public void close(final Status status, final Metadata trailers) {
+            context.stop();
+            if (!status.isOk()) {
+              registry.meter(MetricRegistry.name(name, "errors")).mark();
+            }
+            super.close(status, trailers);
+          }
+        };
+
+    return new SimpleForwardingServerCallListener<ReqT>(next.startCall(timedCall, headers)) {
+      @Override
+      public void onCancel() {
+        registry.meter(MetricRegistry.name(name, "cancelled")).mark();
+        super.onCancel();
+      }
+    };
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.smoketurner.snowizard.core.IdWorker;
+import io.dropwizard.util.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the node as unhealthy when its wall clock is behind the last generated ID, when the wall
+ * clock jumped relative to the monotonic clock within the last minute or so, or when requests are
+ * being rejected because the clock moved backwards.
+ *
+ * <p>The result doesn't depend on how often, or by how many pollers, the check is run: errors are
+ * read from the worker's one-minute rate, and drift is measured against a reference point which
+ * only moves forward once it is a minute old. Once a drift has been seen, it is reported for a full
+ * window, even if it was found by the check which moved the reference point forward.
+ */
+public class ClockHealthCheck extends HealthCheck {
+
+  // one rejected request per minute, on average
+  private static final double MAX_INVALID_CLOCK_RATE = 1.0 / 60;
+  private static final long DRIFT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final IdWorker worker;
+  private final long maxDriftMillis;
+
+  private long referenceWallTime;
+  private long referenceNanoTime;
+  private boolean driftSeen;
+  private long lastDrift;
+  private long lastDriftNanoTime;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param maxDrift Maximum difference between the wall and monotonic clocks within the drift
+   *     window
+   */
+  public ClockHealthCheck(final IdWorker worker, final Duration maxDrift) {
+    this.worker = Objects.requireNonNull(worker);
+    this.maxDriftMillis = maxDrift.toMilliseconds();
+    this.referenceWallTime = worker.getTimestamp();
+    this.referenceNanoTime = nanoTime();
+  }
+
+  @Override
+  protected synchronized Result check() throws Exception {
+    final long wallTime = worker.getTimestamp();
+    final long nanoTime = nanoTime();
+
+    final long drift =
+        (wallTime - referenceWallTime)
+            - TimeUnit.NANOSECONDS.toMillis(nanoTime - referenceNanoTime);
+    if (nanoTime - referenceNanoTime >= DRIFT_WINDOW_NANOS) {
+      referenceWallTime = wallTime;
+      referenceNanoTime = nanoTime;
+    }
+    if (Math.abs(drift) > maxDriftMillis) {
+      driftSeen = true;
+      lastDrift = drift;
+      lastDriftNanoTime = nanoTime;
+    } else if (driftSeen && nanoTime - lastDriftNanoTime >= DRIFT_WINDOW_NANOS) {
+      driftSeen = false;
+    }
+
+    final long behind = worker.getLastTimestamp() - wallTime;
+    if (behind > 0) {
+      return Result.unhealthy("Clock is %d ms behind the last generated ID", behind);
+    }
+    if (driftSeen) {
+      return Result.unhealthy("Clock drifted %d ms from the monotonic clock", lastDrift);
+    }
+    final double errors = worker.getInvalidClockMeter().getOneMinuteRate();
+    if (errors > MAX_INVALID_CLOCK_RATE) {
+      return Result.unhealthy(
+          "%.1f requests per minute rejected because the clock moved backwards", errors * 60);
+    }
+    return Result.healthy();
+  }
+
+  /**
+   * Return the current value of the monotonic clock in nanoseconds
+   *
+   * @return current time in nanoseconds
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.smoketurner.snowizard.core.IdWorker;
+import java.util.Objects;
+
+/**
+ * Reports the node as unhealthy when the sequence space was exhausted in more than a given fraction
+ * of milliseconds, averaged over the worker's one-minute rate.
+ */
+public class SaturationHealthCheck extends HealthCheck {
+
+  private static final double MILLIS_PER_SECOND = 1000.0;
+
+  private final IdWorker worker;
+  private final double maxSaturation;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param maxSaturation Maximum fraction of milliseconds in which the sequence space may be
+   *     exhausted
+   */
+  public SaturationHealthCheck(final IdWorker worker, final double maxSaturation) {
+    this.worker = Objects.requireNonNull(worker);
+    this.maxSaturation = maxSaturation;
+  }
+
+  @Override
+  protected Result check() throws Exception {
+    final double saturation = worker.getExhaustedMeter().getOneMinuteRate() / MILLIS_PER_SECOND;
+    if (saturation > maxSaturation) {
+      return Result.unhealthy(
+          "Sequence space exhausted in %.0f%% of milliseconds", saturation * 100);
+    }
+    return Result.healthy();
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.providers;
+
+import java.nio.charset.StandardCharsets;
+
+/** Formats IDs as ASCII decimal digits straight into a byte array, without building a String. */
+public final class AsciiLongs {
+
+  /** Maximum number of bytes needed to format a long */
+  public static final int MAX_LENGTH = 20;
+
+  private AsciiLongs() {}
+
+  /**
+   * Write a value as decimal digits
+   *
+   * @param value Value to write
+   * @param buffer Destination buffer
+   * @param position Index of the first byte to write
+   * @return Index after the last byte written
+   */
+  public static int put(final long value, final byte[] buffer, final int position) {
+    if (value < 0) {
+      // IDs are never negative, so don't bother optimizing this
+      final byte[] bytes = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      return position + bytes.length;
+    }
+
+    final int end = position + size(value);
+    long remaining = value;
+    int index = end;
+    do {
+      buffer[--index] = (byte) ('0' + (remaining % 10));
+      remaining /= 10;
+    } while (remaining != 0);
+    return end;
+  }
+
+  /**
+   * Write a sequence of ASCII characters
+   *
+   * @param value Characters to write
+   * @param buffer Destination buffer
+   * @param position Index of the first byte to write
+   * @return Index after the last byte written
+   */
+  public static int put(final byte[] value, final byte[] buffer, final int position) {
+    System.arraycopy(value, 0, buffer, position, value.length);
+    return position + value.length;
+  }
+
+  /**
+   * Return the number of digits in a non-negative value
+   *
+   * @param value Non-negative value
+   * @return Number of decimal digits
+   */
+  private static int size(final long value) {
+    long limit = 10;
+    for (int digits = 1; digits < 19; digits++) {
+      if (value < limit) {
+        return digits;
+      }
+      limit *= 10;
+    }
+    return 19;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.providers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.smoketurner.snowizard.api.Id;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Objects;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+/**
+ * Writes an {@link Id} or {@link IdBatch} in one of Jackson's binary formats. The output has the
+ * same shape as the JSON representation, an {@code {"id":N,"id_str":"N"}} object or an array of
+ * them, but is written through the format's streaming generator rather than by data binding.
+ */
+public abstract class BinaryJacksonIdWriter implements MessageBodyWriter<Object> {
+
+  private final JsonFactory factory;
+
+  /**
+   * Constructor
+   *
+   * @param factory Jackson factory for the binary format
+   */
+  protected BinaryJacksonIdWriter(final JsonFactory factory) {
+    this.factory = Objects.requireNonNull(factory);
+    // the output stream is owned by Jersey
+    this.factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  @Override
+  public boolean isWriteable(
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType) {
+    return Id.class.isAssignableFrom(type) || IdBatch.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(
+      final Object entity,
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(
+      final Object entity,
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType,
+      final MultivaluedMap<String, Object> httpHeaders,
+      final OutputStream entityStream)
+      throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(entityStream)) {
+      if (entity instanceof IdBatch) {
+        final long[] ids = ((IdBatch) entity).getIds();
+        generator.writeStartArray(ids.length);
+        for (final long id : ids) {
+          writeId(generator, id);
+        }
+        generator.writeEndArray();
+      } else {
+        writeId(generator, ((Id) entity).getId());
+      }
+    }
+  }
+
+  /**
+   * Write a single ID object
+   *
+   * @param generator Generator to write to
+   * @param id ID to write
+   * @throws IOException if unable to write the ID
+   */
+  private static void writeId(final JsonGenerator generator, final long id) throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", id);
+    generator.writeStringField("id_str", Long.toString(id));
+    generator.writeEndObject();
+  }
+}
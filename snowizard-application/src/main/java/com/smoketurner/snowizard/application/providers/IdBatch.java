@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.providers;
+
+import com.smoketurner.snowizard.api.IdEncoding;
+import java.util.Objects;
+
+/** A batch of generated IDs, kept as a primitive array until it is written to the response. */
+public final class IdBatch {
+
+  private final long[] ids;
+  private final IdEncoding encoding;
+
+  /**
+   * Constructor
+   *
+   * @param ids Generated IDs
+   */
+  public IdBatch(final long[] ids) {
+    this(ids, IdEncoding.VARINT);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param ids Generated IDs
+   * @param encoding Encoding to use for Protocol Buffer responses
+   */
+  public IdBatch(final long[] ids, final IdEncoding encoding) {
+    this.ids = Objects.requireNonNull(ids);
+    this.encoding = Objects.requireNonNull(encoding);
+  }
+
+  /**
+   * Return the generated IDs. The array is not copied.
+   *
+   * @return the generated IDs
+   */
+  public long[] getIds() {
+    return ids;
+  }
+
+  /**
+   * Return the encoding to use for Protocol Buffer responses
+   *
+   * @return the encoding
+   */
+  public IdEncoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Return the number of IDs in the batch
+   *
+   * @return the number of IDs in the batch
+   */
+  public int size() {
+    return ids.length;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.providers;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.IdRange;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
+import com.smoketurner.snowizard.common.IdLayout;
+import io.dropwizard.jersey.protobuf.ProtocolBufferMediaType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes an {@link IdBatch} as a {@link SnowizardResponse} message. The packed repeated field for
+ * the batch's {@link com.smoketurner.snowizard.api.IdEncoding} is encoded straight from the batch's
+ * primitive array, so no message or boxed list is built.
+ */
+@Provider
+@Produces(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+public class ProtobufIdBatchWriter implements MessageBodyWriter<IdBatch> {
+
+  @Override
+  public boolean isWriteable(
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType) {
+    return IdBatch.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(
+      final IdBatch batch,
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(
+      final IdBatch batch,
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType,
+      final MultivaluedMap<String, Object> httpHeaders,
+      final OutputStream entityStream)
+      throws IOException {
+    final long[] ids = batch.getIds();
+    if (ids.length == 0) {
+      return;
+    }
+
+    final CodedOutputStream output = CodedOutputStream.newInstance(entityStream);
+    switch (batch.getEncoding()) {
+      case FIXED64:
+        output.writeTag(
+            SnowizardResponse.FIXED_ID_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(ids.length * Long.BYTES);
+        for (final long id : ids) {
+          output.writeFixed64NoTag(id);
+        }
+        break;
+      case DELTA:
+        // a batch is generated in order, so every difference after the first is small
+        output.writeTag(
+            SnowizardResponse.DELTA_ID_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(getDeltaPayloadSize(ids));
+        long previous = 0L;
+        for (final long id : ids) {
+          output.writeUInt64NoTag(id - previous);
+          previous = id;
+        }
+        break;
+      case RANGES:
+        IdLayout.forEachRun(
+            ids,
+            ids.length,
+            (timestamp, datacenterId, workerId, first, last) ->
+                output.writeMessage(
+                    SnowizardResponse.RANGE_FIELD_NUMBER,
+                    toRange(timestamp, datacenterId, workerId, first, last)));
+        break;
+      default:
+        output.writeTag(SnowizardResponse.ID_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(getPayloadSize(ids));
+        for (final long id : ids) {
+          output.writeInt64NoTag(id);
+        }
+        break;
+    }
+    output.flush();
+  }
+
+  /**
+   * Build the range descriptor for a run of IDs
+   *
+   * @param timestamp Timestamp of the run
+   * @param datacenterId Datacenter ID of the run
+   * @param workerId Worker ID of the run
+   * @param first Sequence of the first ID in the run
+   * @param last Sequence of the last ID in the run
+   * @return range descriptor
+   */
+  private static IdRange toRange(
+      final long timestamp,
+      final int datacenterId,
+      final int workerId,
+      final int first,
+      final int last) {
+    return IdRange.newBuilder()
+        .setTimestamp(timestamp)
+        .setDatacenterId(datacenterId)
+        .setWorkerId(workerId)
+        .setFirstSequence(first)
+        .setLastSequence(last)
+        .build();
+  }
+
+  /**
+   * Return the size of the packed {@code id} field's payload
+   *
+   * @param ids Generated IDs
+   * @return size in bytes
+   */
+  private static int getPayloadSize(final long[] ids) {
+    int size = 0;
+    for (final long id : ids) {
+      size += CodedOutputStream.computeInt64SizeNoTag(id);
+    }
+    return size;
+  }
+
+  /**
+   * Return the size of the packed {@code delta_id} field's payload
+   *
+   * @param ids Generated IDs
+   * @return size in bytes
+   */
+  private static int getDeltaPayloadSize(final long[] ids) {
+    int size = 0;
+    long previous = 0L;
+    for (final long id : ids) {
+      size += CodedOutputStream.computeUInt64SizeNoTag(id - previous);
+      previous = id;
+    }
+    return size;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.providers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Writes an {@link IdBatch} as newline-separated decimal IDs, a chunk at a time through a
+ * per-thread buffer.
+ */
+@Provider
+@Produces(MediaType.TEXT_PLAIN)
+public class TextIdBatchWriter implements MessageBodyWriter<IdBatch> {
+
+  /** Number of IDs formatted into the buffer before it is written out */
+  public static final int CHUNK_SIZE = 256;
+
+  /** Size of a buffer which can hold a full chunk */
+  public static final int BUFFER_SIZE = CHUNK_SIZE * (AsciiLongs.MAX_LENGTH + 1);
+
+  private static final ThreadLocal<byte[]> BUFFER =
+      ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+  @Override
+  public boolean isWriteable(
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType) {
+    return IdBatch.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public long getSize(
+      final IdBatch batch,
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(
+      final IdBatch batch,
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType,
+      final MultivaluedMap<String, Object> httpHeaders,
+      final OutputStream entityStream)
+      throws IOException {
+    write(batch.getIds(), batch.size(), BUFFER.get(), entityStream);
+  }
+
+  /**
+   * Write IDs as newline-separated decimal digits
+   *
+   * @param ids IDs to write
+   * @param length Number of IDs to write from the start of the array
+   * @param buffer Scratch buffer of at least {@link #BUFFER_SIZE} bytes
+   * @param output Destination stream
+   * @throws IOException if unable to write to the stream
+   */
+  public static void write(
+      final long[] ids, final int length, final byte[] buffer, final OutputStream output)
+      throws IOException {
+    int position = 0;
+    for (int i = 0; i < length; i++) {
+      position = AsciiLongs.put(ids[i], buffer, position);
+      buffer[position++] = '\n';
+      if ((i + 1) % CHUNK_SIZE == 0) {
+        output.write(buffer, 0, position);
+        position = 0;
+      }
+    }
+    if (position > 0) {
+      output.write(buffer, 0, position);
+    }
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.smoketurner.snowizard.api.Id;
+import com.smoketurner.snowizard.api.IdEncoding;
+import com.smoketurner.snowizard.api.SnowizardMediaType;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
+import com.smoketurner.snowizard.application.exceptions.SnowizardException;
+import com.smoketurner.snowizard.application.providers.IdBatch;
+import com.smoketurner.snowizard.application.streaming.BinaryIdStreamingOutput;
+import com.smoketurner.snowizard.application.streaming.ProtobufIdStreamingOutput;
+import com.smoketurner.snowizard.application.streaming.TextIdStreamingOutput;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import io.dropwizard.jersey.caching.CacheControl;
+import io.dropwizard.jersey.params.IntParam;
+import io.dropwizard.jersey.protobuf.ProtocolBufferMediaType;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.hibernate.validator.constraints.NotEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batch and streaming ID endpoints shared by {@link IdResource} and {@link CoalescingIdResource},
+ * which differ only in how they serve single IDs.
+ */
+public abstract class AbstractIdResource {
+
+  public static final int DEFAULT_MAX_COUNT = 10_000;
+  public static final int DEFAULT_MAX_STREAM_COUNT = 1_000_000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractIdResource.class);
+  private static final int TOO_MANY_REQUESTS = 429;
+  private final IdWorker worker;
+  private final AgentRateLimiter limiter;
+  private final int maxCount;
+  private final int maxStreamCount;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param maxCount Maximum number of IDs in a single batch
+   * @param maxStreamCount Maximum number of IDs in a single streamed response
+   */
+  protected AbstractIdResource(
+      final IdWorker worker,
+      final AgentRateLimiter limiter,
+      final int maxCount,
+      final int maxStreamCount) {
+    this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
+    this.maxCount = maxCount;
+    this.maxStreamCount = maxStreamCount;
+  }
+
+  /**
+   * Get a new ID and handle any thrown exceptions
+   *
+   * @param agent User Agent
+   * @return generated ID
+   * @throws SnowizardException if invalid agent or clock, or the agent is over its rate limit
+   */
+  public long getId(final String agent) {
+    acquire(agent, 1);
+    return generateId(agent);
+  }
+
+  /**
+   * Take a number of IDs from the agent's rate limit, once the agent is known to be valid
+   *
+   * @param agent User Agent
+   * @param count Number of IDs requested
+   * @throws SnowizardException if the agent is invalid or over its rate limit
+   */
+  protected void acquire(final String agent, final int count) {
+    if (!worker.isValidUserAgent(agent)) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header");
+    }
+    if (!limiter.tryAcquire(agent, count)) {
+      LOGGER.debug("Rate limit exceeded for agent ({})", agent);
+      throw new SnowizardException(TOO_MANY_REQUESTS, "Rate limit exceeded");
+    }
+  }
+
+  /**
+   * Return the number of IDs requested by a batch request
+   *
+   * @param count Number of IDs requested, or null for a single ID
+   * @param max Maximum number of IDs allowed
+   * @return Number of IDs requested
+   * @throws SnowizardException if the count is out of range
+   */
+  private static int getCount(@Nullable final IntParam count, final int max) {
+    final int n = count != null ? count.get() : 1;
+    if (n < 1 || n > max) {
+      throw new SnowizardException(
+          Response.Status.BAD_REQUEST, String.format("count must be between 1 and %d", max));
+    }
+    return n;
+  }
+
+  /**
+   * Generate a new ID without checking the rate limit
+   *
+   * @param agent User Agent
+   * @return generated ID
+   * @throws SnowizardException if invalid agent or clock
+   */
+  protected long generateId(final String agent) {
+    try {
+      return worker.getId(agent);
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header", e);
+    } catch (final InvalidSystemClock e) {
+      LOGGER.error("Invalid system clock", e);
+      throw new SnowizardException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Generate a batch of new IDs without checking the rate limit
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to generate
+   * @return generated IDs
+   * @throws SnowizardException if invalid agent or clock
+   */
+  private long[] generateIds(final String agent, final int count) {
+    final long[] ids = new long[count];
+    try {
+      worker.getIds(agent, ids, 0, count);
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header", e);
+    } catch (final InvalidSystemClock e) {
+      LOGGER.error("Invalid system clock", e);
+      throw new SnowizardException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+    }
+    return ids;
+  }
+
+  /**
+   * Get a batch of IDs as a JSON array, or as CBOR, Smile or MessagePack with the same structure
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to return
+   * @return generated IDs, written as an array of {@link Id} objects
+   */
+  @GET
+  @Timed
+  @Path("batch")
+  @Produces({
+    MediaType.APPLICATION_JSON,
+    SnowizardMediaType.APPLICATION_CBOR,
+    SnowizardMediaType.APPLICATION_SMILE,
+    SnowizardMediaType.APPLICATION_MSGPACK
+  })
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public IdBatch getIdsAsJSON(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("count") @DefaultValue("1") final IntParam count) {
+
+    final int n = getCount(count, maxCount);
+    acquire(agent, n);
+    return new IdBatch(generateIds(agent, n));
+  }
+
+  /**
+   * Get a batch of IDs as newline-separated plain text
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to return
+   * @return generated IDs, written one per line
+   */
+  @GET
+  @Timed
+  @Path("batch")
+  @Produces(MediaType.TEXT_PLAIN)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public IdBatch getIdsAsString(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("count") @DefaultValue("1") final IntParam count) {
+
+    final int n = getCount(count, maxCount);
+    acquire(agent, n);
+    return new IdBatch(generateIds(agent, n));
+  }
+
+  /**
+   * Get one or more IDs as a Google Protocol Buffer response
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to return
+   * @param encoding How to encode the IDs in the response
+   * @return generated IDs, written as a {@link SnowizardResponse}
+   */
+  @GET
+  @Timed
+  @Produces(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public IdBatch getIdAsProtobuf(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("count") @DefaultValue("1") final IntParam count,
+      @QueryParam("encoding") @DefaultValue("varint") final IdEncoding encoding) {
+
+    final int n = getCount(count, maxCount);
+    acquire(agent, n);
+    return new IdBatch(generateIds(agent, n), encoding);
+  }
+
+  /**
+   * Get one or more IDs as raw 8-byte big-endian values
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to return
+   * @return generated IDs
+   */
+  @GET
+  @Timed
+  @Produces(MediaType.APPLICATION_OCTET_STREAM)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public StreamingOutput getIdsAsBinary(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("count") @DefaultValue("1") final IntParam count) {
+    final int n = getCount(count, maxCount);
+    acquire(agent, n);
+    return new BinaryIdStreamingOutput(worker, agent, n);
+  }
+
+  /**
+   * Stream IDs as newline-delimited plain text, writing them as they are generated
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to return
+   * @return streamed IDs
+   */
+  @GET
+  @Timed
+  @Path("stream")
+  @Produces(MediaType.TEXT_PLAIN)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public StreamingOutput streamIdsAsString(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("count") @DefaultValue("1") final IntParam count) {
+    final int n = getCount(count, maxStreamCount);
+    acquire(agent, n);
+    return new TextIdStreamingOutput(worker, agent, n);
+  }
+
+  /**
+   * Stream IDs as length-delimited Google Protocol Buffer messages, writing them as they are
+   * generated
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to return
+   * @return streamed IDs
+   */
+  @GET
+  @Timed
+  @Path("stream")
+  @Produces(SnowizardMediaType.APPLICATION_PROTOBUF_DELIMITED)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public StreamingOutput streamIdsAsProtobuf(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("count") @DefaultValue("1") final IntParam count) {
+    final int n = getCount(count, maxStreamCount);
+    acquire(agent, n);
+    return new ProtobufIdStreamingOutput(worker, agent, n);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.smoketurner.snowizard.api.Id;
+import com.smoketurner.snowizard.api.SnowizardMediaType;
+import com.smoketurner.snowizard.application.exceptions.SnowizardException;
+import com.smoketurner.snowizard.application.filters.ConcurrencyLimited;
+import com.smoketurner.snowizard.application.filters.HeadroomReported;
+import com.smoketurner.snowizard.core.IdCoalescer;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import io.dropwizard.jersey.caching.CacheControl;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.server.JSONP;
+import org.hibernate.validator.constraints.NotEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Variant of {@link IdResource} registered when coalescing is enabled. Single-ID requests are
+ * suspended and resumed once the {@link IdCoalescer} has generated their ID together with those of
+ * other waiting requests, so no request thread is held while the window is open.
+ */
+@Path("/")
+@ConcurrencyLimited
+@HeadroomReported
+public class CoalescingIdResource extends AbstractIdResource {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingIdResource.class);
+  private final IdCoalescer coalescer;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param maxCount Maximum number of IDs in a single batch
+   * @param maxStreamCount Maximum number of IDs in a single streamed response
+   * @param coalescer Coalescer for single-ID requests
+   */
+  public CoalescingIdResource(
+      final IdWorker worker,
+      final AgentRateLimiter limiter,
+      final int maxCount,
+      final int maxStreamCount,
+      final IdCoalescer coalescer) {
+    super(worker, limiter, maxCount, maxStreamCount);
+    this.coalescer = Objects.requireNonNull(coalescer);
+  }
+
+  /**
+   * Resume a suspended single-ID request with a new ID, from whichever thread generates the batch
+   * it was coalesced into
+   *
+   * @param response Suspended response
+   * @param agent User Agent
+   * @throws SnowizardException if invalid agent, or the agent is over its rate limit
+   */
+  private void resumeWithId(final AsyncResponse response, final String agent) {
+    acquire(agent, 1);
+
+    final CompletableFuture<Long> future;
+    try {
+      future = coalescer.submit(agent);
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header", e);
+    }
+
+    future.whenComplete(
+        (id, e) -> {
+          if (e == null) {
+            response.resume(new Id(id));
+          } else {
+            LOGGER.error("Invalid system clock", e);
+            response.resume(
+                new SnowizardException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e));
+          }
+        });
+  }
+
+  /**
+   * Get a new ID as plain text, written as decimal digits
+   *
+   * @param response Suspended response, resumed with the generated ID
+   * @param agent User Agent
+   */
+  @GET
+  @Timed
+  @Produces(MediaType.TEXT_PLAIN)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public void getIdAsString(
+      @Suspended final AsyncResponse response,
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent) {
+    resumeWithId(response, agent);
+  }
+
+  /**
+   * Get a new ID as JSON, or as CBOR, Smile or MessagePack with the same structure
+   *
+   * @param response Suspended response, resumed with the generated ID
+   * @param agent User Agent
+   */
+  @GET
+  @Timed
+  @JSONP(callback = "callback", queryParam = "callback")
+  @Produces({
+    MediaType.APPLICATION_JSON,
+    "application/javascript",
+    SnowizardMediaType.APPLICATION_CBOR,
+    SnowizardMediaType.APPLICATION_SMILE,
+    SnowizardMediaType.APPLICATION_MSGPACK
+  })
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public void getIdAsJSON(
+      @Suspended final AsyncResponse response,
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent) {
+    resumeWithId(response, agent);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.resources;
+
+import com.codahale.metrics.annotation.Timed;
+import com.smoketurner.snowizard.application.exceptions.SnowizardException;
+import com.smoketurner.snowizard.application.filters.HeadroomReported;
+import com.smoketurner.snowizard.application.streaming.IdEventPublisher;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import io.dropwizard.jersey.caching.CacheControl;
+import io.dropwizard.jersey.params.IntParam;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.hibernate.validator.constraints.NotEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Path("/events")
+@HeadroomReported
+public class IdEventResource {
+
+  public static final int MAX_RATE = 1_000_000;
+
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdEventResource.class);
+  private final IdWorker worker;
+  private final AgentRateLimiter limiter;
+  private final ExecutorService executor;
+  private final int maxCount;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param executor Executor which runs one publisher per subscriber
+   * @param maxCount Maximum number of IDs in a single event
+   */
+  public IdEventResource(
+      final IdWorker worker,
+      final AgentRateLimiter limiter,
+      final ExecutorService executor,
+      final int maxCount) {
+    this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
+    this.executor = Objects.requireNonNull(executor);
+    this.maxCount = maxCount;
+  }
+
+  /**
+   * Subscribe to a stream of IDs, pushed as "ids" Server-Sent Events each holding a JSON array of
+   * {@code batch} IDs, at {@code rate} IDs per second. Subscriptions which the agent's rate limit
+   * could never serve are rejected up front.
+   *
+   * @param agent User Agent
+   * @param rate Number of IDs to push per second
+   * @param batch Number of IDs in each event
+   * @return event stream
+   */
+  @GET
+  @Timed
+  @Produces(SseFeature.SERVER_SENT_EVENTS)
+  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
+  public EventOutput subscribe(
+      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
+      @QueryParam("rate") @DefaultValue("1000") final IntParam rate,
+      @QueryParam("batch") @DefaultValue("100") final IntParam batch) {
+
+    if (rate.get() < 1 || rate.get() > MAX_RATE) {
+      throw new SnowizardException(
+          Response.Status.BAD_REQUEST, String.format("rate must be between 1 and %d", MAX_RATE));
+    }
+    final int maxBatch = Math.min(maxCount, rate.get());
+    if (batch.get() < 1 || batch.get() > maxBatch) {
+      throw new SnowizardException(
+          Response.Status.BAD_REQUEST, String.format("batch must be between 1 and %d", maxBatch));
+    }
+    if (!worker.isValidUserAgent(agent)) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header");
+    }
+    final long capacity = limiter.getCapacity(agent);
+    if (batch.get() > capacity) {
+      throw new SnowizardException(
+          Response.Status.BAD_REQUEST,
+          String.format("batch must not exceed the agent's burst of %d IDs", capacity));
+    }
+    final long idsPerSecond = limiter.getIdsPerSecond(agent);
+    if (idsPerSecond > 0 && rate.get() > idsPerSecond) {
+      throw new SnowizardException(
+          TOO_MANY_REQUESTS,
+          String.format(
+              "rate must not exceed the agent's limit of %d IDs per second", idsPerSecond));
+    }
+
+    final EventOutput output = new EventOutput();
+    try {
+      executor.execute(
+          new IdEventPublisher(worker, limiter, output, agent, rate.get(), batch.get()));
+    } catch (final RejectedExecutionException e) {
+      LOGGER.warn("Too many subscribers, rejecting agent ({})", agent);
+      try {
+        output.close();
+      } catch (final IOException ignored) {
+        // nothing has been written yet
+      }
+      throw new SnowizardException(Response.Status.SERVICE_UNAVAILABLE, "Too many subscribers", e);
+    }
+    return output;
+  }
+}
@@ -28,36 +28,25 @@ package com.smoketurner.snowizard.application.resources;
 
 import com.codahale.metrics.annotation.Timed;
 import com.smoketurner.snowizard.api.Id;
-import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
-import com.smoketurner.snowizard.application.exceptions.SnowizardException;
+import com.smoketurner.snowizard.api.SnowizardMediaType;
+import com.smoketurner.snowizard.application.filters.ConcurrencyLimited;
+import com.smoketurner.snowizard.application.filters.HeadroomReported;
 import com.smoketurner.snowizard.core.IdWorker;
-import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
-import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
 import io.dropwizard.jersey.caching.CacheControl;
-import io.dropwizard.jersey.params.IntParam;
-import io.dropwizard.jersey.protobuf.ProtocolBufferMediaType;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
-import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
 import org.glassfish.jersey.server.JSONP;
 import org.hibernate.validator.constraints.NotEmpty;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 @Path("/")
-public class IdResource {
-
-  private static final Logger LOGGER = LoggerFactory.getLogger(IdResource.class);
-  private final IdWorker worker;
+@ConcurrencyLimited
+@HeadroomReported
+public class IdResource extends AbstractIdResource {
 
   /**
    * Constructor
@@ -65,80 +54,78 @@ public class IdResource {
    * @param worker ID worker
    */
   public IdResource(final IdWorker worker) {
-    this.worker = Objects.requireNonNull(worker);
+    this(worker, AgentRateLimiter.unlimited());
   }
 
   /**
-   * Get a new ID and handle any thrown exceptions
+   * Constructor
    *
-   * @param agent User Agent
-   * @return generated ID
-   * @throws SnowizardException if invalid agent or clock
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
    */
-  public long getId(final String agent) {
-    try {
-      return worker.getId(agent);
-    } catch (final InvalidUserAgentError e) {
-      LOGGER.error("Invalid user agent ({})", agent);
-      throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header", e);
-    } catch (final InvalidSystemClock e) {
-      LOGGER.error("Invalid system clock", e);
-      throw new SnowizardException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e);
-    }
+  public IdResource(final IdWorker worker, final AgentRateLimiter limiter) {
+    this(worker, limiter, DEFAULT_MAX_COUNT);
   }
 
   /**
-   * Get a new ID as plain text
+   * Constructor
    *
-   * @param agent User Agent
-   * @return generated ID
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param maxCount Maximum number of IDs in a single batch
    */
-  @GET
-  @Timed
-  @Produces(MediaType.TEXT_PLAIN)
-  @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
-  public String getIdAsString(@HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent) {
-    return String.valueOf(getId(agent));
+  public IdResource(final IdWorker worker, final AgentRateLimiter limiter, final int maxCount) {
+    this(worker, limiter, maxCount, DEFAULT_MAX_STREAM_COUNT);
   }
 
   /**
-   * Get a new ID as JSON
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param maxCount Maximum number of IDs in a single batch
+   * @param maxStreamCount Maximum number of IDs in a single streamed response
+   */
+  public IdResource(
+      final IdWorker worker,
+      final AgentRateLimiter limiter,
+      final int maxCount,
+      final int maxStreamCount) {
+    super(worker, limiter, maxCount, maxStreamCount);
+  }
+
+  /**
+   * Get a new ID as plain text
    *
    * @param agent User Agent
-   * @return generated ID
+   * @return generated ID, written as decimal digits
    */
   @GET
   @Timed
-  @JSONP(callback = "callback", queryParam = "callback")
-  @Produces({MediaType.APPLICATION_JSON, "application/javascript"})
+  @Produces(MediaType.TEXT_PLAIN)
   @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
-  public Id getIdAsJSON(@HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent) {
+  public Id getIdAsString(@HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent) {
     return new Id(getId(agent));
   }
 
   /**
-   * Get one or more IDs as a Google Protocol Buffer response
+   * Get a new ID as JSON, or as CBOR, Smile or MessagePack with the same structure
    *
    * @param agent User Agent
-   * @param count Number of IDs to return
-   * @return generated IDs
+   * @return generated ID
    */
   @GET
   @Timed
-  @Produces(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+  @JSONP(callback = "callback", queryParam = "callback")
+  @Produces({
+    MediaType.APPLICATION_JSON,
+    "application/javascript",
+    SnowizardMediaType.APPLICATION_CBOR,
+    SnowizardMediaType.APPLICATION_SMILE,
+    SnowizardMediaType.APPLICATION_MSGPACK
+  })
   @CacheControl(mustRevalidate = true, noCache = true, noStore = true)
-  public SnowizardResponse getIdAsProtobuf(
-      @HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent,
-      @QueryParam("count") @DefaultValue("1") final IntParam count) {
-
-    final List<Long> ids = new ArrayList<>();
-    if (count != null) {
-      for (int i = 0; i < count.get(); i++) {
-        ids.add(getId(agent));
-      }
-    } else {
-      ids.add(getId(agent));
-    }
-    return SnowizardResponse.newBuilder().addAllId(ids).build();
+  public Id getIdAsJSON(@HeaderParam(HttpHeaders.USER_AGENT) final @NotEmpty String agent) {
+    return new Id(getId(agent));
   }
 }
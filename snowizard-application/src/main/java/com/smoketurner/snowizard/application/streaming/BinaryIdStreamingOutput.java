@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.streaming;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams IDs as raw 8-byte big-endian values with no framing, the same layout {@link
+ * java.io.DataOutputStream#writeLong(long)} produces. The response length is always eight times the
+ * number of IDs.
+ */
+public class BinaryIdStreamingOutput extends IdStreamingOutput {
+
+  private final byte[] buffer;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param agent User Agent
+   * @param count Number of IDs to write
+   */
+  public BinaryIdStreamingOutput(final IdWorker worker, final String agent, final int count) {
+    super(worker, agent, count);
+    this.buffer = new byte[Math.min(count, CHUNK_SIZE) * Long.BYTES];
+  }
+
+  @Override
+  protected void writeChunk(final long[] ids, final int length, final OutputStream output)
+      throws IOException {
+    int position = 0;
+    for (int i = 0; i < length; i++) {
+      final long id = ids[i];
+      buffer[position++] = (byte) (id >>> 56);
+      buffer[position++] = (byte) (id >>> 48);
+      buffer[position++] = (byte) (id >>> 40);
+      buffer[position++] = (byte) (id >>> 32);
+      buffer[position++] = (byte) (id >>> 24);
+      buffer[position++] = (byte) (id >>> 16);
+      buffer[position++] = (byte) (id >>> 8);
+      buffer[position++] = (byte) id;
+    }
+    output.write(buffer, 0, position);
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.streaming;
+
+import com.smoketurner.snowizard.application.providers.IdBatch;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.MediaType;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pushes batches of IDs to a Server-Sent Events subscriber at a fixed rate until the subscriber
+ * disconnects. Writes block while the subscriber isn't reading, and a late batch resets the
+ * schedule instead of being made up with a burst, so a slow subscriber only ever receives IDs as
+ * fast as it consumes them. A batch skipped because of the agent's rate limit is replaced by a
+ * comment, so that a subscriber which has gone away is still noticed.
+ */
+public class IdEventPublisher implements Runnable {
+
+  public static final String EVENT_NAME = "ids";
+  public static final String SKIPPED_COMMENT = "rate limited";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdEventPublisher.class);
+  private static final OutboundEvent SKIPPED =
+      new OutboundEvent.Builder().comment(SKIPPED_COMMENT).build();
+  private final IdWorker worker;
+  private final AgentRateLimiter limiter;
+  private final EventOutput output;
+  private final String agent;
+  private final int batchSize;
+  private final long intervalNanos;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param limiter Per-agent rate limiter
+   * @param output Subscriber's event stream
+   * @param agent User Agent
+   * @param rate Number of IDs to push per second
+   * @param batchSize Number of IDs in each event
+   */
+  public IdEventPublisher(
+      final IdWorker worker,
+      final AgentRateLimiter limiter,
+      final EventOutput output,
+      final String agent,
+      final int rate,
+      final int batchSize) {
+    this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
+    this.output = Objects.requireNonNull(output);
+    this.agent = Objects.requireNonNull(agent);
+    this.batchSize = batchSize;
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(batchSize) / rate;
+  }
+
+  @Override
+  public void run() {
+    long deadline = System.nanoTime();
+    try {
+      while (!output.isClosed()) {
+        // batches over the agent's rate limit are skipped rather than queued
+        if (limiter.tryAcquire(agent, batchSize)) {
+          final long[] ids = new long[batchSize];
+          worker.getIds(agent, ids, 0, batchSize);
+          output.write(
+              new OutboundEvent.Builder()
+                  .name(EVENT_NAME)
+                  .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                  .data(IdBatch.class, new IdBatch(ids))
+                  .build());
+        } else {
+          output.write(SKIPPED);
+        }
+
+        deadline += intervalNanos;
+        final long delay = deadline - System.nanoTime();
+        if (delay > 0) {
+          TimeUnit.NANOSECONDS.sleep(delay);
+        } else {
+          deadline = System.nanoTime();
+        }
+      }
+    } catch (final IOException e) {
+      LOGGER.debug("Subscriber disconnected ({})", agent);
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+    } catch (final InvalidSystemClock e) {
+      LOGGER.error("Invalid system clock", e);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      close();
+    }
+  }
+
+  /** Close the subscriber's event stream */
+  private void close() {
+    try {
+      output.close();
+    } catch (final IOException e) {
+      LOGGER.debug("Unable to close event stream", e);
+    }
+  }
+}
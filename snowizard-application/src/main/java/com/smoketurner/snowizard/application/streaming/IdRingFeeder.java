@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.streaming;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import com.smoketurner.snowizard.ipc.IdRingWriter;
+import io.dropwizard.lifecycle.Managed;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one memory-mapped ID ring per co-located consumer topped up, so consumers can claim IDs
+ * with {@link com.smoketurner.snowizard.ipc.IdRingReader} without a round-trip to this process.
+ * Each consumer's name is used as its user agent, and the ring of consumer {@code name} is the file
+ * {@code name.ring} in the configured directory.
+ *
+ * <p>IDs are generated when they are published rather than when they are claimed, so an ID's
+ * timestamp can be up to one ring's worth of consumption older than the moment it was claimed.
+ */
+public class IdRingFeeder implements Managed, Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdRingFeeder.class);
+  private static final int BATCH_SIZE = 4096;
+
+  private final IdWorker worker;
+  private final ScheduledExecutorService scheduler;
+  private final Path directory;
+  private final List<String> consumers;
+  private final int capacity;
+  private final long interval;
+  private final TimeUnit unit;
+  private final MetricRegistry registry;
+  private final Meter publishedMeter;
+  private final Map<String, IdRingWriter> writers = new LinkedHashMap<>();
+  private final long[] ids = new long[BATCH_SIZE];
+
+  @Nullable private ScheduledFuture<?> future;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param scheduler Executor which refills the rings
+   * @param directory Directory holding the ring files
+   * @param consumers Names of the consumers, one ring each
+   * @param capacity Number of IDs each ring holds, a power of two
+   * @param interval How often to refill the rings
+   * @param unit Unit of {@code interval}
+   * @param registry Metric registry
+   */
+  public IdRingFeeder(
+      final IdWorker worker,
+      final ScheduledExecutorService scheduler,
+      final Path directory,
+      final List<String> consumers,
+      final int capacity,
+      final long interval,
+      final TimeUnit unit,
+      final MetricRegistry registry) {
+    this.worker = Objects.requireNonNull(worker);
+    this.scheduler = Objects.requireNonNull(scheduler);
+    this.directory = Objects.requireNonNull(directory);
+    this.consumers = Objects.requireNonNull(consumers);
+    this.capacity = capacity;
+    this.interval = interval;
+    this.unit = Objects.requireNonNull(unit);
+    this.registry = Objects.requireNonNull(registry);
+    this.publishedMeter = registry.meter(MetricRegistry.name(IdRingFeeder.class, "published"));
+  }
+
+  @Override
+  public void start() throws IOException {
+    Files.createDirectories(directory);
+    for (final String consumer : consumers) {
+      if (!worker.isValidUserAgent(consumer)) {
+        throw new IllegalArgumentException("Invalid consumer name: " + consumer);
+      }
+      final Path path = directory.resolve(consumer + ".ring");
+      final IdRingWriter writer = IdRingWriter.create(path, capacity);
+      writers.put(consumer, writer);
+      registry.register(
+          MetricRegistry.name(IdRingFeeder.class, consumer, "available"),
+          (Gauge<Integer>) writer::getAvailable);
+      LOGGER.info("Publishing IDs for consumer ({}) to {}", consumer, path);
+    }
+    future = scheduler.scheduleWithFixedDelay(this, 0, interval, unit);
+  }
+
+  @Override
+  public void stop() throws IOException {
+    if (future != null) {
+      future.cancel(false);
+    }
+    for (final Map.Entry<String, IdRingWriter> entry : writers.entrySet()) {
+      registry.remove(MetricRegistry.name(IdRingFeeder.class, entry.getKey(), "available"));
+      entry.getValue().close();
+    }
+    writers.clear();
+  }
+
+  @Override
+  public void run() {
+    for (final Map.Entry<String, IdRingWriter> entry : writers.entrySet()) {
+      try {
+        refill(entry.getKey(), entry.getValue());
+      } catch (final InvalidSystemClock e) {
+        // try again on the next run rather than let the exception cancel the schedule
+        LOGGER.error("Invalid system clock", e);
+        return;
+      } catch (final InvalidUserAgentError e) {
+        LOGGER.error("Invalid consumer name ({})", entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Fill every free slot of a ring
+   *
+   * @param consumer Consumer name, used as the user agent
+   * @param writer Consumer's ring
+   * @throws InvalidUserAgentError When the consumer name is not a valid user agent
+   * @throws InvalidSystemClock When the system clock is moving backward
+   */
+  private void refill(final String consumer, final IdRingWriter writer)
+      throws InvalidUserAgentError, InvalidSystemClock {
+    int free = writer.getFree();
+    while (free > 0) {
+      final int count = Math.min(free, ids.length);
+      worker.getIds(consumer, ids, 0, count);
+      writer.publish(ids, 0, count);
+      publishedMeter.mark(count);
+      free -= count;
+    }
+  }
+}
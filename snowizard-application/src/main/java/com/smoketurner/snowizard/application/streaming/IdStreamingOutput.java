@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.streaming;
+
+import com.smoketurner.snowizard.application.exceptions.SnowizardException;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes IDs to the response as they are generated, one chunk at a time, and flushes after every
+ * chunk. Only a single chunk of IDs is ever held in memory, regardless of how many are requested.
+ */
+public abstract class IdStreamingOutput implements StreamingOutput {
+
+  public static final int CHUNK_SIZE = 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdStreamingOutput.class);
+  private final IdWorker worker;
+  private final String agent;
+  private final int count;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param agent User Agent
+   * @param count Number of IDs to write
+   */
+  protected IdStreamingOutput(final IdWorker worker, final String agent, final int count) {
+    this.worker = Objects.requireNonNull(worker);
+    this.agent = Objects.requireNonNull(agent);
+    this.count = count;
+  }
+
+  @Override
+  public void write(final OutputStream output) throws IOException {
+    final long[] ids = new long[Math.min(count, CHUNK_SIZE)];
+    int remaining = count;
+    while (remaining > 0) {
+      final int length = Math.min(remaining, ids.length);
+      try {
+        worker.getIds(agent, ids, 0, length);
+      } catch (final InvalidUserAgentError e) {
+        LOGGER.error("Invalid user agent ({})", agent);
+        throw new SnowizardException(Response.Status.BAD_REQUEST, "Invalid User-Agent header", e);
+      } catch (final InvalidSystemClock e) {
+        LOGGER.error("Invalid system clock", e);
+        throw new SnowizardException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+      }
+      writeChunk(ids, length, output);
+      output.flush();
+      remaining -= length;
+    }
+  }
+
+  /**
+   * Write a chunk of IDs to the response
+   *
+   * @param ids Generated IDs
+   * @param length Number of IDs to write from the start of the array
+   * @param output Response stream
+   * @throws IOException if unable to write to the response
+   */
+  protected abstract void writeChunk(long[] ids, int length, OutputStream output)
+      throws IOException;
+}
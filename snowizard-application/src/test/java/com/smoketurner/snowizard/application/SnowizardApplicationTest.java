@@ -27,6 +27,7 @@
 package com.smoketurner.snowizard.application;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -40,6 +41,7 @@ import com.smoketurner.snowizard.application.resources.PingResource;
 import com.smoketurner.snowizard.application.resources.VersionResource;
 import io.dropwizard.client.JerseyClientBuilder;
 import io.dropwizard.jersey.setup.JerseyEnvironment;
+import io.dropwizard.lifecycle.setup.ExecutorServiceBuilder;
 import io.dropwizard.lifecycle.setup.LifecycleEnvironment;
 import io.dropwizard.setup.Environment;
 import io.dropwizard.testing.ResourceHelpers;
@@ -70,6 +72,8 @@ public class SnowizardApplicationTest {
     config.getZipkin().setServiceName("snowizard");
     when(environment.jersey()).thenReturn(jersey);
     when(environment.lifecycle()).thenReturn(lifecycle);
+    when(lifecycle.executorService(anyString()))
+        .thenAnswer(invocation -> new ExecutorServiceBuilder(lifecycle, invocation.getArgument(0)));
     when(environment.metrics()).thenReturn(metrics);
     when(environment.healthChecks()).thenReturn(healthChecks);
   }
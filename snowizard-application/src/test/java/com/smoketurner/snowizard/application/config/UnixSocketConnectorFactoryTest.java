@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.dropwizard.jackson.DiscoverableSubtypeResolver;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jetty.ConnectorFactory;
+import java.io.File;
+import java.io.IOException;
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UnixSocketConnectorFactoryTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testIsDiscoverable() throws Exception {
+    assertThat(new DiscoverableSubtypeResolver().getDiscoveredSubtypes())
+        .contains(UnixSocketConnectorFactory.class);
+  }
+
+  @Test
+  public void testDeserialize() throws Exception {
+    final ConnectorFactory factory =
+        Jackson.newObjectMapper()
+            .readValue(
+                "{\"type\":\"unix\",\"path\":\"/var/run/snowizard.sock\"}", ConnectorFactory.class);
+
+    assertThat(factory).isInstanceOf(UnixSocketConnectorFactory.class);
+    assertThat(((UnixSocketConnectorFactory) factory).getPath())
+        .isEqualTo("/var/run/snowizard.sock");
+  }
+
+  @Test
+  public void testRemovesStaleSocket() throws Exception {
+    final File file = new File(folder.getRoot(), "test.sock");
+    // closing a socket leaves its file behind
+    listen(file).close();
+    assertThat(file).exists();
+
+    UnixSocketConnectorFactory.removeStaleSocket(file.toPath());
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void testKeepsSocketInUse() throws Exception {
+    final File file = new File(folder.getRoot(), "test.sock");
+    try (UnixServerSocketChannel channel = listen(file)) {
+      assertThatThrownBy(() -> UnixSocketConnectorFactory.removeStaleSocket(file.toPath()))
+          .isInstanceOf(IOException.class)
+          .hasMessage("Another process is already listening on " + file);
+      assertThat(file).exists();
+    }
+  }
+
+  @Test
+  public void testKeepsOtherFiles() throws Exception {
+    final File file = folder.newFile("test.sock");
+
+    assertThatThrownBy(() -> UnixSocketConnectorFactory.removeStaleSocket(file.toPath()))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Refusing to replace " + file + ", which is not a socket");
+    assertThat(file).exists();
+  }
+
+  private static UnixServerSocketChannel listen(final File file) throws IOException {
+    final UnixServerSocketChannel channel = UnixServerSocketChannel.open();
+    channel.socket().bind(new UnixSocketAddress(file));
+    return channel;
+  }
+}
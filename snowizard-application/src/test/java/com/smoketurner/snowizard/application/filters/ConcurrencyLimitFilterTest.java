@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.filters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.smoketurner.snowizard.application.exceptions.SnowizardExceptionMapper;
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ConcurrencyLimitFilterTest {
+
+  @Path("/")
+  @ConcurrencyLimited
+  public static class LimitedResource {
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final AtomicLong clock;
+    private final AtomicInteger inflightWhileWriting = new AtomicInteger(-1);
+
+    public LimitedResource(final AdaptiveConcurrencyLimiter limiter, final AtomicLong clock) {
+      this.limiter = limiter;
+      this.clock = clock;
+    }
+
+    @GET
+    @Path("stream")
+    @Produces(MediaType.TEXT_PLAIN)
+    public StreamingOutput stream() {
+      return output -> {
+        inflightWhileWriting.set(limiter.getInflight());
+        output.write('1');
+      };
+    }
+
+    @GET
+    @Path("slow")
+    @Produces(MediaType.TEXT_PLAIN)
+    public StreamingOutput slow() {
+      return output -> {
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        output.write('1');
+      };
+    }
+
+    @HEAD
+    @Path("stream")
+    public Response head() {
+      return Response.ok().build();
+    }
+
+    @GET
+    @Path("empty")
+    public Response empty() {
+      return Response.noContent().build();
+    }
+
+    @GET
+    @Path("error")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response error() {
+      return Response.serverError().entity("error").build();
+    }
+  }
+
+  private final AtomicLong clock = new AtomicLong();
+  private final AdaptiveConcurrencyLimiter limiter =
+      new AdaptiveConcurrencyLimiter(6, 1, 100) {
+        @Override
+        public long nanoTime() {
+          return clock.get();
+        }
+      };
+  private final LimitedResource resource = new LimitedResource(limiter, clock);
+
+  @Rule
+  public final ResourceTestRule resources =
+      ResourceTestRule.builder()
+          .addProvider(new SnowizardExceptionMapper())
+          .addProvider(new ConcurrencyLimitFilter(limiter))
+          .addResource(resource)
+          .build();
+
+  @Test
+  public void testStreamingResponseHoldsPermitUntilWritten() throws Exception {
+    final Response response = resources.target("/stream").request().get();
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class)).isEqualTo("1");
+    assertThat(resource.inflightWhileWriting.get()).isEqualTo(1);
+    assertThat(limiter.getInflight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testSlowStreamingResponseDoesNotLowerLimit() throws Exception {
+    // record a 1ms baseline
+    assertThat(limiter.tryAcquire()).isTrue();
+    final long start = limiter.nanoTime();
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    limiter.release(start);
+
+    // keep enough requests in flight for the limit to be adjusted
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isTrue();
+
+    final Response response = resources.target("/slow").request().get();
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class)).isEqualTo("1");
+    assertThat(limiter.getInflight()).isEqualTo(2);
+    assertThat(limiter.getLimit()).isEqualTo(6);
+  }
+
+  @Test
+  public void testResponseWithoutEntityReleasesPermit() throws Exception {
+    final Response response = resources.target("/empty").request().get();
+    assertThat(response.getStatus()).isEqualTo(204);
+    assertThat(limiter.getInflight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testHeadReleasesPermit() throws Exception {
+    final Response response = resources.target("/stream").request().head();
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(limiter.getInflight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testServerErrorReleasesPermit() throws Exception {
+    final Response response = resources.target("/error").request().get();
+    assertThat(response.getStatus()).isEqualTo(500);
+    assertThat(limiter.getInflight()).isEqualTo(0);
+  }
+}
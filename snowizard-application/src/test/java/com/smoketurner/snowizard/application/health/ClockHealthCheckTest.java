@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.health.HealthCheck.Result;
+import com.smoketurner.snowizard.core.IdWorker;
+import io.dropwizard.util.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClockHealthCheckTest {
+
+  private final IdWorker worker = mock(IdWorker.class);
+  private final ManualClock meterClock = new ManualClock();
+  private final Meter invalidClock = new Meter(meterClock);
+  private ManualClockHealthCheck check;
+
+  static class ManualClock extends Clock {
+    public long tick = 0L;
+
+    @Override
+    public long getTick() {
+      return tick;
+    }
+  }
+
+  class ManualClockHealthCheck extends ClockHealthCheck {
+    public long time = 0L;
+
+    public ManualClockHealthCheck() {
+      super(worker, Duration.milliseconds(100));
+    }
+
+    @Override
+    protected long nanoTime() {
+      return time;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    when(worker.getInvalidClockMeter()).thenReturn(invalidClock);
+    when(worker.getTimestamp()).thenReturn(10_000L);
+    when(worker.getLastTimestamp()).thenReturn(9_000L);
+    check = new ManualClockHealthCheck();
+  }
+
+  @Test
+  public void testHealthy() throws Exception {
+    check.time += TimeUnit.SECONDS.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(11_000L);
+
+    final Result result = check.execute();
+    assertThat(result.isHealthy()).isTrue();
+  }
+
+  @Test
+  public void testClockBehindLastId() throws Exception {
+    check.time += TimeUnit.SECONDS.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(11_000L);
+    when(worker.getLastTimestamp()).thenReturn(11_500L);
+
+    final Result result = check.execute();
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage()).isEqualTo("Clock is 500 ms behind the last generated ID");
+  }
+
+  @Test
+  public void testClockDrift() throws Exception {
+    check.time += TimeUnit.SECONDS.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(8_000L);
+    when(worker.getLastTimestamp()).thenReturn(7_000L);
+
+    final Result result = check.execute();
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage()).isEqualTo("Clock drifted -3000 ms from the monotonic clock");
+  }
+
+  @Test
+  public void testClockDriftReportedToEveryPoller() throws Exception {
+    check.time += TimeUnit.SECONDS.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(8_000L);
+    when(worker.getLastTimestamp()).thenReturn(7_000L);
+
+    assertThat(check.execute().isHealthy()).isFalse();
+    assertThat(check.execute().isHealthy()).isFalse();
+
+    // the reference point moves forward once it is a minute old
+    check.time += TimeUnit.MINUTES.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(68_000L);
+    assertThat(check.execute().isHealthy()).isFalse();
+
+    check.time += TimeUnit.MINUTES.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(128_000L);
+    assertThat(check.execute().isHealthy()).isTrue();
+  }
+
+  @Test
+  public void testClockDriftReportedForFullWindow() throws Exception {
+    // the drift is found by the check which moves the reference point forward
+    check.time += TimeUnit.MINUTES.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(73_000L);
+    assertThat(check.execute().getMessage())
+        .isEqualTo("Clock drifted 3000 ms from the monotonic clock");
+
+    check.time += TimeUnit.SECONDS.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(74_000L);
+    final Result result = check.execute();
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage()).isEqualTo("Clock drifted 3000 ms from the monotonic clock");
+
+    check.time += TimeUnit.SECONDS.toNanos(58);
+    when(worker.getTimestamp()).thenReturn(132_000L);
+    assertThat(check.execute().isHealthy()).isFalse();
+
+    check.time += TimeUnit.SECONDS.toNanos(1);
+    when(worker.getTimestamp()).thenReturn(133_000L);
+    assertThat(check.execute().isHealthy()).isTrue();
+  }
+
+  @Test
+  public void testInvalidClockErrors() throws Exception {
+    check.time += TimeUnit.SECONDS.toNanos(5);
+    when(worker.getTimestamp()).thenReturn(15_000L);
+    invalidClock.mark(2);
+    meterClock.tick += TimeUnit.SECONDS.toNanos(6);
+
+    final Result result = check.execute();
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage())
+        .isEqualTo("24.0 requests per minute rejected because the clock moved backwards");
+
+    // every poller sees the same rate
+    assertThat(check.execute().isHealthy()).isFalse();
+
+    // and it recovers once the errors stop
+    check.time += TimeUnit.MINUTES.toNanos(10);
+    meterClock.tick += TimeUnit.MINUTES.toNanos(10);
+    when(worker.getTimestamp()).thenReturn(615_000L);
+    assertThat(check.execute().isHealthy()).isTrue();
+  }
+}
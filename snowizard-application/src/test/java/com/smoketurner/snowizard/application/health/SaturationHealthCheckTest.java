@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.health.HealthCheck.Result;
+import com.smoketurner.snowizard.core.IdWorker;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SaturationHealthCheckTest {
+
+  private final IdWorker worker = mock(IdWorker.class);
+  private final ManualClock clock = new ManualClock();
+  private final Meter exhausted = new Meter(clock);
+  private final SaturationHealthCheck check = new SaturationHealthCheck(worker, 0.5);
+
+  static class ManualClock extends Clock {
+    public long tick = 0L;
+
+    @Override
+    public long getTick() {
+      return tick;
+    }
+  }
+
+  @Before
+  public void setUp() {
+    when(worker.getExhaustedMeter()).thenReturn(exhausted);
+  }
+
+  @Test
+  public void testHealthy() throws Exception {
+    exhausted.mark(500);
+    clock.tick += TimeUnit.SECONDS.toNanos(6);
+
+    assertThat(check.execute().isHealthy()).isTrue();
+  }
+
+  @Test
+  public void testSustainedSaturation() throws Exception {
+    exhausted.mark(4_500);
+    clock.tick += TimeUnit.SECONDS.toNanos(6);
+
+    final Result result = check.execute();
+    assertThat(result.isHealthy()).isFalse();
+    assertThat(result.getMessage()).isEqualTo("Sequence space exhausted in 90% of milliseconds");
+
+    // every poller sees the same rate
+    assertThat(check.execute().isHealthy()).isFalse();
+
+    // and recovers once the load goes away
+    clock.tick += TimeUnit.MINUTES.toNanos(10);
+    assertThat(check.execute().isHealthy()).isTrue();
+  }
+}
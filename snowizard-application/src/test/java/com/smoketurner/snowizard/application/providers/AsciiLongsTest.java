@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.providers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class AsciiLongsTest {
+
+  private static String format(final long value) {
+    final byte[] buffer = new byte[AsciiLongs.MAX_LENGTH + 2];
+    final int end = AsciiLongs.put(value, buffer, 2);
+    return new String(buffer, 2, end - 2, StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  public void testPut() {
+    assertThat(format(0L)).isEqualTo("0");
+    assertThat(format(9L)).isEqualTo("9");
+    assertThat(format(10L)).isEqualTo("10");
+    assertThat(format(1234567890123L)).isEqualTo("1234567890123");
+    assertThat(format(999999999999999999L)).isEqualTo("999999999999999999");
+    assertThat(format(1000000000000000000L)).isEqualTo("1000000000000000000");
+    assertThat(format(Long.MAX_VALUE)).isEqualTo(Long.toString(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPutNegative() {
+    assertThat(format(-1L)).isEqualTo("-1");
+    assertThat(format(Long.MIN_VALUE)).isEqualTo(Long.toString(Long.MIN_VALUE));
+  }
+}
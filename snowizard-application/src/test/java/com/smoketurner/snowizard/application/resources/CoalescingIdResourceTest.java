@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.resources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.snowizard.application.exceptions.SnowizardExceptionMapper;
+import com.smoketurner.snowizard.application.providers.JsonIdWriter;
+import com.smoketurner.snowizard.application.providers.TextIdWriter;
+import com.smoketurner.snowizard.core.IdCoalescer;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.Priority;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import io.dropwizard.testing.junit.DropwizardClientRule;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class CoalescingIdResourceTest {
+  private static final String AGENT = "test-agent";
+  private static final IdWorker worker = mock(IdWorker.class);
+
+  // suspended responses need a real container, which the in-memory ResourceTestRule is not
+  @ClassRule
+  public static final DropwizardClientRule resources =
+      new DropwizardClientRule(
+          new SnowizardExceptionMapper(),
+          new JsonIdWriter(),
+          new TextIdWriter(),
+          new CoalescingIdResource(
+              worker,
+              AgentRateLimiter.unlimited(),
+              AbstractIdResource.DEFAULT_MAX_COUNT,
+              AbstractIdResource.DEFAULT_MAX_STREAM_COUNT,
+              new IdCoalescer(
+                  worker,
+                  mock(ScheduledExecutorService.class),
+                  1,
+                  1,
+                  TimeUnit.HOURS,
+                  new MetricRegistry())));
+
+  private static Client client;
+
+  @BeforeClass
+  public static void setUp() {
+    client = ClientBuilder.newClient();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    client.close();
+  }
+
+  @Before
+  public void setUpWorker() {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+  }
+
+  @After
+  public void resetWorker() {
+    reset(worker);
+  }
+
+  @Test
+  public void testGetIdAsStringCoalesced() throws Exception {
+    doAnswer(
+            invocation -> {
+              final long[] ids = invocation.getArgument(0);
+              ids[0] = 100L;
+              return null;
+            })
+        .when(worker)
+        .nextIds(any(long[].class), eq(0), eq(1), eq(Priority.BULK));
+
+    final Response response =
+        client
+            .target(resources.baseUri())
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class)).isEqualTo("100");
+    verify(worker, never()).getId(AGENT);
+  }
+
+  @Test
+  public void testGetIdAsJSONCoalesced() throws Exception {
+    doAnswer(
+            invocation -> {
+              final long[] ids = invocation.getArgument(0);
+              ids[0] = 100L;
+              return null;
+            })
+        .when(worker)
+        .nextIds(any(long[].class), eq(0), eq(1), eq(Priority.BULK));
+
+    final Response response =
+        client
+            .target(resources.baseUri())
+            .request(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class)).isEqualTo("{\"id\":100,\"id_str\":\"100\"}");
+  }
+
+  @Test
+  public void testGetIdAsJSONCoalescedInvalidClock() throws Exception {
+    doThrow(new InvalidSystemClock())
+        .when(worker)
+        .nextIds(any(long[].class), eq(0), eq(1), eq(Priority.BULK));
+
+    final Response response =
+        client
+            .target(resources.baseUri())
+            .request(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(500);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.resources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.smoketurner.snowizard.application.exceptions.SnowizardExceptionMapper;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import io.dropwizard.jersey.errors.ErrorMessage;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import org.glassfish.jersey.media.sse.SseFeature;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class IdEventResourceTest {
+  private static final String AGENT = "test-agent";
+  private static final String LIMITED_AGENT = "limited-agent";
+  private final IdWorker worker = mock(IdWorker.class);
+  private final AgentRateLimiter limiter =
+      new AgentRateLimiter(
+          0L, Collections.singletonMap(LIMITED_AGENT, 100L), 500L, TimeUnit.MILLISECONDS);
+  private final ExecutorService executor = mock(ExecutorService.class);
+
+  @Rule
+  public final ResourceTestRule resources =
+      ResourceTestRule.builder()
+          .addProvider(new SnowizardExceptionMapper())
+          .addProvider(SseFeature.class)
+          .addResource(new IdEventResource(worker, limiter, executor, IdResource.DEFAULT_MAX_COUNT))
+          .build();
+
+  @Test
+  public void testSubscribeInvalidRate() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+
+    final Response response = subscribe(0, 1);
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo("rate must be between 1 and 1000000");
+    verify(executor, never()).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void testSubscribeBatchLargerThanRate() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+
+    final Response response = subscribe(10, 100);
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo("batch must be between 1 and 10");
+    verify(executor, never()).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void testSubscribeInvalidUserAgent() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(false);
+
+    final Response response = subscribe(1000, 100);
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo("Invalid User-Agent header");
+    verify(executor, never()).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void testSubscribeBatchLargerThanBurst() throws Exception {
+    when(worker.isValidUserAgent(LIMITED_AGENT)).thenReturn(true);
+
+    final Response response = subscribe(LIMITED_AGENT, 100, 80);
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo("batch must not exceed the agent's burst of 50 IDs");
+    verify(executor, never()).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void testSubscribeRateAboveLimit() throws Exception {
+    when(worker.isValidUserAgent(LIMITED_AGENT)).thenReturn(true);
+
+    final Response response = subscribe(LIMITED_AGENT, 1000, 10);
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(429);
+    assertThat(message.getMessage())
+        .isEqualTo("rate must not exceed the agent's limit of 100 IDs per second");
+    verify(executor, never()).execute(any(Runnable.class));
+  }
+
+  @Test
+  public void testSubscribeTooManySubscribers() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+    doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+
+    final Response response = subscribe(1000, 100);
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(message.getMessage()).isEqualTo("Too many subscribers");
+  }
+
+  private Response subscribe(final int rate, final int batch) {
+    return subscribe(AGENT, rate, batch);
+  }
+
+  private Response subscribe(final String agent, final int rate, final int batch) {
+    return resources
+        .client()
+        .target("/events")
+        .queryParam("rate", rate)
+        .queryParam("batch", batch)
+        .request(SseFeature.SERVER_SENT_EVENTS)
+        .header(HttpHeaders.USER_AGENT, agent)
+        .get();
+  }
+}
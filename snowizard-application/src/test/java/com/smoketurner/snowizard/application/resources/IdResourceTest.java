@@ -27,27 +27,52 @@
 package com.smoketurner.snowizard.application.resources;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.smoketurner.snowizard.api.Id;
+import com.smoketurner.snowizard.api.IdEncoding;
+import com.smoketurner.snowizard.api.SnowizardMediaType;
 import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
 import com.smoketurner.snowizard.application.exceptions.SnowizardExceptionMapper;
+import com.smoketurner.snowizard.application.providers.CborIdWriter;
+import com.smoketurner.snowizard.application.providers.JsonIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.JsonIdWriter;
+import com.smoketurner.snowizard.application.providers.MessagePackIdWriter;
+import com.smoketurner.snowizard.application.providers.ProtobufIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.SmileIdWriter;
+import com.smoketurner.snowizard.application.providers.TextIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.TextIdWriter;
 import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
 import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
 import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
 import io.dropwizard.jersey.errors.ErrorMessage;
 import io.dropwizard.jersey.protobuf.ProtocolBufferMediaType;
 import io.dropwizard.jersey.protobuf.ProtocolBufferMessageBodyProvider;
 import io.dropwizard.testing.junit.ResourceTestRule;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
 
 public class IdResourceTest {
   private static final String AGENT = "test-agent";
@@ -59,9 +84,40 @@ public class IdResourceTest {
       ResourceTestRule.builder()
           .addProvider(new SnowizardExceptionMapper())
           .addProvider(new ProtocolBufferMessageBodyProvider())
+          .addProvider(new ProtobufIdBatchWriter())
+          .addProvider(new JsonIdWriter())
+          .addProvider(new JsonIdBatchWriter())
+          .addProvider(new TextIdWriter())
+          .addProvider(new TextIdBatchWriter())
+          .addProvider(new CborIdWriter())
+          .addProvider(new SmileIdWriter())
+          .addProvider(new MessagePackIdWriter())
           .addResource(new IdResource(worker))
           .build();
 
+  @Rule
+  public final ResourceTestRule limitedResources =
+      ResourceTestRule.builder()
+          .addProvider(new SnowizardExceptionMapper())
+          .addProvider(new ProtocolBufferMessageBodyProvider())
+          .addProvider(new ProtobufIdBatchWriter())
+          .addProvider(new JsonIdWriter())
+          .addProvider(new JsonIdBatchWriter())
+          .addProvider(new TextIdWriter())
+          .addProvider(new TextIdBatchWriter())
+          .addProvider(new CborIdWriter())
+          .addProvider(new SmileIdWriter())
+          .addProvider(new MessagePackIdWriter())
+          .addResource(
+              new IdResource(
+                  worker, new AgentRateLimiter(1, Collections.emptyMap(), 1, TimeUnit.SECONDS)))
+          .build();
+
+  @Before
+  public void setUp() {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+  }
+
   @Test
   public void testGetIdAsString() throws Exception {
     final long expected = 100L;
@@ -82,6 +138,43 @@ public class IdResourceTest {
     verify(worker).getId(AGENT);
   }
 
+  @Test
+  public void testGetIdsAsString() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/batch")
+            .queryParam("count", 3)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class)).isEqualTo("100\n101\n102\n");
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(3));
+  }
+
+  @Test
+  public void testGetIdsAsStringLargeBatch() throws Exception {
+    fillIds(1_000_000L);
+
+    final String[] actual =
+        resources
+            .client()
+            .target("/batch")
+            .queryParam("count", 1000)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(String.class)
+            .split("\n");
+
+    assertThat(actual).hasSize(1000);
+    assertThat(actual[0]).isEqualTo("1000000");
+    assertThat(actual[999]).isEqualTo("1000999");
+  }
+
   @Test
   public void testGetIdAsStringInvalidAgent() throws Exception {
     when(worker.getId(AGENT)).thenThrow(new InvalidUserAgentError());
@@ -136,6 +229,112 @@ public class IdResourceTest {
     assertThat(actual).isEqualTo(expected);
   }
 
+  @Test
+  public void testGetIdAsJSONMatchesJackson() throws Exception {
+    final long id = 100L;
+    when(worker.getId(AGENT)).thenReturn(id);
+
+    final String actual =
+        resources
+            .client()
+            .target("/")
+            .request(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(String.class);
+
+    final ObjectMapper mapper = resources.getObjectMapper();
+    assertThat(actual).isEqualTo(mapper.writeValueAsString(new Id(id)));
+  }
+
+  @Test
+  public void testGetIdsAsJSON() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/batch")
+            .queryParam("count", 2)
+            .request(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class))
+        .isEqualTo("[{\"id\":100,\"id_str\":\"100\"},{\"id\":101,\"id_str\":\"101\"}]");
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(2));
+  }
+
+  @Test
+  public void testGetIdsAsJSONLargeBatch() throws Exception {
+    fillIds(100L);
+
+    final Id[] actual =
+        resources
+            .client()
+            .target("/batch")
+            .queryParam("count", 1000)
+            .request(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(Id[].class);
+
+    assertThat(actual).hasSize(1000);
+    assertThat(actual[0]).isEqualTo(new Id(100L));
+    assertThat(actual[999].getIdAsString()).isEqualTo("1099");
+  }
+
+  @Test
+  public void testGetIdAsCBOR() throws Exception {
+    final long id = 100L;
+    when(worker.getId(AGENT)).thenReturn(id);
+
+    final byte[] entity =
+        resources
+            .client()
+            .target("/")
+            .request(SnowizardMediaType.APPLICATION_CBOR)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(byte[].class);
+
+    final Id actual = new ObjectMapper(new CBORFactory()).readValue(entity, Id.class);
+    assertThat(actual).isEqualTo(new Id(id));
+    assertThat(actual.getIdAsString()).isEqualTo("100");
+  }
+
+  @Test
+  public void testGetIdAsMessagePack() throws Exception {
+    final long id = 100L;
+    when(worker.getId(AGENT)).thenReturn(id);
+
+    final byte[] entity =
+        resources
+            .client()
+            .target("/")
+            .request(SnowizardMediaType.APPLICATION_MSGPACK)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(byte[].class);
+
+    final Id actual = new ObjectMapper(new MessagePackFactory()).readValue(entity, Id.class);
+    assertThat(actual).isEqualTo(new Id(id));
+  }
+
+  @Test
+  public void testGetIdsAsSmile() throws Exception {
+    fillIds(100L);
+
+    final byte[] entity =
+        resources
+            .client()
+            .target("/batch")
+            .queryParam("count", 2)
+            .request(SnowizardMediaType.APPLICATION_SMILE)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(byte[].class);
+
+    final Id[] actual = new ObjectMapper(new SmileFactory()).readValue(entity, Id[].class);
+    assertThat(actual).containsExactly(new Id(100L), new Id(101L));
+  }
+
   @Test
   public void testGetIdAsJSONInvalidAgent() throws Exception {
     when(worker.getId(AGENT)).thenThrow(new InvalidUserAgentError());
@@ -233,7 +432,7 @@ public class IdResourceTest {
   @Test
   public void testGetIdAsProtobuf() throws Exception {
     final long id = 100L;
-    when(worker.getId(AGENT)).thenReturn(id);
+    fillIds(id);
 
     final Response response =
         resources
@@ -250,13 +449,13 @@ public class IdResourceTest {
 
     assertThat(response.getStatus()).isEqualTo(200);
     assertThat(actual).isEqualTo(expected);
-    verify(worker).getId(AGENT);
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(1));
   }
 
   @Test
   public void testGetIdAsProtobufEmptyCount() throws Exception {
     final long id = 100L;
-    when(worker.getId(AGENT)).thenReturn(id);
+    fillIds(id);
 
     final Response response =
         resources
@@ -274,12 +473,12 @@ public class IdResourceTest {
 
     assertThat(response.getStatus()).isEqualTo(200);
     assertThat(actual).isEqualTo(expected);
-    verify(worker).getId(AGENT);
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(1));
   }
 
   @Test
   public void testGetIdAsProtobufInvalidCount() throws Exception {
-    when(worker.getId(AGENT)).thenReturn(100L);
+    fillIds(100L);
 
     final Response response =
         resources
@@ -292,13 +491,13 @@ public class IdResourceTest {
             .get();
 
     assertThat(response.getStatus()).isEqualTo(400);
-    verify(worker, never()).getId(AGENT);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
   }
 
   @Test
   public void testGetIdAsProtobufNullCount() throws Exception {
     final long id = 100L;
-    when(worker.getId(AGENT)).thenReturn(id);
+    fillIds(id);
 
     final String count = null;
     final Response response =
@@ -317,12 +516,14 @@ public class IdResourceTest {
 
     assertThat(response.getStatus()).isEqualTo(200);
     assertThat(actual).isEqualTo(expected);
-    verify(worker).getId(AGENT);
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(1));
   }
 
   @Test
   public void testGetIdAsProtobufInvalidAgent() throws Exception {
-    when(worker.getId(AGENT)).thenThrow(new InvalidUserAgentError());
+    doThrow(new InvalidUserAgentError())
+        .when(worker)
+        .getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
 
     final Response response =
         resources
@@ -332,7 +533,7 @@ public class IdResourceTest {
             .header(HttpHeaders.USER_AGENT, AGENT)
             .get();
     final ErrorMessage message = response.readEntity(ErrorMessage.class);
-    verify(worker).getId(AGENT);
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(1));
     assertThat(response.getStatus()).isEqualTo(400);
     assertThat(message.getCode()).isEqualTo(400);
     assertThat(message.getMessage()).isEqualTo(AGENT_ERROR);
@@ -340,7 +541,9 @@ public class IdResourceTest {
 
   @Test
   public void testGetIdAsProtobufInvalidClock() throws Exception {
-    when(worker.getId(AGENT)).thenThrow(new InvalidSystemClock());
+    doThrow(new InvalidSystemClock())
+        .when(worker)
+        .getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
 
     final Response response =
         resources
@@ -350,8 +553,364 @@ public class IdResourceTest {
             .header(HttpHeaders.USER_AGENT, AGENT)
             .get();
     final ErrorMessage message = response.readEntity(ErrorMessage.class);
-    verify(worker).getId(AGENT);
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(1));
     assertThat(response.getStatus()).isEqualTo(500);
     assertThat(message.getCode()).isEqualTo(500);
   }
+
+  @Test
+  public void testGetIdAsStringRateLimited() throws Exception {
+    when(worker.getId(AGENT)).thenReturn(100L);
+
+    final Response first =
+        limitedResources
+            .client()
+            .target("/")
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    assertThat(first.getStatus()).isEqualTo(200);
+
+    final Response second =
+        limitedResources
+            .client()
+            .target("/")
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    final ErrorMessage message = second.readEntity(ErrorMessage.class);
+    assertThat(second.getStatus()).isEqualTo(429);
+    assertThat(message.getCode()).isEqualTo(429);
+    verify(worker).getId(AGENT);
+  }
+
+  @Test
+  public void testInvalidAgentDoesNotConsumeRateLimit() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(false);
+
+    final Response rejected =
+        limitedResources
+            .client()
+            .target("/")
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    final ErrorMessage message = rejected.readEntity(ErrorMessage.class);
+    assertThat(rejected.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo(AGENT_ERROR);
+
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+    when(worker.getId(AGENT)).thenReturn(100L);
+
+    final Response accepted =
+        limitedResources
+            .client()
+            .target("/")
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    assertThat(accepted.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  public void testGetIdAsProtobufRateLimited() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        limitedResources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("count", 2)
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(429);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  private void fillIds(final long first) throws Exception {
+    doAnswer(
+            invocation -> {
+              final long[] ids = invocation.getArgument(1);
+              final int offset = invocation.getArgument(2);
+              final int length = invocation.getArgument(3);
+              for (int i = 0; i < length; i++) {
+                ids[offset + i] = first + i;
+              }
+              return null;
+            })
+        .when(worker)
+        .getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testStreamIdsAsString() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/stream")
+            .queryParam("count", 3)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.readEntity(String.class)).isEqualTo("100\n101\n102\n");
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(3));
+  }
+
+  @Test
+  public void testStreamIdsAsProtobuf() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/stream")
+            .queryParam("count", 3)
+            .request(SnowizardMediaType.APPLICATION_PROTOBUF_DELIMITED)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    try (InputStream input = response.readEntity(InputStream.class)) {
+      final SnowizardResponse actual = SnowizardResponse.parseDelimitedFrom(input);
+      assertThat(actual.getIdList()).containsExactly(100L, 101L, 102L);
+      assertThat(SnowizardResponse.parseDelimitedFrom(input)).isNull();
+    }
+  }
+
+  @Test
+  public void testGetIdAsProtobufBatch() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("count", 3)
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    final SnowizardResponse actual = response.readEntity(SnowizardResponse.class);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(actual.getIdList()).containsExactly(100L, 101L, 102L);
+    verify(worker).getIds(eq(AGENT), any(long[].class), eq(0), eq(3));
+  }
+
+  @Test
+  public void testGetIdAsProtobufFixed64() throws Exception {
+    fillIds(Long.MAX_VALUE - 2);
+
+    final SnowizardResponse actual =
+        resources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("count", 3)
+            .queryParam("encoding", "fixed64")
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(SnowizardResponse.class);
+
+    assertThat(actual.getIdCount()).isEqualTo(0);
+    assertThat(actual.getFixedIdList())
+        .containsExactly(Long.MAX_VALUE - 2, Long.MAX_VALUE - 1, Long.MAX_VALUE);
+    assertThat(IdEncoding.decode(actual))
+        .containsExactly(Long.MAX_VALUE - 2, Long.MAX_VALUE - 1, Long.MAX_VALUE);
+  }
+
+  @Test
+  public void testGetIdAsProtobufDelta() throws Exception {
+    fillIds(100L);
+
+    final SnowizardResponse actual =
+        resources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("count", 3)
+            .queryParam("encoding", "delta")
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(SnowizardResponse.class);
+
+    assertThat(actual.getIdCount()).isEqualTo(0);
+    assertThat(actual.getDeltaIdList()).containsExactly(100L, 1L, 1L);
+    assertThat(IdEncoding.decode(actual)).containsExactly(100L, 101L, 102L);
+  }
+
+  @Test
+  public void testGetIdAsProtobufRanges() throws Exception {
+    fillIds(100L);
+
+    final SnowizardResponse actual =
+        resources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("count", 3)
+            .queryParam("encoding", "ranges")
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get(SnowizardResponse.class);
+
+    assertThat(actual.getIdCount()).isEqualTo(0);
+    assertThat(actual.getRangeCount()).isEqualTo(1);
+    assertThat(actual.getRange(0).getFirstSequence()).isEqualTo(100);
+    assertThat(actual.getRange(0).getLastSequence()).isEqualTo(102);
+    assertThat(IdEncoding.decode(actual)).containsExactly(100L, 101L, 102L);
+  }
+
+  @Test
+  public void testGetIdAsProtobufInvalidEncoding() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("encoding", "zip")
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(400);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testGetIdAsProtobufCountTooLarge() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/")
+            .register(new ProtocolBufferMessageBodyProvider())
+            .queryParam("count", IdResource.DEFAULT_MAX_COUNT + 1)
+            .request(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo("count must be between 1 and 10000");
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testGetIdsAsBinary() throws Exception {
+    fillIds(Long.MAX_VALUE - 1);
+
+    final Response response =
+        resources
+            .client()
+            .target("/")
+            .queryParam("count", 2)
+            .request(MediaType.APPLICATION_OCTET_STREAM)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    final byte[] entity = response.readEntity(byte[].class);
+    assertThat(entity).hasSize(16);
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(entity))) {
+      assertThat(input.readLong()).isEqualTo(Long.MAX_VALUE - 1);
+      assertThat(input.readLong()).isEqualTo(Long.MAX_VALUE);
+    }
+  }
+
+  @Test
+  public void testStreamIdsInvalidAgent() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(false);
+
+    final Response response =
+        resources
+            .client()
+            .target("/stream")
+            .queryParam("count", 3)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage()).isEqualTo(AGENT_ERROR);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testStreamIdsInvalidCount() throws Exception {
+    final Response response =
+        resources
+            .client()
+            .target("/stream")
+            .queryParam("count", 0)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    assertThat(response.getStatus()).isEqualTo(400);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testStreamIdsCountAtLimit() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        resources
+            .client()
+            .target("/stream")
+            .queryParam("count", IdResource.DEFAULT_MAX_STREAM_COUNT)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    final String entity = response.readEntity(String.class);
+
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(entity.split("\n")).hasSize(IdResource.DEFAULT_MAX_STREAM_COUNT);
+  }
+
+  @Test
+  public void testStreamIdsCountTooLarge() throws Exception {
+    final Response response =
+        resources
+            .client()
+            .target("/stream")
+            .queryParam("count", IdResource.DEFAULT_MAX_STREAM_COUNT + 1)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+    final ErrorMessage message = response.readEntity(ErrorMessage.class);
+
+    assertThat(response.getStatus()).isEqualTo(400);
+    assertThat(message.getMessage())
+        .isEqualTo("count must be between 1 and " + IdResource.DEFAULT_MAX_STREAM_COUNT);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
+
+  @Test
+  public void testStreamIdsRateLimited() throws Exception {
+    fillIds(100L);
+
+    final Response response =
+        limitedResources
+            .client()
+            .target("/stream")
+            .queryParam("count", 2)
+            .request(MediaType.TEXT_PLAIN)
+            .header(HttpHeaders.USER_AGENT, AGENT)
+            .get();
+
+    assertThat(response.getStatus()).isEqualTo(429);
+    verify(worker, never()).getIds(eq(AGENT), any(long[].class), anyInt(), anyInt());
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.application.streaming;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class IdEventPublisherTest {
+
+  private static final String AGENT = "test-agent";
+  private final IdWorker worker = mock(IdWorker.class);
+  private final EventOutput output = mock(EventOutput.class);
+
+  @Test
+  public void testSkippedBatchWritesComment() throws Exception {
+    // a batch of 10 never fits in a bucket of 5
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(5, Collections.emptyMap(), 1, TimeUnit.SECONDS);
+    when(output.isClosed()).thenReturn(false, true);
+
+    new IdEventPublisher(worker, limiter, output, AGENT, 1000, 10).run();
+
+    final ArgumentCaptor<OutboundEvent> event = ArgumentCaptor.forClass(OutboundEvent.class);
+    verify(output).write(event.capture());
+    assertThat(event.getValue().getComment()).isEqualTo(IdEventPublisher.SKIPPED_COMMENT);
+    assertThat(event.getValue().getData()).isNull();
+    verify(worker, never()).getIds(anyString(), any(long[].class), anyInt(), anyInt());
+    verify(output).close();
+  }
+}
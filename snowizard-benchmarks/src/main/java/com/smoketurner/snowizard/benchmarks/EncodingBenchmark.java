@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.smoketurner.snowizard.api.Id;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
+import com.smoketurner.snowizard.application.providers.CborIdWriter;
+import com.smoketurner.snowizard.application.providers.IdBatch;
+import com.smoketurner.snowizard.application.providers.JsonIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.MessagePackIdWriter;
+import com.smoketurner.snowizard.application.providers.ProtobufIdBatchWriter;
+import com.smoketurner.snowizard.application.providers.SmileIdWriter;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.Priority;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.ext.MessageBodyWriter;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost per ID of encoding a batch with each of the response writers, and of decoding
+ * it the way a client would.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class EncodingBenchmark {
+
+  private static final int BATCH_SIZE = 1000;
+  private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+  @Param({"json", "cbor", "smile", "msgpack", "protobuf"})
+  public String format;
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private IdBatch batch;
+  private MessageBodyWriter<? super IdBatch> writer;
+  private ObjectMapper mapper;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws Exception {
+    final long[] ids = new long[BATCH_SIZE];
+    IdWorker.builder(1, 1).build().nextIds(ids, 0, ids.length, Priority.HIGH);
+    batch = new IdBatch(ids);
+
+    switch (format) {
+      case "json":
+        writer = new JsonIdBatchWriter();
+        mapper = new ObjectMapper();
+        break;
+      case "cbor":
+        writer = new CborIdWriter();
+        mapper = new ObjectMapper(new CBORFactory());
+        break;
+      case "smile":
+        writer = new SmileIdWriter();
+        mapper = new ObjectMapper(new SmileFactory());
+        break;
+      case "msgpack":
+        writer = new MessagePackIdWriter();
+        mapper = new ObjectMapper(new MessagePackFactory());
+        break;
+      case "protobuf":
+        writer = new ProtobufIdBatchWriter();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown format: " + format);
+    }
+
+    encode();
+    encoded = output.toByteArray();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public int encode() throws IOException {
+    output.reset();
+    writer.writeTo(batch, IdBatch.class, IdBatch.class, NO_ANNOTATIONS, null, null, output);
+    return output.size();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public long decode() throws IOException {
+    if (mapper == null) {
+      return SnowizardResponse.parseFrom(encoded).getId(BATCH_SIZE - 1);
+    }
+    return mapper.readValue(encoded, Id[].class)[BATCH_SIZE - 1].getId();
+  }
+
+  public static void main(String[] args) throws Exception {
+    final Options opt =
+        new OptionsBuilder().include(EncodingBenchmark.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A cleartext HTTP/2 client for {@code GET /} as plain text. Every instance created from the same
+ * {@link HttpClient} sends its requests as concurrent streams over that client's single connection.
+ */
+final class Http2IdConnection implements IdConnection {
+
+  private final HttpClient client;
+  private final HttpRequest request;
+
+  /**
+   * Constructor
+   *
+   * @param client HTTP/2 client shared by all connections to the server
+   * @param host Server host
+   * @param port Server port
+   * @param agent User agent
+   */
+  Http2IdConnection(
+      final HttpClient client, final String host, final int port, final String agent) {
+    this.client = client;
+    this.request =
+        HttpRequest.newBuilder(URI.create("http://" + host + ':' + port + '/'))
+            .header("User-Agent", agent)
+            .header("Accept", "text/plain")
+            .build();
+  }
+
+  /**
+   * Create a client which upgrades its first connection to HTTP/2 and sends every later request
+   * over it
+   *
+   * @param host Server host
+   * @param port Server port
+   * @param agent User agent
+   * @return HTTP/2 client
+   * @throws IOException if the upgrade fails
+   */
+  static HttpClient connect(final String host, final int port, final String agent)
+      throws IOException {
+    final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+    // upgrade once up front, so concurrent first requests don't each open a connection
+    final Http2IdConnection connection = new Http2IdConnection(client, host, port, agent);
+    final HttpResponse<Void> response = connection.send(HttpResponse.BodyHandlers.discarding());
+    if (response.version() != HttpClient.Version.HTTP_2) {
+      throw new IOException("Server did not upgrade to HTTP/2");
+    }
+    return client;
+  }
+
+  @Override
+  public long getId() throws IOException {
+    return parse(send(HttpResponse.BodyHandlers.ofString()));
+  }
+
+  @Override
+  public void getIds(final long[] ids) throws IOException {
+    @SuppressWarnings("unchecked")
+    final CompletableFuture<HttpResponse<String>>[] responses = new CompletableFuture[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+    try {
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = parse(responses[i].get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private static long parse(final HttpResponse<String> response) throws IOException {
+    if (response.statusCode() != 200) {
+      throw new IOException("Unexpected response: " + response.statusCode());
+    }
+    return Long.parseLong(response.body().trim());
+  }
+
+  @Override
+  public void close() {
+    // the connection belongs to the shared client
+  }
+
+  private <T> HttpResponse<T> send(final HttpResponse.BodyHandler<T> handler) throws IOException {
+    try {
+      return client.send(request, handler);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+}
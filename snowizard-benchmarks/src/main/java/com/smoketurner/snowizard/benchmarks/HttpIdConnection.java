@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal keep-alive HTTP/1.1 client for {@code GET /} as plain text, so that the client costs
+ * the same whichever server it is pointed at. {@link #getIds(long[])} pipelines its requests.
+ */
+final class HttpIdConnection implements IdConnection {
+
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+  private final byte[] request;
+  private byte[] pipeline = new byte[0];
+  private final StringBuilder line = new StringBuilder();
+
+  /**
+   * Constructor
+   *
+   * @param host Server host
+   * @param port Server port
+   * @param agent User agent
+   * @throws IOException if unable to connect
+   */
+  HttpIdConnection(final String host, final int port, final String agent) throws IOException {
+    this.socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    this.in = new BufferedInputStream(socket.getInputStream());
+    this.out = socket.getOutputStream();
+    this.request =
+        ("GET / HTTP/1.1\r\n"
+                + "Host: "
+                + host
+                + ':'
+                + port
+                + "\r\n"
+                + "User-Agent: "
+                + agent
+                + "\r\n"
+                + "Accept: text/plain\r\n"
+                + "\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Override
+  public long getId() throws IOException {
+    out.write(request);
+    out.flush();
+    return readResponse();
+  }
+
+  @Override
+  public void getIds(final long[] ids) throws IOException {
+    if (pipeline.length != request.length * ids.length) {
+      pipeline = new byte[request.length * ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        System.arraycopy(request, 0, pipeline, i * request.length, request.length);
+      }
+    }
+    out.write(pipeline);
+    out.flush();
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = readResponse();
+    }
+  }
+
+  private long readResponse() throws IOException {
+    final String status = readLine();
+    if (!status.startsWith("HTTP/1.1 200")) {
+      throw new IOException("Unexpected response: " + status);
+    }
+    int length = -1;
+    String header;
+    while (!(header = readLine()).isEmpty()) {
+      final int colon = header.indexOf(':');
+      if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+        length = Integer.parseInt(header.substring(colon + 1).trim());
+      }
+    }
+    if (length < 0) {
+      throw new IOException("Response without a Content-Length");
+    }
+
+    long id = 0;
+    for (int i = 0; i < length; i++) {
+      final int c = read();
+      if (c >= '0' && c <= '9') {
+        id = id * 10 + (c - '0');
+      }
+    }
+    return id;
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+  private String readLine() throws IOException {
+    line.setLength(0);
+    int c;
+    while ((c = read()) != '\n') {
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.toString();
+  }
+
+  private int read() throws IOException {
+    final int c = in.read();
+    if (c < 0) {
+      throw new EOFException("Connection closed by server");
+    }
+    return c;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal client for Snowflake's {@code get_id} call over framed binary Thrift. {@link #getId()}
+ * has one call in flight at a time, and {@link #getIds(long[])} pipelines its calls.
+ */
+final class ThriftIdConnection implements IdConnection {
+
+  private static final int VERSION_1 = 0x80010000;
+  private static final byte CALL = 1;
+  private static final byte REPLY = 2;
+  private static final byte STOP = 0;
+  private static final byte I64 = 10;
+  private static final byte STRING = 11;
+  private static final byte[] METHOD = "get_id".getBytes(StandardCharsets.UTF_8);
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final OutputStream out;
+  private final byte[] request;
+  private byte[] pipeline = new byte[0];
+  private byte[] reply = new byte[64];
+
+  /**
+   * Constructor
+   *
+   * @param host Server host
+   * @param port Server port
+   * @param agent User agent
+   * @throws IOException if unable to connect
+   */
+  ThriftIdConnection(final String host, final int port, final String agent) throws IOException {
+    this.socket = new Socket(host, port);
+    socket.setTcpNoDelay(true);
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.out = socket.getOutputStream();
+
+    final byte[] agentBytes = agent.getBytes(StandardCharsets.UTF_8);
+    final ByteArrayOutputStream message = new ByteArrayOutputStream();
+    final DataOutputStream call = new DataOutputStream(message);
+    call.writeInt(VERSION_1 | CALL);
+    call.writeInt(METHOD.length);
+    call.write(METHOD);
+    call.writeInt(0);
+    // get_id_args: field 1 ("useragent") of type string
+    call.writeByte(STRING);
+    call.writeShort(1);
+    call.writeInt(agentBytes.length);
+    call.write(agentBytes);
+    call.writeByte(STOP);
+
+    final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    final DataOutputStream framed = new DataOutputStream(frame);
+    framed.writeInt(message.size());
+    message.writeTo(framed);
+    this.request = frame.toByteArray();
+  }
+
+  @Override
+  public long getId() throws IOException {
+    out.write(request);
+    out.flush();
+    return readReply();
+  }
+
+  @Override
+  public void getIds(final long[] ids) throws IOException {
+    if (pipeline.length != request.length * ids.length) {
+      pipeline = new byte[request.length * ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        System.arraycopy(request, 0, pipeline, i * request.length, request.length);
+      }
+    }
+    out.write(pipeline);
+    out.flush();
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = readReply();
+    }
+  }
+
+  private long readReply() throws IOException {
+    final int length = in.readInt();
+    if (length > reply.length) {
+      reply = new byte[length];
+    }
+    in.readFully(reply, 0, length);
+
+    // message header, then field 0 ("success") of the result struct
+    final int offset = 4 + 4 + METHOD.length + 4;
+    if ((reply[3] & 0xff) != REPLY || reply[offset] != I64) {
+      throw new IOException("Unexpected reply to get_id");
+    }
+    long id = 0;
+    for (int i = offset + 3; i < offset + 3 + Long.BYTES; i++) {
+      id = (id << 8) | (reply[i] & 0xff);
+    }
+    return id;
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
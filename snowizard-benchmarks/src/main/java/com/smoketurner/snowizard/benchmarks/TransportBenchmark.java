@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.smoketurner.dropwizard.zipkin.AbstractZipkinFactory;
+import com.smoketurner.snowizard.application.SnowizardApplication;
+import com.smoketurner.snowizard.application.config.SnowizardConfiguration;
+import com.smoketurner.snowizard.grpc.SnowizardHttpServer;
+import com.smoketurner.snowizard.grpc.SnowizardThriftServer;
+import io.dropwizard.http2.Http2CConnectorFactory;
+import io.dropwizard.jetty.HttpConnectorFactory;
+import io.dropwizard.logging.DefaultLoggingFactory;
+import io.dropwizard.request.logging.LogbackAccessRequestLogFactory;
+import io.dropwizard.server.SimpleServerFactory;
+import io.dropwizard.testing.DropwizardTestSupport;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares single-ID requests over loopback TCP against the Dropwizard application and against the
+ * standalone servers of {@code snowizard-grpc}. Each benchmark thread holds one keep-alive
+ * connection with one request in flight; run with {@code -t} to add concurrent connections. The
+ * {@code h2c} transport is the exception: all threads share one cleartext HTTP/2 connection to the
+ * application, each with one stream in flight, so at the same {@code -t} it compares N streams over
+ * one connection against the N HTTP/1.1 connections of {@code rest}. The long warmup is needed for
+ * Jetty and Jersey to reach a steady state.
+ */
+@Measurement(iterations = 5, time = 2)
+@Warmup(iterations = 10, time = 5)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransportBenchmark {
+
+  private static final String HOST = "127.0.0.1";
+  private static final String AGENT = "benchmark";
+  private static final int PIPELINE_DEPTH = 16;
+
+  @State(Scope.Benchmark)
+  public static class Server {
+
+    @Param({"rest", "h2c", "http", "thrift"})
+    public String transport;
+
+    private DropwizardTestSupport<SnowizardConfiguration> rest;
+    private SnowizardHttpServer http;
+    private SnowizardThriftServer thrift;
+    private HttpClient h2c;
+    private int port;
+
+    @Setup
+    public void setUp() throws Exception {
+      switch (transport) {
+        case "rest":
+          rest =
+              new DropwizardTestSupport<>(
+                  SnowizardApplication.class, restConfiguration(new HttpConnectorFactory()));
+          rest.before();
+          port = rest.getLocalPort();
+          break;
+        case "h2c":
+          rest =
+              new DropwizardTestSupport<>(
+                  SnowizardApplication.class, restConfiguration(new Http2CConnectorFactory()));
+          rest.before();
+          port = rest.getLocalPort();
+          h2c = Http2IdConnection.connect(HOST, port, AGENT);
+          break;
+        case "http":
+          http = new SnowizardHttpServer(0, null, 1L, 1L, 0L);
+          port = ((InetSocketAddress) http.bind().localAddress()).getPort();
+          break;
+        case "thrift":
+          thrift = new SnowizardThriftServer(0, null, 1L, 1L, 0L);
+          port = ((InetSocketAddress) thrift.bind().localAddress()).getPort();
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown transport: " + transport);
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      if (rest != null) {
+        rest.after();
+      }
+      if (http != null) {
+        http.stop();
+      }
+      if (thrift != null) {
+        thrift.stop();
+      }
+    }
+
+    IdConnection connect() throws IOException {
+      if (thrift != null) {
+        return new ThriftIdConnection(HOST, port, AGENT);
+      }
+      if (h2c != null) {
+        return new Http2IdConnection(h2c, HOST, port, AGENT);
+      }
+      return new HttpIdConnection(HOST, port, AGENT);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Connection {
+
+    private final long[] ids = new long[PIPELINE_DEPTH];
+    private IdConnection connection;
+
+    @Setup
+    public void setUp(final Server server) throws IOException {
+      connection = server.connect();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+      connection.close();
+    }
+  }
+
+  /**
+   * The application with its default settings, on the given connector on an ephemeral port. Request
+   * logging and trace sampling are turned off so the console does not become the bottleneck; the
+   * logging and tracing filters themselves still run.
+   *
+   * @param connector HTTP/1.1 or cleartext HTTP/2 connector
+   * @return configuration
+   */
+  private static SnowizardConfiguration restConfiguration(final HttpConnectorFactory connector) {
+    final SnowizardConfiguration config = new SnowizardConfiguration();
+    ((AbstractZipkinFactory) config.getZipkin()).setSampleRate(0.0f);
+    ((DefaultLoggingFactory) config.getLoggingFactory()).setLevel("WARN");
+
+    connector.setPort(0);
+    final SimpleServerFactory server = new SimpleServerFactory();
+    server.setConnector(connector);
+    server.setApplicationContextPath("/");
+    ((LogbackAccessRequestLogFactory) server.getRequestLogFactory())
+        .setAppenders(ImmutableList.of());
+    config.setServerFactory(server);
+    return config;
+  }
+
+  @Benchmark
+  public long getId(final Connection connection) throws IOException {
+    return connection.connection.getId();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PIPELINE_DEPTH)
+  public long[] getIdPipelined(final Connection connection) throws IOException {
+    connection.connection.getIds(connection.ids);
+    return connection.ids;
+  }
+
+  public static void main(String[] args) throws Exception {
+    final Options opt =
+        new OptionsBuilder().include(TransportBenchmark.class.getSimpleName()).build();
+    new Runner(opt).run();
+  }
+}
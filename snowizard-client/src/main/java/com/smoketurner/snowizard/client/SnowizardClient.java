@@ -30,16 +30,22 @@ import static com.codahale.metrics.MetricRegistry.name;
 
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.smoketurner.snowizard.api.IdEncoding;
 import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
 import com.smoketurner.snowizard.client.exceptions.SnowizardClientException;
 import io.dropwizard.jersey.protobuf.ProtocolBufferMediaType;
 import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.stream.LongStream;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +54,7 @@ public class SnowizardClient implements Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SnowizardClient.class);
   private static final String PING_RESPONSE = "pong";
+  private static final int BUFFER_SIZE = 8192;
   private final Timer fetchTimer;
   private final Client client;
   private final URI rootUri;
@@ -73,7 +80,23 @@ public class SnowizardClient implements Closeable {
    * @throws IOException Error in communicating with Snowizard
    */
   private SnowizardResponse executeRequest(final int count) {
-    final URI uri = UriBuilder.fromUri(rootUri).path("/").queryParam("count", count).build();
+    return executeRequest(count, IdEncoding.VARINT);
+  }
+
+  /**
+   * Execute a request to the Snowizard service URL
+   *
+   * @param count Number of IDs to generate
+   * @param encoding How the server should encode the IDs
+   * @return SnowizardResponse
+   * @throws IOException Error in communicating with Snowizard
+   */
+  private SnowizardResponse executeRequest(final int count, final IdEncoding encoding) {
+    final UriBuilder builder = UriBuilder.fromUri(rootUri).path("/").queryParam("count", count);
+    if (encoding != IdEncoding.VARINT) {
+      builder.queryParam("encoding", encoding.name().toLowerCase(Locale.ROOT));
+    }
+    final URI uri = builder.build();
     LOGGER.debug("GET {}", uri);
     try (Timer.Context context = fetchTimer.time()) {
       return client
@@ -117,6 +140,97 @@ public class SnowizardClient implements Closeable {
     }
   }
 
+  /**
+   * Get multiple IDs from Snowizard as a Google Protocol Buffer response using a compact encoding
+   *
+   * @param count Number of IDs to return
+   * @param encoding How the server should encode the IDs
+   * @return generated IDs
+   * @throws SnowizardClientException when unable to get an ID from any host
+   */
+  public long[] getIdArray(final int count, final IdEncoding encoding)
+      throws SnowizardClientException {
+    try {
+      return IdEncoding.decode(executeRequest(count, encoding));
+    } catch (final Exception e) {
+      LOGGER.warn("Unable to get ID from host ({})", rootUri);
+      throw new SnowizardClientException("Unable to generate batch of IDs from Snowizard", e);
+    }
+  }
+
+  /**
+   * Get multiple IDs from Snowizard as range descriptors which are expanded lazily. Only one
+   * descriptor per millisecond crosses the wire, so large batches never have to be materialized.
+   *
+   * @param count Number of IDs to return
+   * @return generated IDs
+   * @throws SnowizardClientException when unable to get an ID from any host
+   */
+  public LongStream getIdStream(final int count) throws SnowizardClientException {
+    try {
+      return IdEncoding.stream(executeRequest(count, IdEncoding.RANGES));
+    } catch (final Exception e) {
+      LOGGER.warn("Unable to get ID from host ({})", rootUri);
+      throw new SnowizardClientException("Unable to generate batch of IDs from Snowizard", e);
+    }
+  }
+
+  /**
+   * Get multiple IDs from Snowizard as raw 8-byte big-endian values. This is the cheapest format
+   * for bulk fetches: nothing is boxed and no varint decoding is needed.
+   *
+   * @param count Number of IDs to return
+   * @return generated IDs
+   * @throws SnowizardClientException when unable to get an ID from any host
+   */
+  public long[] getIdArray(final int count) throws SnowizardClientException {
+    final URI uri = UriBuilder.fromUri(rootUri).path("/").queryParam("count", count).build();
+    LOGGER.debug("GET {}", uri);
+    try (Timer.Context context = fetchTimer.time();
+        InputStream input =
+            client
+                .target(uri)
+                .request(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.USER_AGENT, getUserAgent())
+                .get(InputStream.class)) {
+      return readIds(new DataInputStream(input), count);
+    } catch (final Exception e) {
+      LOGGER.warn("Unable to get ID from host ({})", rootUri);
+      throw new SnowizardClientException("Unable to generate batch of IDs from Snowizard", e);
+    }
+  }
+
+  /**
+   * Decode a number of 8-byte big-endian IDs from a stream
+   *
+   * @param input Response stream
+   * @param count Number of IDs to read
+   * @return decoded IDs
+   * @throws IOException if the stream ends before all of the IDs have been read
+   */
+  private static long[] readIds(final DataInputStream input, final int count) throws IOException {
+    final long[] ids = new long[count];
+    final byte[] buffer = new byte[Math.min(count * Long.BYTES, BUFFER_SIZE)];
+    int index = 0;
+    while (index < count) {
+      final int length = Math.min(count - index, buffer.length / Long.BYTES);
+      input.readFully(buffer, 0, length * Long.BYTES);
+      for (int i = 0; i < length; i++) {
+        final int position = i * Long.BYTES;
+        ids[index++] =
+            ((buffer[position] & 0xFFL) << 56)
+                | ((buffer[position + 1] & 0xFFL) << 48)
+                | ((buffer[position + 2] & 0xFFL) << 40)
+                | ((buffer[position + 3] & 0xFFL) << 32)
+                | ((buffer[position + 4] & 0xFFL) << 24)
+                | ((buffer[position + 5] & 0xFFL) << 16)
+                | ((buffer[position + 6] & 0xFFL) << 8)
+                | (buffer[position + 7] & 0xFFL);
+      }
+    }
+    return ids;
+  }
+
   /**
    * Return the ping response
    *
@@ -29,17 +29,23 @@ package com.smoketurner.snowizard.client;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.google.common.base.Optional;
+import com.smoketurner.snowizard.api.IdEncoding;
+import com.smoketurner.snowizard.api.protos.SnowizardProtos.IdRange;
 import com.smoketurner.snowizard.api.protos.SnowizardProtos.SnowizardResponse;
+import com.smoketurner.snowizard.common.IdLayout;
 import io.dropwizard.jersey.params.IntParam;
 import io.dropwizard.jersey.protobuf.ProtocolBufferMediaType;
 import io.dropwizard.jersey.protobuf.ProtocolBufferMessageBodyProvider;
 import io.dropwizard.testing.junit.DropwizardClientRule;
+import java.io.DataOutputStream;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -53,15 +59,42 @@ public class SnowizardClientTest {
     @Produces(ProtocolBufferMediaType.APPLICATION_PROTOBUF)
     public SnowizardResponse fetch(
         @HeaderParam(HttpHeaders.USER_AGENT) final String agent,
-        @QueryParam("count") final Optional<IntParam> count) {
+        @QueryParam("count") final Optional<IntParam> count,
+        @QueryParam("encoding") final Optional<String> encoding) {
       final SnowizardResponse.Builder builder = SnowizardResponse.newBuilder();
-      if (count.isPresent()) {
+      if (count.isPresent() && "ranges".equals(encoding.orNull())) {
+        builder.addRange(
+            IdRange.newBuilder()
+                .setTimestamp(IdLayout.TWEPOCH)
+                .setFirstSequence(1)
+                .setLastSequence(count.get().get()));
+      } else if (count.isPresent()) {
         for (int i = 1; i <= count.get().get(); i++) {
-          builder.addId(i);
+          if ("fixed64".equals(encoding.orNull())) {
+            builder.addFixedId(i);
+          } else if ("delta".equals(encoding.orNull())) {
+            builder.addDeltaId(1);
+          } else {
+            builder.addId(i);
+          }
         }
       }
       return builder.build();
     }
+
+    @GET
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public StreamingOutput fetchBinary(
+        @HeaderParam(HttpHeaders.USER_AGENT) final String agent,
+        @QueryParam("count") final IntParam count) {
+      return output -> {
+        final DataOutputStream data = new DataOutputStream(output);
+        for (int i = 1; i <= count.get(); i++) {
+          data.writeLong(Long.MAX_VALUE - i);
+        }
+        data.flush();
+      };
+    }
   }
 
   @Path("/ping")
@@ -107,6 +140,31 @@ public class SnowizardClientTest {
     assertThat(actual).isGreaterThan(0);
   }
 
+  @Test
+  public void testGetIdArray() throws Exception {
+    final long[] actual = client.getIdArray(2000);
+    assertThat(actual).hasSize(2000);
+    assertThat(actual[0]).isEqualTo(Long.MAX_VALUE - 1);
+    assertThat(actual[1999]).isEqualTo(Long.MAX_VALUE - 2000);
+  }
+
+  @Test
+  public void testGetIdArrayFixed64() throws Exception {
+    final long[] actual = client.getIdArray(3, IdEncoding.FIXED64);
+    assertThat(actual).containsExactly(1L, 2L, 3L);
+  }
+
+  @Test
+  public void testGetIdArrayDelta() throws Exception {
+    final long[] actual = client.getIdArray(3, IdEncoding.DELTA);
+    assertThat(actual).containsExactly(1L, 2L, 3L);
+  }
+
+  @Test
+  public void testGetIdStream() throws Exception {
+    assertThat(client.getIdStream(3).toArray()).containsExactly(1L, 2L, 3L);
+  }
+
   @Test
   public void testPing() throws Exception {
     assertThat(client.ping()).isTrue();
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.common;
+
+/**
+ * Bit layout of Snowizard IDs: 41 bits of milliseconds since {@link #TWEPOCH}, 5 bits of datacenter
+ * ID, 5 bits of worker ID and a 12 bit sequence. This is the single definition shared by the
+ * generator, the server's encoders and the clients, and has no dependencies of its own.
+ */
+public final class IdLayout {
+
+  public static final long TWEPOCH = 1288834974657L;
+
+  public static final long WORKER_ID_BITS = 5L;
+  public static final long DATACENTER_ID_BITS = 5L;
+  public static final long SEQUENCE_BITS = 12L;
+
+  public static final long MAX_WORKER_ID = -1L ^ (-1L << WORKER_ID_BITS);
+  public static final long MAX_DATACENTER_ID = -1L ^ (-1L << DATACENTER_ID_BITS);
+  public static final long MAX_SEQUENCE = -1L ^ (-1L << SEQUENCE_BITS);
+
+  public static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
+  public static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
+  public static final long TIMESTAMP_LEFT_SHIFT =
+      SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
+
+  private IdLayout() {}
+
+  /**
+   * Build an ID from its components
+   *
+   * @param timestamp Timestamp in milliseconds since the Unix epoch
+   * @param datacenterId Datacenter ID
+   * @param workerId Worker ID
+   * @param sequence Sequence within the millisecond
+   * @return ID
+   */
+  public static long compose(
+      final long timestamp, final long datacenterId, final long workerId, final long sequence) {
+    return ((timestamp - TWEPOCH) << TIMESTAMP_LEFT_SHIFT)
+        | (datacenterId << DATACENTER_ID_SHIFT)
+        | (workerId << WORKER_ID_SHIFT)
+        | sequence;
+  }
+
+  /**
+   * Return the timestamp of an ID
+   *
+   * @param id ID
+   * @return Timestamp in milliseconds since the Unix epoch
+   */
+  public static long getTimestamp(final long id) {
+    return (id >>> TIMESTAMP_LEFT_SHIFT) + TWEPOCH;
+  }
+
+  /**
+   * Return the datacenter ID of an ID
+   *
+   * @param id ID
+   * @return Datacenter ID
+   */
+  public static long getDatacenterId(final long id) {
+    return (id >>> DATACENTER_ID_SHIFT) & MAX_DATACENTER_ID;
+  }
+
+  /**
+   * Return the worker ID of an ID
+   *
+   * @param id ID
+   * @return Worker ID
+   */
+  public static long getWorkerId(final long id) {
+    return (id >>> WORKER_ID_SHIFT) & MAX_WORKER_ID;
+  }
+
+  /**
+   * Return the sequence of an ID
+   *
+   * @param id ID
+   * @return Sequence within the millisecond
+   */
+  public static long getSequence(final long id) {
+    return id & MAX_SEQUENCE;
+  }
+
+  /**
+   * Find the end of a run of consecutive IDs which share a timestamp, datacenter and worker, and so
+   * only differ in their sequence
+   *
+   * @param ids IDs in the order they were generated
+   * @param from Index of the first ID in the run
+   * @param to Index after the last ID to consider
+   * @return Index after the last ID in the run
+   */
+  public static int getRunEnd(final long[] ids, final int from, final int to) {
+    int end = from + 1;
+    while (end < to && ids[end] == ids[end - 1] + 1 && getSequence(ids[end]) != 0) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Split IDs into runs, as found by {@link #getRunEnd(long[], int, int)}, and describe each run by
+   * the fields its IDs share and its first and last sequence
+   *
+   * @param ids IDs in the order they were generated
+   * @param count Number of IDs to consider
+   * @param visitor Receives each run in order
+   * @param <E> Exception thrown by the visitor
+   * @throws E if the visitor fails
+   */
+  public static <E extends Exception> void forEachRun(
+      final long[] ids, final int count, final RunVisitor<E> visitor) throws E {
+    int from = 0;
+    while (from < count) {
+      final int to = getRunEnd(ids, from, count);
+      final long first = ids[from];
+      visitor.visit(
+          getTimestamp(first),
+          (int) getDatacenterId(first),
+          (int) getWorkerId(first),
+          (int) getSequence(first),
+          (int) getSequence(ids[to - 1]));
+      from = to;
+    }
+  }
+
+  /**
+   * Check that a run received from elsewhere describes IDs which fit the layout, so that expanding
+   * it can neither spill into other fields of the IDs nor produce more than one millisecond's worth
+   * of them
+   *
+   * @param datacenterId Datacenter ID of the run
+   * @param workerId Worker ID of the run
+   * @param firstSequence Sequence of the first ID in the run
+   * @param lastSequence Sequence of the last ID in the run
+   * @throws IllegalArgumentException if any field is out of bounds
+   */
+  public static void checkRun(
+      final long datacenterId,
+      final long workerId,
+      final long firstSequence,
+      final long lastSequence) {
+    if (firstSequence < 0 || lastSequence < firstSequence || lastSequence > MAX_SEQUENCE) {
+      throw new IllegalArgumentException(
+          String.format("Sequence %d..%d is out of bounds", firstSequence, lastSequence));
+    }
+    if (datacenterId < 0 || datacenterId > MAX_DATACENTER_ID) {
+      throw new IllegalArgumentException(
+          String.format("Datacenter ID %d is out of bounds", datacenterId));
+    }
+    if (workerId < 0 || workerId > MAX_WORKER_ID) {
+      throw new IllegalArgumentException(String.format("Worker ID %d is out of bounds", workerId));
+    }
+  }
+
+  /**
+   * Receives the runs found by {@link #forEachRun(long[], int, RunVisitor)}
+   *
+   * @param <E> Exception thrown by the visitor
+   */
+  @FunctionalInterface
+  public interface RunVisitor<E extends Exception> {
+
+    /**
+     * Receive a run of IDs
+     *
+     * @param timestamp Timestamp of the run in milliseconds since the Unix epoch
+     * @param datacenterId Datacenter ID of the run
+     * @param workerId Worker ID of the run
+     * @param firstSequence Sequence of the first ID in the run
+     * @param lastSequence Sequence of the last ID in the run
+     * @throws E if unable to handle the run
+     */
+    void visit(long timestamp, int datacenterId, int workerId, int firstSequence, int lastSequence)
+        throws E;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class IdLayoutTest {
+
+  @Test
+  public void testDecompose() throws Exception {
+    final long timestamp = IdLayout.TWEPOCH + 123_456_789L;
+    final long id = IdLayout.compose(timestamp, 7, 3, 1234);
+
+    assertThat(IdLayout.getTimestamp(id)).isEqualTo(timestamp);
+    assertThat(IdLayout.getDatacenterId(id)).isEqualTo(7L);
+    assertThat(IdLayout.getWorkerId(id)).isEqualTo(3L);
+    assertThat(IdLayout.getSequence(id)).isEqualTo(1234L);
+  }
+
+  @Test
+  public void testLimits() throws Exception {
+    final long timestamp = IdLayout.TWEPOCH + 1000L;
+    final long id =
+        IdLayout.compose(
+            timestamp, IdLayout.MAX_DATACENTER_ID, IdLayout.MAX_WORKER_ID, IdLayout.MAX_SEQUENCE);
+
+    assertThat(IdLayout.getTimestamp(id)).isEqualTo(timestamp);
+    assertThat(IdLayout.getDatacenterId(id)).isEqualTo(31L);
+    assertThat(IdLayout.getWorkerId(id)).isEqualTo(31L);
+    assertThat(IdLayout.getSequence(id)).isEqualTo(4095L);
+  }
+
+  @Test
+  public void testGetRunEnd() {
+    final long timestamp = IdLayout.TWEPOCH + 1000L;
+    final long[] ids = {
+      IdLayout.compose(timestamp, 1, 1, 4094),
+      IdLayout.compose(timestamp, 1, 1, 4095),
+      IdLayout.compose(timestamp + 1, 1, 1, 0),
+      IdLayout.compose(timestamp + 1, 1, 1, 1),
+      IdLayout.compose(timestamp + 1, 1, 1, 2),
+      IdLayout.compose(timestamp + 3, 1, 1, 0)
+    };
+
+    assertThat(IdLayout.getRunEnd(ids, 0, ids.length)).isEqualTo(2);
+    assertThat(IdLayout.getRunEnd(ids, 2, ids.length)).isEqualTo(5);
+    assertThat(IdLayout.getRunEnd(ids, 2, 4)).isEqualTo(4);
+    assertThat(IdLayout.getRunEnd(ids, 5, ids.length)).isEqualTo(6);
+  }
+
+  @Test
+  public void testForEachRun() {
+    final long timestamp = IdLayout.TWEPOCH + 1000L;
+    final long[] ids = {
+      IdLayout.compose(timestamp, 1, 2, 4094),
+      IdLayout.compose(timestamp, 1, 2, 4095),
+      IdLayout.compose(timestamp + 1, 1, 2, 0),
+      IdLayout.compose(timestamp + 1, 1, 2, 1),
+      0L
+    };
+    final List<String> runs = new ArrayList<>();
+
+    IdLayout.forEachRun(
+        ids,
+        4,
+        (time, datacenterId, workerId, first, last) ->
+            runs.add(
+                String.format(
+                    "%d/%d/%d/%d..%d", time - timestamp, datacenterId, workerId, first, last)));
+
+    assertThat(runs).containsExactly("0/1/2/4094..4095", "1/1/2/0..1");
+  }
+
+  @Test
+  public void testCheckRun() {
+    IdLayout.checkRun(0, 0, 0, 0);
+    IdLayout.checkRun(IdLayout.MAX_DATACENTER_ID, IdLayout.MAX_WORKER_ID, 0, IdLayout.MAX_SEQUENCE);
+
+    assertThatThrownBy(() -> IdLayout.checkRun(0, 0, -1, 0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Sequence -1..0 is out of bounds");
+    assertThatThrownBy(() -> IdLayout.checkRun(0, 0, 2, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> IdLayout.checkRun(0, 0, 0, 4096))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> IdLayout.checkRun(32, 0, 0, 0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Datacenter ID 32 is out of bounds");
+    assertThatThrownBy(() -> IdLayout.checkRun(0, -1, 0, 0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Worker ID -1 is out of bounds");
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects concurrent single-ID requests for a short window and serves them from one bulk
+ * reservation, so a burst of callers takes the {@link IdWorker} lock once instead of once each. A
+ * batch is generated as soon as {@code maxBatch} requests are waiting, or {@code maxDelay} after
+ * the first of them arrived, whichever comes first.
+ *
+ * <p>Only {@link Priority#BULK} agents are coalesced. {@link Priority#HIGH} agents are served
+ * immediately so they never wait for the window to close.
+ */
+public class IdCoalescer {
+
+  private final Queue<Request> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final IdWorker worker;
+  private final ScheduledExecutorService scheduler;
+  private final int maxBatch;
+  private final long maxDelayNanos;
+  private final Histogram batchSizes;
+  private final Meter batches;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID worker
+   * @param scheduler Executor which closes the window when fewer than {@code maxBatch} requests are
+   *     waiting
+   * @param maxBatch Maximum number of requests served by one reservation
+   * @param maxDelay Maximum time a request waits for others to join it
+   * @param unit Unit of {@code maxDelay}
+   * @param registry Metric registry
+   */
+  public IdCoalescer(
+      final IdWorker worker,
+      final ScheduledExecutorService scheduler,
+      final int maxBatch,
+      final long maxDelay,
+      final TimeUnit unit,
+      final MetricRegistry registry) {
+    if (maxBatch < 1) {
+      throw new IllegalArgumentException("maxBatch must be at least 1");
+    }
+    if (maxDelay < 0) {
+      throw new IllegalArgumentException("maxDelay can't be negative");
+    }
+    this.worker = Objects.requireNonNull(worker);
+    this.scheduler = Objects.requireNonNull(scheduler);
+    this.maxBatch = maxBatch;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+    this.batchSizes = registry.histogram(MetricRegistry.name(IdCoalescer.class, "batch_size"));
+    this.batches = registry.meter(MetricRegistry.name(IdCoalescer.class, "batches"));
+  }
+
+  /**
+   * Request a new ID for a given user agent. The future is completed on the thread which generates
+   * the batch, either with the ID or with an {@link InvalidSystemClock}.
+   *
+   * @param agent User Agent
+   * @return future ID
+   * @throws InvalidUserAgentError When the user agent is invalid
+   */
+  public CompletableFuture<Long> submit(final String agent) throws InvalidUserAgentError {
+    worker.checkUserAgent(agent);
+
+    if (worker.getPriority(agent) == Priority.HIGH) {
+      final CompletableFuture<Long> future = new CompletableFuture<>();
+      try {
+        future.complete(worker.getId(agent));
+      } catch (final InvalidSystemClock e) {
+        future.completeExceptionally(e);
+      }
+      return future;
+    }
+
+    final Request request = new Request(agent);
+    pending.add(request);
+    if (size.incrementAndGet() >= maxBatch) {
+      drain();
+    } else if (scheduled.compareAndSet(false, true)) {
+      scheduler.schedule(this::expire, maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+    return request.future;
+  }
+
+  /**
+   * Return the number of requests waiting for a batch
+   *
+   * @return number of waiting requests
+   */
+  public int getPending() {
+    return size.get();
+  }
+
+  /** Close the current window. Requests which arrive after this start a new one. */
+  private void expire() {
+    scheduled.set(false);
+    drain();
+  }
+
+  /** Serve every waiting request, at most {@code maxBatch} at a time. */
+  private void drain() {
+    final Request[] batch = new Request[maxBatch];
+    while (true) {
+      int count = 0;
+      Request request;
+      while (count < maxBatch && (request = pending.poll()) != null) {
+        batch[count++] = request;
+      }
+      if (count == 0) {
+        return;
+      }
+      size.addAndGet(-count);
+      serve(batch, count);
+    }
+  }
+
+  /**
+   * Generate IDs for a batch of requests with a single reservation
+   *
+   * @param batch Requests to serve
+   * @param count Number of requests in the batch
+   */
+  private void serve(final Request[] batch, final int count) {
+    batchSizes.update(count);
+    batches.mark();
+
+    final long[] ids = new long[count];
+    try {
+      worker.nextIds(ids, 0, count, Priority.BULK);
+    } catch (final InvalidSystemClock e) {
+      for (int i = 0; i < count; i++) {
+        batch[i].future.completeExceptionally(e);
+      }
+      return;
+    }
+
+    for (int i = 0; i < count; i++) {
+      worker.genCounter(batch[i].agent);
+      batch[i].future.complete(ids[i]);
+    }
+  }
+
+  private static final class Request {
+    private final String agent;
+    private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+    private Request(final String agent) {
+      this.agent = agent;
+    }
+  }
+}
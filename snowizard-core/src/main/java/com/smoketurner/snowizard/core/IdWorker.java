@@ -27,11 +27,17 @@
 package com.smoketurner.snowizard.core;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.snowizard.common.IdLayout;
 import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
 import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -43,30 +49,34 @@ public class IdWorker {
   private static final Logger LOGGER = LoggerFactory.getLogger(IdWorker.class);
   private static final Pattern AGENT_PATTERN = Pattern.compile("([a-zA-Z][a-zA-Z0-9\\-]*)");
 
-  public static final long TWEPOCH = 1288834974657L;
+  public static final long TWEPOCH = IdLayout.TWEPOCH;
 
-  private static final long WORKER_ID_BITS = 5L;
-  private static final long DATACENTER_ID_BITS = 5L;
-  private static final long MAX_WORKER_ID = -1L ^ (-1L << WORKER_ID_BITS);
-  private static final long MAX_DATACENTER_ID = -1L ^ (-1L << DATACENTER_ID_BITS);
-  private static final long SEQUENCE_BITS = 12L;
+  private static final long MAX_WORKER_ID = IdLayout.MAX_WORKER_ID;
+  private static final long MAX_DATACENTER_ID = IdLayout.MAX_DATACENTER_ID;
+  private static final long SEQUENCE_MASK = IdLayout.MAX_SEQUENCE;
+  private static final double SEQUENCE_SPACE = SEQUENCE_MASK + 1;
 
-  private static final long WORKER_ID_SHIFT = SEQUENCE_BITS;
-  private static final long DATACENTER_ID_SHIFT = SEQUENCE_BITS + WORKER_ID_BITS;
-  private static final long TIMESTAMP_LEFT_SHIFT =
-      SEQUENCE_BITS + WORKER_ID_BITS + DATACENTER_ID_BITS;
-  private static final long SEQUENCE_MASK = -1L ^ (-1L << SEQUENCE_BITS);
+  // per-millisecond decay of the sequence utilization average (roughly a 10ms window)
+  private static final double UTILIZATION_DECAY = 0.9;
 
   private final MetricRegistry registry;
   private final Counter idsCounter;
   private final Counter exceptionsCounter;
+  private final Meter exhaustedMeter;
+  private final Meter invalidClockMeter;
   private final Map<String, Counter> agentCounters = new ConcurrentHashMap<>();
   private final long workerId;
   private final long datacenterId;
   private final boolean validateUserAgent;
+  private final long bulkSequenceLimit;
+  private final Set<String> highPriorityAgents;
 
   private long lastTimestamp = -1L;
   private long sequence = 0L;
+  private long lastExhaustedTimestamp = -1L;
+
+  private volatile double utilization = 0.0;
+  private volatile long utilizationTimestamp = -1L;
 
   /**
    * Constructor
@@ -85,10 +95,14 @@ public class IdWorker {
    *
    * @param builder
    */
-  private IdWorker(final Builder builder) {
+  protected IdWorker(final Builder builder) {
 
     exceptionsCounter = builder.registry.counter(MetricRegistry.name(IdWorker.class, "exceptions"));
     idsCounter = builder.registry.counter(MetricRegistry.name(IdWorker.class, "ids_generated"));
+    exhaustedMeter =
+        builder.registry.meter(MetricRegistry.name(IdWorker.class, "sequence_exhausted"));
+    invalidClockMeter =
+        builder.registry.meter(MetricRegistry.name(IdWorker.class, "invalid_clock"));
 
     if (builder.workerId > MAX_WORKER_ID || builder.workerId < 0) {
       exceptionsCounter.inc();
@@ -101,19 +115,28 @@ public class IdWorker {
           String.format(
               "datacenter Id can't be greater than %d or less than 0", MAX_DATACENTER_ID));
     }
+    if (builder.reservedSequence > SEQUENCE_MASK || builder.reservedSequence < 0) {
+      exceptionsCounter.inc();
+      throw new IllegalArgumentException(
+          String.format(
+              "reserved sequence can't be greater than %d or less than 0", SEQUENCE_MASK));
+    }
 
     this.workerId = builder.workerId;
     this.datacenterId = builder.datacenterId;
     this.validateUserAgent = builder.validateUserAgent;
     this.registry = builder.registry;
     this.sequence = builder.startSequence;
+    this.bulkSequenceLimit = SEQUENCE_MASK - builder.reservedSequence;
+    this.highPriorityAgents =
+        Collections.unmodifiableSet(new HashSet<>(builder.highPriorityAgents));
 
     LOGGER.info(
         "worker starting. timestamp left shift {}, datacenter id bits {}, worker id bits {}, sequence bits {}, workerid {}",
-        TIMESTAMP_LEFT_SHIFT,
-        DATACENTER_ID_BITS,
-        WORKER_ID_BITS,
-        SEQUENCE_BITS,
+        IdLayout.TIMESTAMP_LEFT_SHIFT,
+        IdLayout.DATACENTER_ID_BITS,
+        IdLayout.WORKER_ID_BITS,
+        IdLayout.SEQUENCE_BITS,
         builder.workerId);
   }
 
@@ -126,6 +149,8 @@ public class IdWorker {
     private final long datacenterId;
     private long startSequence = 0L;
     private boolean validateUserAgent = true;
+    private long reservedSequence = 0L;
+    private Collection<String> highPriorityAgents = Collections.emptySet();
     private MetricRegistry registry = new MetricRegistry();
 
     /**
@@ -149,6 +174,29 @@ public class IdWorker {
       return this;
     }
 
+    /**
+     * Reserve the top of each millisecond's sequence space for {@link Priority#HIGH} agents.
+     *
+     * @param reservedSequence Number of sequence values per millisecond bulk agents can't use
+     * @return this builder
+     */
+    public Builder withReservedSequence(final long reservedSequence) {
+      this.reservedSequence = reservedSequence;
+      return this;
+    }
+
+    /**
+     * Set the user agents which are allowed to use the reserved sequence space. All other user
+     * agents are treated as {@link Priority#BULK}.
+     *
+     * @param highPriorityAgents High-priority user agents
+     * @return this builder
+     */
+    public Builder withHighPriorityAgents(final Collection<String> highPriorityAgents) {
+      this.highPriorityAgents = Objects.requireNonNull(highPriorityAgents);
+      return this;
+    }
+
     public Builder withMetricRegistry(final MetricRegistry registry) {
       this.registry = Objects.requireNonNull(registry);
       return this;
@@ -168,17 +216,47 @@ public class IdWorker {
    * @throws InvalidSystemClock When the system clock is moving backward
    */
   public long getId(final String agent) throws InvalidUserAgentError, InvalidSystemClock {
-    if (!isValidUserAgent(agent)) {
-      exceptionsCounter.inc();
-      throw new InvalidUserAgentError();
-    }
+    checkUserAgent(agent);
 
-    final long id = nextId();
+    final long id = nextId(getPriority(agent));
     genCounter(agent);
 
     return id;
   }
 
+  /**
+   * Fill part of an array with new IDs for a given user-agent. The agent is validated and counted
+   * once for the whole range rather than once per ID.
+   *
+   * @param agent User Agent
+   * @param ids Array to fill
+   * @param offset Index of the first ID to write
+   * @param length Number of IDs to write
+   * @throws InvalidUserAgentError When the user agent is invalid
+   * @throws InvalidSystemClock When the system clock is moving backward
+   */
+  public void getIds(final String agent, final long[] ids, final int offset, final int length)
+      throws InvalidUserAgentError, InvalidSystemClock {
+    checkUserAgent(agent);
+
+    nextIds(ids, offset, length, getPriority(agent));
+    genCounter(agent, length);
+  }
+
+  /**
+   * Return the priority class of a given user agent
+   *
+   * @param agent User Agent
+   * @return {@link Priority#HIGH} if the agent may use the reserved sequence space, otherwise
+   *     {@link Priority#BULK}
+   */
+  public Priority getPriority(final String agent) {
+    if (highPriorityAgents.contains(agent)) {
+      return Priority.HIGH;
+    }
+    return Priority.BULK;
+  }
+
   /**
    * Return the worker ID
    *
@@ -206,6 +284,49 @@ public class IdWorker {
     return System.currentTimeMillis();
   }
 
+  /**
+   * Return how much of the per-millisecond sequence space is left, as a moving average over the
+   * last few milliseconds. This doesn't take the worker's lock, so it is cheap enough to check on
+   * every response.
+   *
+   * @return Headroom between 0.0 (every millisecond's sequence space is used up) and 1.0 (idle)
+   */
+  public double getHeadroom() {
+    final long idle = timeGen() - utilizationTimestamp;
+    double current = utilization;
+    if (idle > 0) {
+      current *= Math.pow(UTILIZATION_DECAY, idle);
+    }
+    return 1.0 - current;
+  }
+
+  /**
+   * Return the number of milliseconds in which the sequence space was exhausted
+   *
+   * @return Meter of exhausted milliseconds
+   */
+  public Meter getExhaustedMeter() {
+    return exhaustedMeter;
+  }
+
+  /**
+   * Return the number of requests rejected because the clock moved backwards
+   *
+   * @return Meter of invalid clock errors
+   */
+  public Meter getInvalidClockMeter() {
+    return invalidClockMeter;
+  }
+
+  /**
+   * Return the timestamp of the last generated ID
+   *
+   * @return Timestamp in milliseconds, or -1 if no ID has been generated yet
+   */
+  public synchronized long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
   /**
    * Return the current sequence position (visible for testing)
    *
@@ -233,34 +354,210 @@ public class IdWorker {
   public synchronized long nextId() throws InvalidSystemClock {
     long timestamp = timeGen();
 
-    if (timestamp < lastTimestamp) {
-      exceptionsCounter.inc();
-      LOGGER.error("clock is moving backwards. Rejecting requests until {}", lastTimestamp);
-      throw new InvalidSystemClock(
-          String.format(
-              "Clock moved backwards. Refusing to generate id for %d milliseconds",
-              (lastTimestamp - timestamp)));
-    }
+    checkClock(timestamp);
 
     if (lastTimestamp == timestamp) {
       sequence = (sequence + 1) & SEQUENCE_MASK;
       if (sequence == 0) {
+        exhausted(timestamp);
         timestamp = tilNextMillis(lastTimestamp);
+        rollover(timestamp, SEQUENCE_MASK + 1);
       }
     } else {
+      rollover(timestamp, sequence + 1);
       sequence = 0L;
     }
 
     lastTimestamp = timestamp;
-    final long id =
-        ((timestamp - TWEPOCH) << TIMESTAMP_LEFT_SHIFT)
-            | (datacenterId << DATACENTER_ID_SHIFT)
-            | (workerId << WORKER_ID_SHIFT)
-            | sequence;
+    return composeId(timestamp, sequence);
+  }
+
+  /**
+   * Get the next ID for a given priority class. {@link Priority#BULK} requests are limited to the
+   * unreserved part of each millisecond's sequence space and, once that is exhausted, wait for the
+   * next millisecond without holding the lock so {@link Priority#HIGH} requests are not queued
+   * behind them.
+   *
+   * @param priority Priority class of the caller
+   * @return Next ID
+   * @throws InvalidSystemClock When the clock is moving backward
+   */
+  public long nextId(final Priority priority) throws InvalidSystemClock {
+    if (priority == Priority.HIGH || bulkSequenceLimit == SEQUENCE_MASK) {
+      return nextId();
+    }
 
+    long id = nextBulkId();
+    while (id < 0) {
+      // the bulk budget for millisecond -id is exhausted
+      tilNextMillis(-id);
+      id = nextBulkId();
+    }
     return id;
   }
 
+  /**
+   * Fill part of an array with new IDs for a given priority class. Each pass takes the lock once
+   * and reserves as much of the current millisecond's sequence space as it can, so a batch costs
+   * one lock acquisition per millisecond rather than one per ID.
+   *
+   * @param ids Array to fill
+   * @param offset Index of the first ID to write
+   * @param length Number of IDs to write
+   * @param priority Priority class of the caller
+   * @throws InvalidSystemClock When the clock is moving backward
+   */
+  public void nextIds(final long[] ids, final int offset, final int length, final Priority priority)
+      throws InvalidSystemClock {
+    if (offset < 0 || length < 0 || offset + length > ids.length) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    final long limit = priority == Priority.HIGH ? SEQUENCE_MASK : bulkSequenceLimit;
+    int position = offset;
+    int remaining = length;
+    while (remaining > 0) {
+      final long reserved = reserveIds(ids, position, remaining, limit);
+      if (reserved < 0) {
+        // the sequence space for millisecond -reserved is exhausted
+        tilNextMillis(-reserved);
+        continue;
+      }
+      position += reserved;
+      remaining -= reserved;
+    }
+  }
+
+  /**
+   * Write as many IDs as fit into the rest of the current millisecond's sequence space
+   *
+   * @param ids Array to fill
+   * @param offset Index of the first ID to write
+   * @param length Maximum number of IDs to write
+   * @param limit Highest sequence value the caller may use
+   * @return Number of IDs written, or the negated timestamp whose sequence space is exhausted
+   * @throws InvalidSystemClock When the clock is moving backward
+   */
+  private synchronized long reserveIds(
+      final long[] ids, final int offset, final int length, final long limit)
+      throws InvalidSystemClock {
+    final long timestamp = timeGen();
+
+    checkClock(timestamp);
+
+    final long first;
+    if (lastTimestamp == timestamp) {
+      if (sequence >= limit) {
+        exhausted(timestamp);
+        return -timestamp;
+      }
+      first = sequence + 1;
+    } else {
+      rollover(timestamp, sequence + 1);
+      first = 0L;
+    }
+
+    final int count = (int) Math.min(length, limit - first + 1);
+    final long base = composeId(timestamp, 0L);
+    for (int i = 0; i < count; i++) {
+      ids[offset + i] = base | (first + i);
+    }
+
+    sequence = first + count - 1;
+    lastTimestamp = timestamp;
+    return count;
+  }
+
+  /**
+   * Get the next ID from the unreserved sequence space
+   *
+   * @return Next ID, or the negated timestamp whose bulk budget is exhausted
+   * @throws InvalidSystemClock When the clock is moving backward
+   */
+  private synchronized long nextBulkId() throws InvalidSystemClock {
+    final long timestamp = timeGen();
+
+    checkClock(timestamp);
+
+    if (lastTimestamp == timestamp) {
+      if (sequence >= bulkSequenceLimit) {
+        exhausted(timestamp);
+        return -timestamp;
+      }
+      sequence++;
+    } else {
+      rollover(timestamp, sequence + 1);
+      sequence = 0L;
+    }
+
+    lastTimestamp = timestamp;
+    return composeId(timestamp, sequence);
+  }
+
+  /**
+   * Record that the sequence space of a millisecond has been exhausted
+   *
+   * @param timestamp Exhausted timestamp
+   */
+  private void exhausted(final long timestamp) {
+    if (lastExhaustedTimestamp != timestamp) {
+      lastExhaustedTimestamp = timestamp;
+      exhaustedMeter.mark();
+    }
+  }
+
+  /**
+   * Fold the sequence usage of the last millisecond into the utilization average when moving on to
+   * a new millisecond. Milliseconds in which no IDs were generated count as unused.
+   *
+   * @param timestamp New timestamp
+   * @param used Number of sequence values used in the last millisecond
+   */
+  private void rollover(final long timestamp, final long used) {
+    if (lastTimestamp < 0) {
+      utilizationTimestamp = timestamp;
+      return;
+    }
+    double current =
+        utilization * UTILIZATION_DECAY
+            + Math.min(1.0, used / SEQUENCE_SPACE) * (1.0 - UTILIZATION_DECAY);
+    final long idle = timestamp - lastTimestamp - 1;
+    if (idle > 0) {
+      current *= Math.pow(UTILIZATION_DECAY, idle);
+    }
+    utilization = current;
+    utilizationTimestamp = timestamp;
+  }
+
+  /**
+   * Reject timestamps which are earlier than the last one an ID was generated for
+   *
+   * @param timestamp Current timestamp
+   * @throws InvalidSystemClock When the clock is moving backward
+   */
+  private void checkClock(final long timestamp) throws InvalidSystemClock {
+    if (timestamp < lastTimestamp) {
+      exceptionsCounter.inc();
+      invalidClockMeter.mark();
+      LOGGER.error("clock is moving backwards. Rejecting requests until {}", lastTimestamp);
+      throw new InvalidSystemClock(
+          String.format(
+              "Clock moved backwards. Refusing to generate id for %d milliseconds",
+              (lastTimestamp - timestamp)));
+    }
+  }
+
+  /**
+   * Build an ID from its timestamp and sequence components
+   *
+   * @param timestamp Timestamp in milliseconds
+   * @param sequence Sequence within the millisecond
+   * @return ID
+   */
+  private long composeId(final long timestamp, final long sequence) {
+    return IdLayout.compose(timestamp, datacenterId, workerId, sequence);
+  }
+
   /**
    * Return the next time in milliseconds
    *
@@ -298,17 +595,40 @@ public class IdWorker {
     return matcher.matches();
   }
 
+  /**
+   * Reject an invalid user agent
+   *
+   * @param agent User-Agent
+   * @throws InvalidUserAgentError When the user agent is invalid
+   */
+  void checkUserAgent(final String agent) throws InvalidUserAgentError {
+    if (!isValidUserAgent(agent)) {
+      exceptionsCounter.inc();
+      throw new InvalidUserAgentError();
+    }
+  }
+
   /**
    * Update the counters for a given user agent
    *
    * @param agent User-Agent
    */
   protected void genCounter(final String agent) {
-    idsCounter.inc();
+    genCounter(agent, 1L);
+  }
+
+  /**
+   * Update the counters for a given user agent
+   *
+   * @param agent User-Agent
+   * @param count Number of IDs generated
+   */
+  protected void genCounter(final String agent, final long count) {
+    idsCounter.inc(count);
     if (!agentCounters.containsKey(agent)) {
       agentCounters.put(
           agent, registry.counter(MetricRegistry.name(IdWorker.class, "ids_generated_" + agent)));
     }
-    agentCounters.get(agent).inc();
+    agentCounters.get(agent).inc(count);
   }
 }
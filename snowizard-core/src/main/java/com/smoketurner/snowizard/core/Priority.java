@@ -24,14 +24,13 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-package com.smoketurner.snowizard.application.health;
+package com.smoketurner.snowizard.core;
 
-import com.codahale.metrics.health.HealthCheck;
+/** Priority class of a user agent when competing for the per-millisecond sequence space. */
+public enum Priority {
+  /** Latency-critical agents which may use the full sequence space, including the reserve. */
+  HIGH,
 
-public class EmptyHealthCheck extends HealthCheck {
-
-  @Override
-  protected Result check() throws Exception {
-    return Result.healthy();
-  }
+  /** Bulk agents which may only use the sequence space that is not reserved. */
+  BULK
 }
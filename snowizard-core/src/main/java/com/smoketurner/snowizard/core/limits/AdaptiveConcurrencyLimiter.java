@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core.limits;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrency limiter which adjusts its limit from the measured latency of completed requests,
+ * using a gradient between the long-term and the current response time. When response times rise
+ * above the long-term baseline the limit shrinks, and requests beyond the limit are rejected
+ * immediately instead of being queued.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private static final double SMOOTHING = 0.2;
+  private static final double TOLERANCE = 1.5;
+  private static final int LONG_WINDOW = 600;
+
+  private final AtomicInteger inflight = new AtomicInteger();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final int minLimit;
+  private final int maxLimit;
+
+  private volatile double estimatedLimit;
+  private double longRtt = 0.0;
+
+  /**
+   * Constructor
+   *
+   * @param initialLimit Initial concurrency limit
+   * @param minLimit Minimum concurrency limit
+   * @param maxLimit Maximum concurrency limit
+   */
+  public AdaptiveConcurrencyLimiter(
+      final int initialLimit, final int minLimit, final int maxLimit) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("limits must satisfy 1 <= minLimit <= maxLimit");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  /**
+   * Try to start a request without waiting
+   *
+   * @return true if the request may proceed, otherwise false
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      final int current = inflight.get();
+      if (current >= (int) estimatedLimit) {
+        return false;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Complete a request and use its response time to update the limit
+   *
+   * @param startNanoTime Value of {@link #nanoTime()} when the request was acquired
+   */
+  public void release(final long startNanoTime) {
+    final int current = inflight.getAndDecrement();
+    update(nanoTime() - startNanoTime, current);
+  }
+
+  /** Complete a request without using its response time, e.g. if it was cancelled. */
+  public void cancel() {
+    inflight.decrementAndGet();
+  }
+
+  /**
+   * Return the current concurrency limit
+   *
+   * @return current concurrency limit
+   */
+  public int getLimit() {
+    return (int) estimatedLimit;
+  }
+
+  /**
+   * Return the number of requests in flight
+   *
+   * @return number of requests in flight
+   */
+  public int getInflight() {
+    return inflight.get();
+  }
+
+  /**
+   * Return the current value of the time source in nanoseconds
+   *
+   * @return current time in nanoseconds
+   */
+  public long nanoTime() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Update the limit from a response time sample. Samples which arrive while another one is being
+   * applied are dropped rather than contending for the lock.
+   *
+   * @param rtt Response time in nanoseconds
+   * @param inflight Number of requests in flight when the request completed
+   */
+  private void update(final long rtt, final int inflight) {
+    if (rtt <= 0 || !lock.tryLock()) {
+      return;
+    }
+    try {
+      if (longRtt == 0.0) {
+        longRtt = rtt;
+      } else {
+        longRtt += (rtt - longRtt) / LONG_WINDOW;
+      }
+
+      // let the baseline recover quickly after a period of high latency
+      if (longRtt / rtt > 2.0) {
+        longRtt *= 0.95;
+      }
+
+      final double limit = estimatedLimit;
+
+      // don't grow the limit when it isn't being used
+      if (inflight < limit / 2) {
+        return;
+      }
+
+      final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+      double newLimit = limit * gradient + Math.sqrt(limit);
+      newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+      estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    } finally {
+      lock.unlock();
+    }
+  }
+}
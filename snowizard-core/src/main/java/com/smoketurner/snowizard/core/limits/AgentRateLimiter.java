@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core.limits;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of IDs each user agent may generate per second.
+ *
+ * <p>Agents are named by the client, so the number of buckets is bounded: once {@code maxAgents}
+ * buckets exist, buckets which have refilled are dropped, and if that is not enough, buckets of
+ * agents without a configured rate are dropped until the map is back under three quarters of its
+ * capacity. A dropped bucket is recreated full on the agent's next request.
+ */
+public class AgentRateLimiter {
+
+  public static final int DEFAULT_MAX_AGENTS = 10_000;
+
+  private static final AgentRateLimiter UNLIMITED =
+      new AgentRateLimiter(0L, Collections.emptyMap(), 1L, TimeUnit.SECONDS);
+
+  private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private final long defaultIdsPerSecond;
+  private final Map<String, Long> agentIdsPerSecond;
+  private final double burstSeconds;
+  private final int maxAgents;
+
+  /**
+   * Constructor
+   *
+   * @param defaultIdsPerSecond IDs per second allowed for each agent, or 0 for unlimited
+   * @param agentIdsPerSecond Per-agent overrides of the IDs per second, 0 for unlimited
+   * @param burst Amount of time worth of IDs an idle agent may generate at once
+   * @param burstUnit Unit of the burst duration
+   */
+  public AgentRateLimiter(
+      final long defaultIdsPerSecond,
+      final Map<String, Long> agentIdsPerSecond,
+      final long burst,
+      final TimeUnit burstUnit) {
+    this(defaultIdsPerSecond, agentIdsPerSecond, burst, burstUnit, DEFAULT_MAX_AGENTS);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param defaultIdsPerSecond IDs per second allowed for each agent, or 0 for unlimited
+   * @param agentIdsPerSecond Per-agent overrides of the IDs per second, 0 for unlimited
+   * @param burst Amount of time worth of IDs an idle agent may generate at once
+   * @param burstUnit Unit of the burst duration
+   * @param maxAgents Number of agents to track before idle agents are dropped
+   */
+  public AgentRateLimiter(
+      final long defaultIdsPerSecond,
+      final Map<String, Long> agentIdsPerSecond,
+      final long burst,
+      final TimeUnit burstUnit,
+      final int maxAgents) {
+    if (maxAgents < 1) {
+      throw new IllegalArgumentException("maxAgents must be greater than 0");
+    }
+    this.defaultIdsPerSecond = defaultIdsPerSecond;
+    this.agentIdsPerSecond = new HashMap<>(Objects.requireNonNull(agentIdsPerSecond));
+    this.burstSeconds = burstUnit.toNanos(burst) / (double) TimeUnit.SECONDS.toNanos(1);
+    this.maxAgents = maxAgents;
+  }
+
+  /**
+   * Return a rate limiter which never rejects a request
+   *
+   * @return unlimited rate limiter
+   */
+  public static AgentRateLimiter unlimited() {
+    return UNLIMITED;
+  }
+
+  /**
+   * Try to take a number of IDs from an agent's quota without waiting
+   *
+   * @param agent User Agent
+   * @param count Number of IDs requested
+   * @return true if the agent is within its quota, otherwise false
+   */
+  public boolean tryAcquire(final String agent, final long count) {
+    final long idsPerSecond = agentIdsPerSecond.getOrDefault(agent, defaultIdsPerSecond);
+    if (idsPerSecond <= 0) {
+      return true;
+    }
+    TokenBucket bucket = buckets.get(agent);
+    if (bucket == null) {
+      if (buckets.size() >= maxAgents) {
+        evict();
+      }
+      bucket = buckets.computeIfAbsent(agent, k -> newBucket(idsPerSecond));
+    }
+    return bucket.tryAcquire(count);
+  }
+
+  /**
+   * Return the number of IDs per second an agent may generate
+   *
+   * @param agent User Agent
+   * @return IDs per second, or 0 if the agent is unlimited
+   */
+  public long getIdsPerSecond(final String agent) {
+    return Math.max(0L, agentIdsPerSecond.getOrDefault(agent, defaultIdsPerSecond));
+  }
+
+  /**
+   * Return the largest number of IDs an agent may take at once. Larger requests are always
+   * rejected, however long the agent waits.
+   *
+   * @param agent User Agent
+   * @return number of IDs, or {@link Long#MAX_VALUE} if the agent is unlimited
+   */
+  public long getCapacity(final String agent) {
+    final long idsPerSecond = getIdsPerSecond(agent);
+    return idsPerSecond > 0 ? capacity(idsPerSecond) : Long.MAX_VALUE;
+  }
+
+  /**
+   * Return the number of agents currently tracked
+   *
+   * @return number of agents with a bucket
+   */
+  public int size() {
+    return buckets.size();
+  }
+
+  /** Drop buckets until there is room for new agents; only one caller sweeps at a time. */
+  private void evict() {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      buckets.values().removeIf(TokenBucket::isFull);
+
+      final int target = maxAgents - maxAgents / 4;
+      final Iterator<String> it = buckets.keySet().iterator();
+      while (buckets.size() >= target && it.hasNext()) {
+        if (!agentIdsPerSecond.containsKey(it.next())) {
+          it.remove();
+        }
+      }
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  private TokenBucket newBucket(final long idsPerSecond) {
+    return new TokenBucket(idsPerSecond, capacity(idsPerSecond));
+  }
+
+  private long capacity(final long idsPerSecond) {
+    return Math.max(1L, (long) (idsPerSecond * burstSeconds));
+  }
+}
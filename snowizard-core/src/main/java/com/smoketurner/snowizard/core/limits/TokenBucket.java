@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core.limits;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, implemented as a generic cell rate algorithm: the only state is the
+ * theoretical time at which the bucket will be full again, which is advanced with a single
+ * compare-and-set per acquisition.
+ */
+public class TokenBucket {
+
+  private final AtomicLong theoreticalArrival;
+  private final double nanosPerPermit;
+  private final long tolerance;
+
+  /**
+   * Constructor
+   *
+   * @param permitsPerSecond Rate at which permits are added to the bucket
+   * @param capacity Maximum number of permits the bucket can hold
+   */
+  public TokenBucket(final double permitsPerSecond, final long capacity) {
+    if (permitsPerSecond <= 0) {
+      throw new IllegalArgumentException("permitsPerSecond must be greater than 0");
+    }
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be greater than 0");
+    }
+    this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    this.tolerance = (long) (capacity * nanosPerPermit);
+    // start with a full bucket
+    this.theoreticalArrival = new AtomicLong(nanoTime());
+  }
+
+  /**
+   * Try to take a number of permits from the bucket without waiting
+   *
+   * @param permits Number of permits to take
+   * @return true if the permits were taken, otherwise false
+   */
+  public boolean tryAcquire(final long permits) {
+    if (permits <= 0) {
+      return true;
+    }
+
+    final long increment = (long) (permits * nanosPerPermit);
+    if (increment > tolerance) {
+      // larger than the bucket can ever hold
+      return false;
+    }
+
+    final long now = nanoTime();
+    while (true) {
+      final long arrival = theoreticalArrival.get();
+      final long next = (arrival - now > 0 ? arrival : now) + increment;
+      if (next - now > tolerance) {
+        return false;
+      }
+      if (theoreticalArrival.compareAndSet(arrival, next)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Return whether the bucket has refilled to its capacity, in which case discarding it and
+   * starting with a new bucket is indistinguishable from keeping it.
+   *
+   * @return true if the bucket is full, otherwise false
+   */
+  public boolean isFull() {
+    return theoreticalArrival.get() - nanoTime() <= 0;
+  }
+
+  /**
+   * Return the current value of the time source in nanoseconds
+   *
+   * @return current time in nanoseconds
+   */
+  protected long nanoTime() {
+    return System.nanoTime();
+  }
+}
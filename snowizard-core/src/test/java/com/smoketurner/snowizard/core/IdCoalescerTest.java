@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import com.codahale.metrics.MetricRegistry;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class IdCoalescerTest {
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final MetricRegistry registry = new MetricRegistry();
+  private final IdWorker worker =
+      IdWorker.builder(1, 1)
+          .withValidateUserAgent(true)
+          .withHighPriorityAgents(Collections.singleton("interactive"))
+          .build();
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void testFullBatchIsServedImmediately() throws Exception {
+    final IdCoalescer coalescer =
+        new IdCoalescer(worker, scheduler, 3, 1, TimeUnit.HOURS, registry);
+
+    final CompletableFuture<Long> first = coalescer.submit("test");
+    final CompletableFuture<Long> second = coalescer.submit("test");
+    assertThat(first).isNotDone();
+    assertThat(coalescer.getPending()).isEqualTo(2);
+
+    final CompletableFuture<Long> third = coalescer.submit("test");
+    assertThat(first).isDone();
+    assertThat(second).isDone();
+    assertThat(third).isDone();
+    assertThat(first.get()).isLessThan(second.get());
+    assertThat(second.get()).isLessThan(third.get());
+    assertThat(coalescer.getPending()).isEqualTo(0);
+
+    final long[] sizes =
+        registry
+            .histogram("com.smoketurner.snowizard.core.IdCoalescer.batch_size")
+            .getSnapshot()
+            .getValues();
+    assertThat(sizes).containsExactly(3L);
+  }
+
+  @Test
+  public void testPartialBatchIsServedAfterDelay() throws Exception {
+    final IdCoalescer coalescer =
+        new IdCoalescer(worker, scheduler, 100, 1, TimeUnit.MILLISECONDS, registry);
+
+    final CompletableFuture<Long> first = coalescer.submit("test");
+    final CompletableFuture<Long> second = coalescer.submit("test");
+
+    assertThat(second.get(5, TimeUnit.SECONDS)).isGreaterThan(first.get(5, TimeUnit.SECONDS));
+    assertThat(coalescer.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void testHighPriorityIsNotCoalesced() throws Exception {
+    final IdCoalescer coalescer =
+        new IdCoalescer(worker, scheduler, 100, 1, TimeUnit.HOURS, registry);
+
+    final CompletableFuture<Long> future = coalescer.submit("interactive");
+    assertThat(future).isDone();
+    assertThat(future.get()).isGreaterThan(0L);
+    assertThat(coalescer.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void testInvalidUserAgent() throws Exception {
+    final IdCoalescer coalescer =
+        new IdCoalescer(worker, scheduler, 100, 1, TimeUnit.HOURS, registry);
+    try {
+      coalescer.submit("1");
+      failBecauseExceptionWasNotThrown(InvalidUserAgentError.class);
+    } catch (InvalidUserAgentError e) {
+    }
+    assertThat(coalescer.getPending()).isEqualTo(0);
+  }
+
+  @Test
+  public void testInvalidMaxBatch() throws Exception {
+    try {
+      new IdCoalescer(worker, scheduler, 0, 1, TimeUnit.HOURS, registry);
+      failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+    } catch (IllegalArgumentException e) {
+    }
+  }
+}
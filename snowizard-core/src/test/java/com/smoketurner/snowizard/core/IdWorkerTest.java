@@ -29,9 +29,11 @@ package com.smoketurner.snowizard.core;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
+import com.smoketurner.snowizard.common.IdLayout;
 import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
 import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -90,6 +92,30 @@ public class IdWorkerTest {
     }
   }
 
+  class ReservedTimeWorker extends IdWorker {
+    public long time = 1L;
+    public int slept = 0;
+
+    public ReservedTimeWorker(long reservedSequence) {
+      super(
+          IdWorker.builder(1, 1)
+              .withReservedSequence(reservedSequence)
+              .withHighPriorityAgents(Collections.singleton("interactive")));
+    }
+
+    @Override
+    protected long timeGen() {
+      return time + TWEPOCH;
+    }
+
+    @Override
+    protected long tilNextMillis(long lastTimestamp) {
+      slept += 1;
+      time += 1;
+      return super.tilNextMillis(lastTimestamp);
+    }
+  }
+
   @Test
   public void testInvalidWorkerId() {
     try {
@@ -321,4 +347,146 @@ public class IdWorkerTest {
     final long id = worker.getId("infra-dm");
     assertThat(id).isGreaterThan(0L);
   }
+
+  @Test
+  public void testInvalidReservedSequence() {
+    try {
+      IdWorker.builder(1, 1).withReservedSequence(-1).build();
+      failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+    } catch (IllegalArgumentException e) {
+    }
+
+    try {
+      IdWorker.builder(1, 1).withReservedSequence(4096).build();
+      failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testGetPriority() throws Exception {
+    final ReservedTimeWorker worker = new ReservedTimeWorker(10L);
+    assertThat(worker.getPriority("interactive")).isEqualTo(Priority.HIGH);
+    assertThat(worker.getPriority("backfill")).isEqualTo(Priority.BULK);
+  }
+
+  @Test
+  public void testBulkCannotUseReservedSequence() throws Exception {
+    final long sequenceMask = -1L ^ (-1L << 12);
+    final ReservedTimeWorker worker = new ReservedTimeWorker(4094L);
+
+    final long id1 = worker.nextId(Priority.BULK);
+    assertThat(id1 >> 22).isEqualTo(1L);
+    assertThat(id1 & sequenceMask).isEqualTo(0L);
+
+    final long id2 = worker.nextId(Priority.BULK);
+    assertThat(id2 >> 22).isEqualTo(1L);
+    assertThat(id2 & sequenceMask).isEqualTo(1L);
+    assertThat(worker.slept).isEqualTo(0);
+
+    // the unreserved space for this millisecond is exhausted
+    final long id3 = worker.nextId(Priority.BULK);
+    assertThat(id3 >> 22).isEqualTo(2L);
+    assertThat(id3 & sequenceMask).isEqualTo(0L);
+    assertThat(worker.slept).isEqualTo(1);
+  }
+
+  @Test
+  public void testHighPriorityUsesReservedSequence() throws Exception {
+    final long sequenceMask = -1L ^ (-1L << 12);
+    final ReservedTimeWorker worker = new ReservedTimeWorker(4094L);
+
+    worker.getId("backfill");
+    worker.getId("backfill");
+
+    final long id = worker.getId("interactive");
+    assertThat(id >> 22).isEqualTo(1L);
+    assertThat(id & sequenceMask).isEqualTo(2L);
+    assertThat(worker.slept).isEqualTo(0);
+  }
+
+  @Test
+  public void testHeadroom() throws Exception {
+    final ReservedTimeWorker worker = new ReservedTimeWorker(0L);
+    assertThat(worker.getHeadroom()).isEqualTo(1.0);
+
+    // use up the whole sequence space of 20 consecutive milliseconds
+    for (int i = 0; i < 4096 * 20; i++) {
+      worker.nextId();
+    }
+    assertThat(worker.slept).isEqualTo(19);
+    assertThat(worker.getHeadroom()).isLessThan(0.2);
+    assertThat(worker.getExhaustedMeter().getCount()).isEqualTo(19L);
+
+    // and recover once the worker is idle
+    worker.time += 100;
+    assertThat(worker.getHeadroom()).isGreaterThan(0.99);
+  }
+
+  @Test
+  public void testNextIdsSpansMilliseconds() throws Exception {
+    final long sequenceMask = -1L ^ (-1L << 12);
+    final ReservedTimeWorker worker = new ReservedTimeWorker(0L);
+
+    final long[] ids = new long[5000];
+    worker.nextIds(ids, 0, ids.length, Priority.HIGH);
+    assertThat(worker.slept).isEqualTo(1);
+
+    for (int i = 1; i < ids.length; i++) {
+      assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+    }
+    assertThat(ids[4095] >> 22).isEqualTo(1L);
+    assertThat(ids[4095] & sequenceMask).isEqualTo(4095L);
+    assertThat(ids[4096] >> 22).isEqualTo(2L);
+    assertThat(ids[4096] & sequenceMask).isEqualTo(0L);
+
+    // single IDs continue from the end of the batch
+    final long id = worker.nextId();
+    assertThat(id).isEqualTo(ids[4999] + 1);
+  }
+
+  @Test
+  public void testNextIdsBulkCannotUseReservedSequence() throws Exception {
+    final long sequenceMask = -1L ^ (-1L << 12);
+    final ReservedTimeWorker worker = new ReservedTimeWorker(4094L);
+
+    final long[] ids = new long[5];
+    worker.nextIds(ids, 1, 3, Priority.BULK);
+    assertThat(ids[0]).isEqualTo(0L);
+    assertThat(ids[1] & sequenceMask).isEqualTo(0L);
+    assertThat(ids[2] & sequenceMask).isEqualTo(1L);
+    assertThat(ids[3] >> 22).isEqualTo(2L);
+    assertThat(ids[3] & sequenceMask).isEqualTo(0L);
+    assertThat(ids[4]).isEqualTo(0L);
+    assertThat(worker.slept).isEqualTo(1);
+  }
+
+  @Test
+  public void testGetIds() throws Exception {
+    final IdWorker worker = IdWorker.builder(1, 1).build();
+    final long[] ids = new long[100];
+    worker.getIds("infra-dm", ids, 0, ids.length);
+    assertThat(ids).doesNotHaveDuplicates().isSorted();
+  }
+
+  @Test
+  public void testGetIdsInvalidUserAgent() throws Exception {
+    final IdWorker worker = IdWorker.builder(1, 1).build();
+    try {
+      worker.getIds("1", new long[1], 0, 1);
+      failBecauseExceptionWasNotThrown(InvalidUserAgentError.class);
+    } catch (InvalidUserAgentError e) {
+    }
+  }
+
+  @Test
+  public void testIdsFollowIdLayout() throws Exception {
+    final IdWorker worker = IdWorker.builder(3, 7).build();
+    final long id = worker.nextId();
+
+    assertThat(IdLayout.getTimestamp(id)).isEqualTo(worker.getLastTimestamp());
+    assertThat(IdLayout.getDatacenterId(id)).isEqualTo(7L);
+    assertThat(IdLayout.getWorkerId(id)).isEqualTo(3L);
+    assertThat(IdLayout.getSequence(id)).isEqualTo(worker.getSequence());
+  }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core.limits;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+  class ManualLimiter extends AdaptiveConcurrencyLimiter {
+    public long time = 0L;
+
+    public ManualLimiter(int initialLimit, int minLimit, int maxLimit) {
+      super(initialLimit, minLimit, maxLimit);
+    }
+
+    @Override
+    public long nanoTime() {
+      return time;
+    }
+  }
+
+  @Test
+  public void testRejectsAboveLimit() throws Exception {
+    final ManualLimiter limiter = new ManualLimiter(2, 1, 10);
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isTrue();
+    assertThat(limiter.tryAcquire()).isFalse();
+    assertThat(limiter.getInflight()).isEqualTo(2);
+
+    limiter.cancel();
+    assertThat(limiter.getInflight()).isEqualTo(1);
+    assertThat(limiter.tryAcquire()).isTrue();
+  }
+
+  @Test
+  public void testInvalidLimits() throws Exception {
+    try {
+      new AdaptiveConcurrencyLimiter(10, 0, 10);
+      failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void testLimitGrowsWhileLatencyIsStable() throws Exception {
+    final ManualLimiter limiter = new ManualLimiter(10, 1, 100);
+    for (int i = 0; i < 100; i++) {
+      saturate(limiter);
+      limiter.time += TimeUnit.MILLISECONDS.toNanos(1);
+      releaseAll(limiter, limiter.time - TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertThat(limiter.getLimit()).isGreaterThan(10);
+  }
+
+  @Test
+  public void testLimitShrinksWhenLatencyIncreases() throws Exception {
+    final ManualLimiter limiter = new ManualLimiter(50, 1, 100);
+    saturate(limiter);
+    limiter.time += TimeUnit.MILLISECONDS.toNanos(1);
+    releaseAll(limiter, limiter.time - TimeUnit.MILLISECONDS.toNanos(1));
+
+    final int before = limiter.getLimit();
+    for (int i = 0; i < 10; i++) {
+      saturate(limiter);
+      limiter.time += TimeUnit.MILLISECONDS.toNanos(100);
+      releaseAll(limiter, limiter.time - TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    assertThat(limiter.getLimit()).isLessThan(before);
+  }
+
+  private static void saturate(ManualLimiter limiter) {
+    while (limiter.tryAcquire()) {}
+  }
+
+  private static void releaseAll(ManualLimiter limiter, long start) {
+    while (limiter.getInflight() > 0) {
+      limiter.release(start);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core.limits;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class AgentRateLimiterTest {
+
+  @Test
+  public void testLimitsEachAgent() throws Exception {
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(1, Collections.emptyMap(), 1, TimeUnit.SECONDS);
+    assertThat(limiter.tryAcquire("first", 1)).isTrue();
+    assertThat(limiter.tryAcquire("first", 1)).isFalse();
+    assertThat(limiter.tryAcquire("second", 1)).isTrue();
+  }
+
+  @Test
+  public void testAgentOverride() throws Exception {
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(1, Collections.singletonMap("bulk", 0L), 1, TimeUnit.SECONDS);
+    assertThat(limiter.tryAcquire("bulk", 1000)).isTrue();
+    assertThat(limiter.tryAcquire("bulk", 1000)).isTrue();
+    assertThat(limiter.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testBoundsNumberOfAgents() throws Exception {
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(1, Collections.emptyMap(), 1, TimeUnit.SECONDS, 4);
+    for (int i = 0; i < 100; i++) {
+      assertThat(limiter.tryAcquire("agent-" + i, 1)).isTrue();
+      assertThat(limiter.size()).isLessThanOrEqualTo(4);
+    }
+  }
+
+  @Test
+  public void testEvictsIdleAgentsFirst() throws Exception {
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(1, Collections.emptyMap(), 1, TimeUnit.SECONDS, 4);
+    assertThat(limiter.tryAcquire("busy", 1)).isTrue();
+    // requesting nothing leaves these buckets full
+    assertThat(limiter.tryAcquire("idle-a", 0)).isTrue();
+    assertThat(limiter.tryAcquire("idle-b", 0)).isTrue();
+    assertThat(limiter.tryAcquire("idle-c", 0)).isTrue();
+    assertThat(limiter.size()).isEqualTo(4);
+
+    assertThat(limiter.tryAcquire("new", 1)).isTrue();
+    assertThat(limiter.size()).isEqualTo(2);
+    assertThat(limiter.tryAcquire("busy", 1)).isFalse();
+  }
+
+  @Test
+  public void testKeepsConfiguredAgents() throws Exception {
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(1, Collections.singletonMap("vip", 1L), 1, TimeUnit.SECONDS, 4);
+    assertThat(limiter.tryAcquire("vip", 1)).isTrue();
+    for (int i = 0; i < 100; i++) {
+      limiter.tryAcquire("agent-" + i, 1);
+    }
+    assertThat(limiter.tryAcquire("vip", 1)).isFalse();
+  }
+
+  @Test
+  public void testCapacity() throws Exception {
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(100, Collections.singletonMap("bulk", 0L), 2, TimeUnit.SECONDS);
+    assertThat(limiter.getIdsPerSecond("agent")).isEqualTo(100);
+    assertThat(limiter.getCapacity("agent")).isEqualTo(200);
+    assertThat(limiter.tryAcquire("agent", 201)).isFalse();
+    assertThat(limiter.tryAcquire("agent", 200)).isTrue();
+
+    assertThat(limiter.getIdsPerSecond("bulk")).isEqualTo(0);
+    assertThat(limiter.getCapacity("bulk")).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxAgents() throws Exception {
+    new AgentRateLimiter(1, Collections.emptyMap(), 1, TimeUnit.SECONDS, 0);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.core.limits;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+  class ManualTokenBucket extends TokenBucket {
+    public long time;
+
+    public ManualTokenBucket(double permitsPerSecond, long capacity) {
+      super(permitsPerSecond, capacity);
+    }
+
+    @Override
+    protected long nanoTime() {
+      return time;
+    }
+  }
+
+  @Test
+  public void testStartsFull() throws Exception {
+    final ManualTokenBucket bucket = new ManualTokenBucket(1000, 100);
+    assertThat(bucket.tryAcquire(100)).isTrue();
+    assertThat(bucket.tryAcquire(1)).isFalse();
+  }
+
+  @Test
+  public void testRefills() throws Exception {
+    final ManualTokenBucket bucket = new ManualTokenBucket(1000, 100);
+    assertThat(bucket.tryAcquire(100)).isTrue();
+    assertThat(bucket.tryAcquire(10)).isFalse();
+
+    bucket.time += TimeUnit.MILLISECONDS.toNanos(10);
+    assertThat(bucket.tryAcquire(10)).isTrue();
+    assertThat(bucket.tryAcquire(1)).isFalse();
+  }
+
+  @Test
+  public void testDoesNotRefillBeyondCapacity() throws Exception {
+    final ManualTokenBucket bucket = new ManualTokenBucket(1000, 100);
+    bucket.time += TimeUnit.SECONDS.toNanos(10);
+    assertThat(bucket.tryAcquire(100)).isTrue();
+    assertThat(bucket.tryAcquire(1)).isFalse();
+  }
+
+  @Test
+  public void testRejectsMoreThanCapacity() throws Exception {
+    final ManualTokenBucket bucket = new ManualTokenBucket(1000, 100);
+    assertThat(bucket.tryAcquire(101)).isFalse();
+    assertThat(bucket.tryAcquire(100)).isTrue();
+  }
+
+  @Test
+  public void testRejectedRequestsDoNotConsume() throws Exception {
+    final ManualTokenBucket bucket = new ManualTokenBucket(1000, 100);
+    assertThat(bucket.tryAcquire(60)).isTrue();
+    assertThat(bucket.tryAcquire(60)).isFalse();
+    assertThat(bucket.tryAcquire(40)).isTrue();
+  }
+
+  @Test
+  public void testIsFull() throws Exception {
+    final ManualTokenBucket bucket = new ManualTokenBucket(1000, 100);
+    assertThat(bucket.isFull()).isTrue();
+    assertThat(bucket.tryAcquire(10)).isTrue();
+    assertThat(bucket.isFull()).isFalse();
+
+    bucket.time += TimeUnit.MILLISECONDS.toNanos(9);
+    assertThat(bucket.isFull()).isFalse();
+    bucket.time += TimeUnit.MILLISECONDS.toNanos(1);
+    assertThat(bucket.isFull()).isTrue();
+  }
+}
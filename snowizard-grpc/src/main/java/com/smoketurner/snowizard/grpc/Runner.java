@@ -47,7 +47,10 @@ public class Runner {
         .withDefaultCommand(Help.class)
         .withCommand(Help.class)
         .withCommand(SnowizardClient.Cmd.class)
-        .withCommand(SnowizardServer.Cmd.class);
+        .withCommand(SnowizardServer.Cmd.class)
+        .withCommand(SnowizardHttpServer.Cmd.class)
+        .withCommand(SnowizardThriftServer.Cmd.class)
+        .withCommand(SnowizardRespServer.Cmd.class);
 
     return builder.build();
   }
@@ -28,27 +28,38 @@ package com.smoketurner.snowizard.grpc;
 
 import com.google.common.collect.ImmutableList;
 import com.google.protobuf.Empty;
-import com.smoketurner.snowizard.grpc.protos.SnowizardGrpc;
+import com.smoketurner.snowizard.grpc.marshal.IdBatch;
+import com.smoketurner.snowizard.grpc.marshal.IdMethods;
+import com.smoketurner.snowizard.grpc.protos.Encoding;
+import com.smoketurner.snowizard.grpc.protos.IdCredit;
 import com.smoketurner.snowizard.grpc.protos.SnowizardRequest;
-import com.smoketurner.snowizard.grpc.protos.SnowizardResponse;
 import com.smoketurner.snowizard.grpc.stats.Recorder;
 import com.smoketurner.snowizard.grpc.stats.Snapshot;
 import com.smoketurner.snowizard.grpc.util.Netty;
 import com.smoketurner.snowizard.grpc.util.TlsContext;
 import io.airlift.airline.Command;
 import io.airlift.airline.Option;
+import io.grpc.CallOptions;
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.OptionalLong;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.LongStream;
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
 import net.logstash.logback.marker.Markers;
 import org.slf4j.Logger;
@@ -60,25 +71,34 @@ public class SnowizardClient {
 
   private final EventLoopGroup eventLoopGroup;
   private final ManagedChannel channel;
-  private final SnowizardGrpc.SnowizardBlockingStub blockingStub;
 
   /**
    * Constructor
    *
    * @param host Server host
    * @param port Server port
-   * @param tls TLS context
+   * @param socketPath Unix domain socket to connect to instead of the host and port, or null
+   * @param tls TLS context, only used when connecting to a host and port
    */
-  private SnowizardClient(String host, int port, TlsContext tls) throws SSLException {
+  private SnowizardClient(
+      String host, int port, @Nullable String socketPath, @Nullable TlsContext tls)
+      throws SSLException {
+
+    final NettyChannelBuilder builder;
+    if (socketPath != null) {
+      builder =
+          NettyChannelBuilder.forAddress(new DomainSocketAddress(socketPath))
+              .channelType(Netty.clientDomainSocketChannelType())
+              .usePlaintext();
+    } else {
+      builder =
+          NettyChannelBuilder.forAddress(host, port)
+              .channelType(Netty.clientChannelType())
+              .sslContext(Objects.requireNonNull(tls).toClientContext());
+    }
 
     this.eventLoopGroup = Netty.newWorkerEventLoopGroup();
-    this.channel =
-        NettyChannelBuilder.forAddress(host, port)
-            .eventLoopGroup(eventLoopGroup)
-            .channelType(Netty.clientChannelType())
-            .sslContext(tls.toClientContext())
-            .build();
-    this.blockingStub = SnowizardGrpc.newBlockingStub(channel);
+    this.channel = builder.eventLoopGroup(eventLoopGroup).userAgent("snowizard-client").build();
   }
 
   private void shutdown() throws InterruptedException {
@@ -88,32 +108,87 @@ public class SnowizardClient {
 
   private OptionalLong getId() {
     LOGGER.debug("Requesting 1 id");
-    final SnowizardResponse response;
+    final IdBatch response;
     try {
-      response = blockingStub.getId(EMPTY);
+      response =
+          ClientCalls.blockingUnaryCall(channel, IdMethods.GET_ID, CallOptions.DEFAULT, EMPTY);
     } catch (StatusRuntimeException e) {
       LOGGER.warn("RPC failed: {}", e.getStatus());
       return OptionalLong.empty();
     }
-    return OptionalLong.of(response.getId(0));
+    return response.stream().findFirst();
   }
 
-  private LongStream getIds(final int count) {
+  private LongStream getIds(final int count, final Encoding encoding) {
     LOGGER.debug("Requesting {} ids", count);
-    final SnowizardRequest request = SnowizardRequest.newBuilder().setCount(count).build();
+    final SnowizardRequest request =
+        SnowizardRequest.newBuilder().setCount(count).setEncoding(encoding).build();
 
-    final Iterator<SnowizardResponse> response;
+    final Iterator<IdBatch> response;
     try {
-      response = blockingStub.getIds(request);
+      response =
+          ClientCalls.blockingServerStreamingCall(
+              channel, IdMethods.GET_IDS, CallOptions.DEFAULT, request);
     } catch (StatusRuntimeException e) {
       LOGGER.warn("RPC failed: {}", e.getStatus());
       return LongStream.empty();
     }
 
     // consume the iterator so the request can be completed
-    final ImmutableList<SnowizardResponse> responses = ImmutableList.copyOf(response);
+    final ImmutableList<IdBatch> responses = ImmutableList.copyOf(response);
+
+    return responses.stream().flatMapToLong(IdBatch::stream).sorted();
+  }
+
+  /**
+   * Fetch IDs over one long-lived {@code StreamIds} call, granting credit for {@code fetch} IDs at
+   * a time and waiting for all of them to arrive before granting more
+   *
+   * @param requests Number of credits to grant
+   * @param fetch Number of IDs per credit
+   * @param encoding How IDs are encoded in responses
+   * @param recorder Records how long each credit takes to be filled
+   * @throws InterruptedException if interrupted while waiting for IDs
+   */
+  private void streamIds(
+      final int requests, final int fetch, final Encoding encoding, final Recorder recorder)
+      throws InterruptedException {
+    // holds responses, or the error which ended the call
+    final BlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+    final StreamObserver<IdCredit> credits =
+        ClientCalls.asyncBidiStreamingCall(
+            channel.newCall(IdMethods.STREAM_IDS, CallOptions.DEFAULT),
+            new StreamObserver<IdBatch>() {
+              @Override
+              public void onNext(IdBatch response) {
+                responses.add(response);
+              }
+
+              @Override
+              public void onError(Throwable t) {
+                responses.add(t);
+              }
+
+              @Override
+              public void onCompleted() {}
+            });
 
-    return responses.stream().flatMapToLong(r -> r.getIdList().stream().mapToLong(l -> l)).sorted();
+    final IdCredit credit = IdCredit.newBuilder().setCount(fetch).setEncoding(encoding).build();
+    for (int i = 0; i < requests; i++) {
+      final long t = System.nanoTime();
+      credits.onNext(credit);
+      long received = 0L;
+      while (received < fetch) {
+        final Object next = responses.take();
+        if (next instanceof Throwable) {
+          LOGGER.warn("RPC failed: {}", Status.fromThrowable((Throwable) next));
+          return;
+        }
+        received += ((IdBatch) next).getCount();
+      }
+      recorder.record(t);
+    }
+    credits.onCompleted();
   }
 
   @Command(name = "client", description = "Run a GRPC Snowizard client.")
@@ -129,6 +204,11 @@ public class SnowizardClient {
         description = "the port of the gRPC server")
     private int port = 8080;
 
+    @Option(
+        name = {"-s", "--socket"},
+        description = "a Unix domain socket to connect to instead of the host and port")
+    private String socketPath = null;
+
     @Option(
         name = {"-n", "--requests"},
         description = "the number of requests to make")
@@ -139,6 +219,16 @@ public class SnowizardClient {
         description = "the number of IDs to fetch per request")
     private int fetch = 1;
 
+    @Option(
+        name = {"-e", "--encoding"},
+        description = "how IDs are encoded in responses (VARINT, FIXED64, DELTA or RANGES)")
+    private Encoding encoding = Encoding.VARINT;
+
+    @Option(
+        name = {"--stream"},
+        description = "fetch IDs over one StreamIds call per thread instead of a call per request")
+    private boolean stream = false;
+
     @Option(
         name = {"-c", "--threads"},
         description = "the number of threads to use")
@@ -156,8 +246,9 @@ public class SnowizardClient {
     @Override
     public void run() {
       try {
-        final TlsContext tls = new TlsContext(trustedCertsPath, certPath, keyPath);
-        final SnowizardClient client = new SnowizardClient(hostname, port, tls);
+        final TlsContext tls =
+            socketPath == null ? new TlsContext(trustedCertsPath, certPath, keyPath) : null;
+        final SnowizardClient client = new SnowizardClient(hostname, port, socketPath, tls);
         try {
           final Recorder recorder =
               new Recorder(
@@ -173,9 +264,17 @@ public class SnowizardClient {
           for (int i = 0; i < threads; i++) {
             threadPool.execute(
                 () -> {
+                  if (stream) {
+                    try {
+                      client.streamIds(requests / threads, fetch, encoding, recorder);
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                    return;
+                  }
                   for (int j = 0; j < requests / threads; j++) {
                     final long t = System.nanoTime();
-                    client.getIds(fetch).close();
+                    client.getIds(fetch, encoding).close();
                     // client.getId();
                     recorder.record(t);
                   }
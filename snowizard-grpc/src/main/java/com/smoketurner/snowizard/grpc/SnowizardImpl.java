@@ -28,20 +28,40 @@ package com.smoketurner.snowizard.grpc;
 
 import com.google.protobuf.Empty;
 import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.Priority;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
 import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.grpc.marshal.IdBatch;
+import com.smoketurner.snowizard.grpc.marshal.IdMethods;
+import com.smoketurner.snowizard.grpc.protos.Encoding;
+import com.smoketurner.snowizard.grpc.protos.IdCredit;
 import com.smoketurner.snowizard.grpc.protos.SnowizardGrpc;
 import com.smoketurner.snowizard.grpc.protos.SnowizardRequest;
-import com.smoketurner.snowizard.grpc.protos.SnowizardResponse;
+import com.smoketurner.snowizard.grpc.util.UserAgentInterceptor;
+import io.grpc.BindableService;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class SnowizardImpl extends SnowizardGrpc.SnowizardImplBase {
+/**
+ * The {@code Snowizard} gRPC service. Responses are written by {@link
+ * com.smoketurner.snowizard.grpc.marshal.IdBatchMarshaller} straight from the arrays the IDs are
+ * generated into, so batches are never copied into protobuf messages.
+ */
+public class SnowizardImpl implements BindableService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SnowizardImpl.class);
-  private static final int BATCH_SIZE = 1000;
+  // grpc-java's default on-ready threshold, which services can't read from the transport
+  private static final int ON_READY_THRESHOLD = 32 * 1024;
+  private static final int MAX_VARINT_ID_BYTES = 9;
+  private static final int MAX_BATCH_SIZE = 16384;
   private final IdWorker worker;
+  private final AgentRateLimiter limiter;
 
   /**
    * Constructor
@@ -49,18 +69,43 @@ public class SnowizardImpl extends SnowizardGrpc.SnowizardImplBase {
    * @param worker ID generator
    */
   public SnowizardImpl(final IdWorker worker) {
+    this(worker, AgentRateLimiter.unlimited());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param worker ID generator
+   * @param limiter Per-agent rate limiter
+   */
+  public SnowizardImpl(final IdWorker worker, final AgentRateLimiter limiter) {
     this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
   }
 
   @Override
-  public void getId(Empty request, StreamObserver<SnowizardResponse> responseObserver) {
+  public ServerServiceDefinition bindService() {
+    return ServerServiceDefinition.builder(SnowizardGrpc.SERVICE_NAME)
+        .addMethod(IdMethods.GET_ID, ServerCalls.asyncUnaryCall(this::getId))
+        .addMethod(IdMethods.GET_IDS, ServerCalls.asyncServerStreamingCall(this::getIds))
+        .addMethod(IdMethods.STREAM_IDS, ServerCalls.asyncBidiStreamingCall(this::streamIds))
+        .build();
+  }
+
+  public void getId(Empty request, StreamObserver<IdBatch> responseObserver) {
 
     final long startTime = System.nanoTime();
     LOGGER.debug("Requested to generate 1 id");
 
-    final SnowizardResponse response;
+    if (!acquire(1, responseObserver)) {
+      return;
+    }
+
+    final IdBatch response;
     try {
-      response = generateIds(1);
+      response =
+          generateIds(
+              new long[1], 1, Encoding.VARINT, worker.getPriority(UserAgentInterceptor.current()));
     } catch (InvalidSystemClock e) {
       LOGGER.error("Invalid system clock", e);
       responseObserver.onError(e);
@@ -73,65 +118,232 @@ public class SnowizardImpl extends SnowizardGrpc.SnowizardImplBase {
     LOGGER.debug("Generated 1 id in {}ns", (System.nanoTime() - startTime));
   }
 
-  @Override
-  public void getIds(SnowizardRequest request, StreamObserver<SnowizardResponse> responseObserver) {
+  public void getIds(SnowizardRequest request, StreamObserver<IdBatch> responseObserver) {
 
-    final long startTime = System.nanoTime();
     final int count = request.getCount();
-    final int fullBatches = count / BATCH_SIZE;
-    final int remaining = count - (fullBatches * BATCH_SIZE);
+    LOGGER.debug("Requested to generate {} ids", count);
 
-    LOGGER.debug(
-        "Requested to generate {} ids ({} batches of {}, 1 batch of {})",
-        count,
-        fullBatches,
-        BATCH_SIZE,
-        remaining);
+    if (!acquire(count, responseObserver)) {
+      return;
+    }
 
-    int generated = 0;
-    SnowizardResponse response;
+    final ServerCallStreamObserver<IdBatch> observer =
+        (ServerCallStreamObserver<IdBatch>) responseObserver;
+    final BatchWriter writer =
+        new BatchWriter(observer, worker.getPriority(UserAgentInterceptor.current()));
+    writer.request(Math.max(count, 0), request.getEncoding());
+    writer.finish();
+    observer.setOnCancelHandler(writer::cancel);
+    observer.setOnReadyHandler(writer);
 
-    if (fullBatches > 0) {
+    // the call may already be ready, in which case the handler isn't run until it stops being so
+    writer.run();
+  }
 
-      for (int b = 0; b < fullBatches; b++) {
+  public StreamObserver<IdCredit> streamIds(StreamObserver<IdBatch> responseObserver) {
 
-        try {
-          response = generateIds(BATCH_SIZE);
-        } catch (InvalidSystemClock e) {
-          LOGGER.error("Invalid system clock", e);
-          responseObserver.onError(e);
+    final String agent = UserAgentInterceptor.current();
+    LOGGER.debug("Opened ID stream for agent ({})", agent);
+
+    final ServerCallStreamObserver<IdBatch> observer =
+        (ServerCallStreamObserver<IdBatch>) responseObserver;
+    final BatchWriter writer = new BatchWriter(observer, worker.getPriority(agent));
+    observer.setOnCancelHandler(writer::cancel);
+    observer.setOnReadyHandler(writer);
+
+    return new StreamObserver<IdCredit>() {
+      @Override
+      public void onNext(IdCredit credit) {
+        if (writer.isDone()) {
+          return;
+        }
+        if (credit.getCount() < 1) {
+          writer.fail(Status.INVALID_ARGUMENT.withDescription("count must be positive"));
+          return;
+        }
+        if (!worker.isValidUserAgent(agent)) {
+          LOGGER.error("Invalid user agent ({})", agent);
+          writer.fail(Status.INVALID_ARGUMENT.withDescription("Invalid User-Agent"));
+          return;
+        }
+        if (!limiter.tryAcquire(agent, credit.getCount())) {
+          LOGGER.debug("Rate limit exceeded for agent ({})", agent);
+          writer.fail(Status.RESOURCE_EXHAUSTED.withDescription("Rate limit exceeded"));
           return;
         }
+        writer.request(credit.getCount(), credit.getEncoding());
+        writer.run();
+      }
 
-        generated += response.getIdCount();
-        responseObserver.onNext(response);
+      @Override
+      public void onError(Throwable t) {
+        writer.cancel();
       }
-    }
 
-    if (remaining > 0) {
-      try {
-        response = generateIds(remaining);
-      } catch (InvalidSystemClock e) {
-        LOGGER.error("Invalid system clock", e);
-        responseObserver.onError(e);
-        return;
+      @Override
+      public void onCompleted() {
+        // send whatever credit is still outstanding, then complete the call
+        writer.finish();
+        writer.run();
       }
+    };
+  }
 
-      generated += response.getIdCount();
-      responseObserver.onNext(response);
+  /**
+   * Take a number of IDs from the calling agent's rate limit, failing the call with {@code
+   * INVALID_ARGUMENT} if the agent is invalid or {@code RESOURCE_EXHAUSTED} if the agent is over
+   * its limit.
+   *
+   * @param count Number of IDs requested
+   * @param responseObserver Response observer of the call
+   * @return true if the agent is valid and within its limit, otherwise false
+   */
+  private boolean acquire(final int count, final StreamObserver<IdBatch> responseObserver) {
+    final String agent = UserAgentInterceptor.current();
+    if (!worker.isValidUserAgent(agent)) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      responseObserver.onError(
+          Status.INVALID_ARGUMENT.withDescription("Invalid User-Agent").asRuntimeException());
+      return false;
     }
+    if (limiter.tryAcquire(agent, count)) {
+      return true;
+    }
+    LOGGER.debug("Rate limit exceeded for agent ({})", agent);
+    responseObserver.onError(
+        Status.RESOURCE_EXHAUSTED.withDescription("Rate limit exceeded").asRuntimeException());
+    return false;
+  }
 
-    responseObserver.onCompleted();
+  /**
+   * Generate a batch of IDs with one bulk reservation
+   *
+   * @param ids Buffer to generate the IDs into, which the response refers to rather than copies
+   * @param count Number of IDs to generate
+   * @param encoding How to encode the IDs in the response
+   * @param priority Priority of the calling agent
+   * @return response containing the IDs
+   * @throws InvalidSystemClock When the clock is moving backward
+   */
+  private IdBatch generateIds(
+      final long[] ids, final int count, final Encoding encoding, final Priority priority)
+      throws InvalidSystemClock {
+
+    worker.nextIds(ids, 0, count, priority);
+    return new IdBatch(ids, count, encoding);
+  }
 
-    LOGGER.debug("Generated {} ids in {}ns", generated, (System.nanoTime() - startTime));
+  /**
+   * Number of IDs to send in each response. Responses are sized to gRPC's on-ready threshold, the
+   * amount of buffered outbound data above which {@link ServerCallStreamObserver#isReady()} returns
+   * false, so a client which stops reading holds up at most one batch.
+   *
+   * @param encoding How the IDs are encoded
+   * @return the batch size
+   */
+  private static int getBatchSize(final Encoding encoding) {
+    switch (encoding) {
+      case FIXED64:
+        return ON_READY_THRESHOLD / Long.BYTES;
+      case DELTA:
+      case RANGES:
+        // consecutive IDs mostly differ by 1, and ranges are smaller still
+        return MAX_BATCH_SIZE;
+      default:
+        return ON_READY_THRESHOLD / MAX_VARINT_ID_BYTES;
+    }
   }
 
-  private SnowizardResponse generateIds(final int count) throws InvalidSystemClock {
+  /**
+   * Writes the responses of one {@code GetIds} or {@code StreamIds} call as fast as the client
+   * reads them. IDs are only generated while the call is ready for more and the client has credit
+   * outstanding, and generation stops if the call is cancelled. The call completes once all credit
+   * is used up and the client will not grant any more. All methods are called from the call's
+   * serialized executor.
+   */
+  private final class BatchWriter implements Runnable {
+
+    private final ServerCallStreamObserver<IdBatch> observer;
+    private final Priority priority;
+    private final long startTime = System.nanoTime();
+    private Encoding encoding = Encoding.VARINT;
+    private long[] ids = new long[0];
+    private long generated = 0L;
+    private long remaining = 0L;
+    private boolean finished = false;
+    private boolean done = false;
+
+    BatchWriter(final ServerCallStreamObserver<IdBatch> observer, final Priority priority) {
+      this.observer = observer;
+      this.priority = priority;
+    }
+
+    /**
+     * Add credit for more IDs
+     *
+     * @param count Number of IDs
+     * @param encoding How to encode all IDs sent from now on
+     */
+    void request(final int count, final Encoding encoding) {
+      this.encoding = encoding;
+      remaining += count;
+    }
+
+    /** Note that no more credit will be granted */
+    void finish() {
+      finished = true;
+    }
 
-    final SnowizardResponse.Builder builder = SnowizardResponse.newBuilder();
-    for (int i = 0; i < count; i++) {
-      builder.addId(worker.nextId());
+    boolean isDone() {
+      return done;
+    }
+
+    @Override
+    public void run() {
+      while (!done && remaining > 0 && observer.isReady()) {
+        final int batch = (int) Math.min(remaining, getBatchSize(encoding));
+        if (ids.length < batch) {
+          ids = new long[batch];
+        }
+
+        final IdBatch response;
+        try {
+          response = generateIds(ids, batch, encoding, priority);
+        } catch (InvalidSystemClock e) {
+          LOGGER.error("Invalid system clock", e);
+          done = true;
+          observer.onError(e);
+          return;
+        }
+        remaining -= batch;
+        generated += batch;
+        observer.onNext(response);
+      }
+
+      if (!done && finished && remaining == 0) {
+        done = true;
+        observer.onCompleted();
+        LOGGER.debug("Generated {} ids in {}ns", generated, (System.nanoTime() - startTime));
+      }
+    }
+
+    /**
+     * Fail the call
+     *
+     * @param status Status to fail the call with
+     */
+    void fail(final Status status) {
+      if (!done) {
+        done = true;
+        observer.onError(status.asRuntimeException());
+      }
+    }
+
+    void cancel() {
+      if (!done) {
+        done = true;
+        LOGGER.debug("Call cancelled with {} ids of credit left", remaining);
+      }
     }
-    return builder.build();
   }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.grpc.resp.RespHandler;
+import com.smoketurner.snowizard.grpc.resp.RespLimitHandler;
+import com.smoketurner.snowizard.grpc.util.NettyServer;
+import io.airlift.airline.Command;
+import io.airlift.airline.Option;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.handler.codec.redis.RedisArrayAggregator;
+import io.netty.handler.codec.redis.RedisBulkStringAggregator;
+import io.netty.handler.codec.redis.RedisDecoder;
+import io.netty.handler.codec.redis.RedisEncoder;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** A server speaking the Redis serialization protocol, for use with off-the-shelf Redis clients. */
+public class SnowizardRespServer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SnowizardRespServer.class);
+
+  private final NettyServer server;
+
+  /**
+   * Constructor
+   *
+   * @param port Port to listen on
+   * @param socketPath Unix domain socket to listen on instead of the port, or null
+   * @param workerId Worker ID
+   * @param datacenterId Datacenter ID
+   * @param rateLimit IDs per second allowed for each user agent, or 0 for unlimited
+   * @throws IOException if unable to set up the domain socket
+   */
+  private SnowizardRespServer(
+      int port, @Nullable String socketPath, long workerId, long datacenterId, long rateLimit)
+      throws IOException {
+    final IdWorker worker = IdWorker.builder(workerId, datacenterId).build();
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(rateLimit, Collections.emptyMap(), 1, TimeUnit.SECONDS);
+    final RespHandler handler = new RespHandler(worker, limiter);
+
+    this.server =
+        new NettyServer(
+            "RESP",
+            port,
+            socketPath,
+            new ChannelInitializer<Channel>() {
+              @Override
+              protected void initChannel(Channel ch) {
+                ch.pipeline()
+                    .addLast(new RedisDecoder())
+                    .addLast(new RedisEncoder())
+                    .addLast(new RespLimitHandler())
+                    .addLast(new RedisBulkStringAggregator())
+                    .addLast(new RedisArrayAggregator())
+                    .addLast(handler);
+              }
+            });
+  }
+
+  private void start() throws InterruptedException {
+    server.start();
+  }
+
+  @Command(name = "resp", description = "Run a Redis protocol (RESP) Snowizard service.")
+  public static class Cmd implements Runnable {
+
+    @Option(
+        name = {"-p", "--port"},
+        description = "the port to listen on")
+    private int port = 6379;
+
+    @Option(
+        name = {"-s", "--socket"},
+        description = "a Unix domain socket to listen on instead of the port")
+    private String socketPath = null;
+
+    @Option(
+        name = {"-w", "--worker-id"},
+        description = "worker ID")
+    private long workerId = 1L;
+
+    @Option(
+        name = {"-d", "--datacenter-id"},
+        description = "datacenter ID")
+    private long datacenterId = 1L;
+
+    @Option(
+        name = {"--rate-limit"},
+        description = "IDs per second allowed for each user agent (0 for unlimited)")
+    private long rateLimit = 0L;
+
+    @Override
+    public void run() {
+      try {
+        final SnowizardRespServer server =
+            new SnowizardRespServer(port, socketPath, workerId, datacenterId, rateLimit);
+        server.start();
+      } catch (IOException | InterruptedException e) {
+        LOGGER.error("Error running command", e);
+      }
+    }
+  }
+}
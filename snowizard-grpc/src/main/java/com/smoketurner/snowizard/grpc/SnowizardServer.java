@@ -27,61 +27,131 @@
 package com.smoketurner.snowizard.grpc;
 
 import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.grpc.util.ConcurrencyLimitInterceptor;
+import com.smoketurner.snowizard.grpc.util.HeadroomInterceptor;
 import com.smoketurner.snowizard.grpc.util.Netty;
 import com.smoketurner.snowizard.grpc.util.StatsTracerFactory;
 import com.smoketurner.snowizard.grpc.util.TlsContext;
+import com.smoketurner.snowizard.grpc.util.UserAgentInterceptor;
 import io.airlift.airline.Command;
 import io.airlift.airline.Option;
 import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerServiceDefinition;
 import io.grpc.netty.NettyServerBuilder;
 import io.netty.channel.EventLoopGroup;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
-import javax.net.ssl.SSLException;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SnowizardServer {
   private static final Logger LOGGER = LoggerFactory.getLogger(SnowizardServer.class);
+  private static final int INITIAL_CONCURRENCY = 20;
+  private static final double HEADROOM_THRESHOLD = 0.1;
 
   private final EventLoopGroup bossEventLoopGroup;
   private final EventLoopGroup workerEventLoopGroup;
   private final Server server;
   private final StatsTracerFactory stats;
+  private final String address;
 
   /**
    * Constructor
    *
    * @param port Port to listen on
-   * @param tls TLS context
+   * @param socketPath Unix domain socket to listen on instead of the port, or null
+   * @param tls TLS context, only used when listening on a port
    * @param workerId Worker ID
    * @param datacenterId Datacenter ID
-   * @throws SSLException
+   * @param rateLimit IDs per second allowed for each user agent, or 0 for unlimited
+   * @param maxConcurrency Maximum adaptive concurrency limit, or 0 to disable load shedding
+   * @throws IOException if unable to set up TLS or the domain socket
    */
-  private SnowizardServer(int port, TlsContext tls, long workerId, long datacenterId)
-      throws SSLException {
+  private SnowizardServer(
+      int port,
+      @Nullable String socketPath,
+      @Nullable TlsContext tls,
+      long workerId,
+      long datacenterId,
+      long rateLimit,
+      int maxConcurrency)
+      throws IOException {
 
     this.stats = new StatsTracerFactory();
     this.bossEventLoopGroup = Netty.newBossEventLoopGroup();
     this.workerEventLoopGroup = Netty.newWorkerEventLoopGroup();
 
     final IdWorker worker = IdWorker.builder(workerId, datacenterId).build();
+    final AgentRateLimiter limiter =
+        new AgentRateLimiter(rateLimit, Collections.emptyMap(), 1, TimeUnit.SECONDS);
+
+    final AdaptiveConcurrencyLimiter concurrencyLimiter =
+        maxConcurrency > 0
+            ? new AdaptiveConcurrencyLimiter(
+                Math.min(INITIAL_CONCURRENCY, maxConcurrency), 1, maxConcurrency)
+            : null;
+
+    // co-located clients on a domain socket are trusted by file permissions instead of TLS
+    final NettyServerBuilder builder;
+    if (socketPath != null) {
+      this.address = socketPath;
+      builder =
+          NettyServerBuilder.forAddress(Netty.bindableDomainSocket(socketPath))
+              .channelType(Netty.serverDomainSocketChannelType());
+    } else {
+      this.address = Integer.toString(port);
+      builder =
+          NettyServerBuilder.forPort(port)
+              .channelType(Netty.serverChannelType())
+              .sslContext(Objects.requireNonNull(tls).toServerContext());
+    }
 
     this.server =
-        NettyServerBuilder.forPort(port)
+        builder
             .bossEventLoopGroup(bossEventLoopGroup)
             .workerEventLoopGroup(workerEventLoopGroup)
-            .channelType(Netty.serverChannelType())
             .addStreamTracerFactory(stats)
-            .sslContext(tls.toServerContext())
-            .addService(new SnowizardImpl(worker))
+            .addService(service(worker, limiter, HEADROOM_THRESHOLD, concurrencyLimiter))
             .build();
   }
 
+  /**
+   * Build the Snowizard gRPC service with its standard interceptors
+   *
+   * @param worker ID generator
+   * @param limiter Per-agent rate limiter
+   * @param headroomThreshold Headroom below which responses carry a headroom trailer
+   * @param concurrencyLimiter Adaptive concurrency limiter, or null to disable load shedding
+   * @return the intercepted service
+   */
+  public static ServerServiceDefinition service(
+      IdWorker worker,
+      AgentRateLimiter limiter,
+      double headroomThreshold,
+      @Nullable AdaptiveConcurrencyLimiter concurrencyLimiter) {
+    // interceptors run in reverse order, so shed load before doing anything else
+    final List<ServerInterceptor> interceptors = new ArrayList<>();
+    interceptors.add(new UserAgentInterceptor());
+    interceptors.add(new HeadroomInterceptor(worker, headroomThreshold));
+    if (concurrencyLimiter != null) {
+      interceptors.add(new ConcurrencyLimitInterceptor(concurrencyLimiter));
+    }
+    return ServerInterceptors.intercept(new SnowizardImpl(worker, limiter), interceptors);
+  }
+
   private void start() throws IOException, InterruptedException {
     stats.start();
     server.start();
-    LOGGER.info("Server started, listening on {}", server.getPort());
+    LOGGER.info("Server started, listening on {}", address);
     Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
     server.awaitTermination();
   }
@@ -103,6 +173,11 @@ public class SnowizardServer {
         description = "the port to listen on")
     private int port = 8080;
 
+    @Option(
+        name = {"-s", "--socket"},
+        description = "a Unix domain socket to listen on instead of the port, without TLS")
+    private String socketPath = null;
+
     @Option(
         name = {"-w", "--worker-id"},
         description = "worker ID")
@@ -113,6 +188,16 @@ public class SnowizardServer {
         description = "datacenter ID")
     private long datacenterId = 1L;
 
+    @Option(
+        name = {"--rate-limit"},
+        description = "IDs per second allowed for each user agent (0 for unlimited)")
+    private long rateLimit = 0L;
+
+    @Option(
+        name = {"--max-concurrency"},
+        description = "maximum adaptive concurrency limit (0 to disable load shedding)")
+    private int maxConcurrency = 0;
+
     @Option(name = "--ca-certs")
     private String trustedCertsPath = "cert.crt";
 
@@ -125,8 +210,11 @@ public class SnowizardServer {
     @Override
     public void run() {
       try {
-        final TlsContext tls = new TlsContext(trustedCertsPath, certPath, keyPath);
-        final SnowizardServer server = new SnowizardServer(port, tls, workerId, datacenterId);
+        final TlsContext tls =
+            socketPath == null ? new TlsContext(trustedCertsPath, certPath, keyPath) : null;
+        final SnowizardServer server =
+            new SnowizardServer(
+                port, socketPath, tls, workerId, datacenterId, rateLimit, maxConcurrency);
         server.start();
       } catch (IOException | InterruptedException e) {
         LOGGER.error("Error running command", e);
@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import com.smoketurner.snowizard.grpc.protos.SnowizardResponse;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.AsciiString;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Objects;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves single IDs over plain HTTP/1.1 straight from the Netty event loop, with the same
+ * representations as the Dropwizard application's {@code GET /}: plain text, JSON and Google
+ * Protocol Buffers, chosen from the Accept header. {@code GET /ping} answers {@code pong}.
+ *
+ * <p>The representation is the acceptable one with the highest quality value, preferring exact
+ * media types over wildcards, and then plain text, JSON and protobuf in that order. A request which
+ * accepts none of them is answered with {@code 406 Not Acceptable}.
+ */
+@Sharable
+public class IdHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IdHttpHandler.class);
+  private static final AsciiString TEXT_PLAIN = AsciiString.cached("text/plain");
+  private static final AsciiString APPLICATION_JSON = AsciiString.cached("application/json");
+  private static final AsciiString APPLICATION_PROTOBUF =
+      AsciiString.cached("application/x-protobuf");
+  private static final AsciiString[] REPRESENTATIONS = {
+    TEXT_PLAIN, APPLICATION_JSON, APPLICATION_PROTOBUF
+  };
+  private static final AsciiString NO_CACHE =
+      AsciiString.cached("must-revalidate, no-cache, no-store");
+  private static final int MAX_ID_LENGTH = 20;
+  private static final int MAX_JSON_LENGTH = MAX_ID_LENGTH * 2 + 20;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final IdWorker worker;
+  private final AgentRateLimiter limiter;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID generator
+   * @param limiter Per-agent rate limiter
+   */
+  public IdHttpHandler(final IdWorker worker, final AgentRateLimiter limiter) {
+    this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
+  }
+
+  @Override
+  protected void channelRead0(final ChannelHandlerContext ctx, final FullHttpRequest request)
+      throws IOException {
+    final FullHttpResponse response;
+    if (!request.method().equals(HttpMethod.GET)) {
+      response = error(ctx, HttpResponseStatus.METHOD_NOT_ALLOWED, "Method not allowed");
+    } else {
+      final String path = new QueryStringDecoder(request.uri()).path();
+      if ("/".equals(path)) {
+        response = getId(ctx, request);
+      } else if ("/ping".equals(path)) {
+        response = text(ctx, HttpResponseStatus.OK, "pong");
+      } else {
+        response = error(ctx, HttpResponseStatus.NOT_FOUND, "Not found");
+      }
+    }
+    write(ctx, request, response);
+  }
+
+  @Override
+  public void channelReadComplete(final ChannelHandlerContext ctx) {
+    // flush once per read so pipelined requests share a single write
+    ctx.flush();
+  }
+
+  @Override
+  public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+    LOGGER.warn("Closing connection after unexpected error", cause);
+    ctx.close();
+  }
+
+  /**
+   * Generate a new ID and write it in the representation the client accepts
+   *
+   * @param ctx Channel context
+   * @param request HTTP request
+   * @return HTTP response
+   * @throws IOException if unable to encode the response
+   */
+  private FullHttpResponse getId(final ChannelHandlerContext ctx, final FullHttpRequest request)
+      throws IOException {
+    final String agent = request.headers().get(HttpHeaderNames.USER_AGENT);
+    if (agent == null || !worker.isValidUserAgent(agent)) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      return error(ctx, HttpResponseStatus.BAD_REQUEST, "Invalid User-Agent header");
+    }
+    final AsciiString contentType = negotiate(request.headers().get(HttpHeaderNames.ACCEPT));
+    if (contentType == null) {
+      return error(ctx, HttpResponseStatus.NOT_ACCEPTABLE, "Not acceptable");
+    }
+    if (!limiter.tryAcquire(agent, 1)) {
+      LOGGER.debug("Rate limit exceeded for agent ({})", agent);
+      return error(ctx, HttpResponseStatus.TOO_MANY_REQUESTS, "Rate limit exceeded");
+    }
+
+    final long id;
+    try {
+      id = worker.getId(agent);
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      return error(ctx, HttpResponseStatus.BAD_REQUEST, "Invalid User-Agent header");
+    } catch (final InvalidSystemClock e) {
+      LOGGER.error("Invalid system clock", e);
+      return error(ctx, HttpResponseStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+    }
+
+    final ByteBuf content;
+    if (contentType == APPLICATION_PROTOBUF) {
+      final SnowizardResponse message = SnowizardResponse.newBuilder().addId(id).build();
+      content = ctx.alloc().buffer(message.getSerializedSize());
+      message.writeTo(new ByteBufOutputStream(content));
+    } else if (contentType == APPLICATION_JSON) {
+      final String value = Long.toString(id);
+      content = ctx.alloc().buffer(MAX_JSON_LENGTH);
+      ByteBufUtil.writeAscii(content, "{\"id\":");
+      ByteBufUtil.writeAscii(content, value);
+      ByteBufUtil.writeAscii(content, ",\"id_str\":\"");
+      ByteBufUtil.writeAscii(content, value);
+      ByteBufUtil.writeAscii(content, "\"}");
+    } else {
+      content = ctx.alloc().buffer(MAX_ID_LENGTH);
+      ByteBufUtil.writeAscii(content, Long.toString(id));
+    }
+
+    final FullHttpResponse response =
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+    response.headers().set(HttpHeaderNames.CACHE_CONTROL, NO_CACHE);
+    return response;
+  }
+
+  /**
+   * Choose the representation of an ID from the Accept header
+   *
+   * @param accept Accept header, or null if the request has none
+   * @return content type, or null if the client accepts none of the representations
+   */
+  @Nullable
+  static AsciiString negotiate(@Nullable final String accept) {
+    if (accept == null || accept.trim().isEmpty()) {
+      return TEXT_PLAIN;
+    }
+    final String[] ranges = accept.toLowerCase(Locale.ROOT).split(",");
+
+    AsciiString best = null;
+    double bestQuality = 0.0;
+    int bestSpecificity = -1;
+    for (final AsciiString type : REPRESENTATIONS) {
+      final String name = type.toString();
+      final String wildcard = name.substring(0, name.indexOf('/')) + "/*";
+
+      // the most specific range which matches the type decides its quality
+      double quality = 0.0;
+      int specificity = -1;
+      for (final String range : ranges) {
+        final String[] params = range.split(";");
+        final String mediaType = params[0].trim();
+        final int rangeSpecificity;
+        if (mediaType.equals(name)) {
+          rangeSpecificity = 2;
+        } else if (mediaType.equals(wildcard)) {
+          rangeSpecificity = 1;
+        } else if (mediaType.equals("*/*")) {
+          rangeSpecificity = 0;
+        } else {
+          continue;
+        }
+        if (rangeSpecificity > specificity) {
+          specificity = rangeSpecificity;
+          quality = quality(params);
+        }
+      }
+
+      if (quality > bestQuality || (quality == bestQuality && specificity > bestSpecificity)) {
+        best = quality > 0.0 ? type : null;
+        bestQuality = quality;
+        bestSpecificity = specificity;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Return the quality value of a media range
+   *
+   * @param params Media type followed by its parameters
+   * @return value of the q parameter, 1 if it is missing or 0 if it is invalid
+   */
+  private static double quality(final String[] params) {
+    for (int i = 1; i < params.length; i++) {
+      final String param = params[i].trim();
+      if (param.startsWith("q=")) {
+        try {
+          final double q = Double.parseDouble(param.substring(2).trim());
+          return q >= 0.0 && q <= 1.0 ? q : 0.0;
+        } catch (final NumberFormatException e) {
+          return 0.0;
+        }
+      }
+    }
+    return 1.0;
+  }
+
+  /**
+   * Build an error response with the same JSON body as the Dropwizard application's errors
+   *
+   * @param ctx Channel context
+   * @param status Response status
+   * @param message Error message
+   * @return HTTP response
+   * @throws IOException if unable to encode the response
+   */
+  private static FullHttpResponse error(
+      final ChannelHandlerContext ctx, final HttpResponseStatus status, final String message)
+      throws IOException {
+    final ObjectNode body =
+        MAPPER.createObjectNode().put("code", status.code()).put("message", message);
+    final ByteBuf content = ctx.alloc().buffer();
+    MAPPER.writeValue((OutputStream) new ByteBufOutputStream(content), body);
+    final FullHttpResponse response =
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, APPLICATION_JSON);
+    return response;
+  }
+
+  /**
+   * Build a plain text response
+   *
+   * @param ctx Channel context
+   * @param status Response status
+   * @param body Response body
+   * @return HTTP response
+   */
+  private static FullHttpResponse text(
+      final ChannelHandlerContext ctx, final HttpResponseStatus status, final String body) {
+    final ByteBuf content = ctx.alloc().buffer(body.length());
+    ByteBufUtil.writeAscii(content, body);
+    final FullHttpResponse response =
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, TEXT_PLAIN);
+    return response;
+  }
+
+  /**
+   * Queue a response to be flushed at the end of the read, keeping the connection open if the
+   * client asked for keep-alive
+   *
+   * @param ctx Channel context
+   * @param request HTTP request
+   * @param response HTTP response
+   */
+  private static void write(
+      final ChannelHandlerContext ctx,
+      final FullHttpRequest request,
+      final FullHttpResponse response) {
+    HttpUtil.setContentLength(response, response.content().readableBytes());
+    if (HttpUtil.isKeepAlive(request)) {
+      response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+      ctx.write(response, ctx.voidPromise());
+    } else {
+      ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+}
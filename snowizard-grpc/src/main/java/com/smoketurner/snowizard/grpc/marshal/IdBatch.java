@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.marshal;
+
+import com.smoketurner.snowizard.grpc.protos.Encoding;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.LongStream;
+
+/**
+ * The IDs of a {@code SnowizardResponse}, held in a primitive array instead of a protobuf message
+ * so they are never boxed. The array is not copied: a sender must not modify it until the call's
+ * {@code onNext} returns, by which time gRPC has serialized the batch.
+ */
+public final class IdBatch {
+
+  private final long[] ids;
+  private final int count;
+  private final Encoding encoding;
+
+  /**
+   * Constructor
+   *
+   * @param ids Array holding the IDs
+   * @param count Number of IDs, taken from the start of the array
+   * @param encoding How the IDs are encoded on the wire
+   */
+  public IdBatch(final long[] ids, final int count, final Encoding encoding) {
+    this.ids = Objects.requireNonNull(ids);
+    this.count = count;
+    this.encoding = Objects.requireNonNull(encoding);
+  }
+
+  long[] getIds() {
+    return ids;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public Encoding getEncoding() {
+    return encoding;
+  }
+
+  public long getId(final int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + count);
+    }
+    return ids[index];
+  }
+
+  public LongStream stream() {
+    return Arrays.stream(ids, 0, count);
+  }
+}
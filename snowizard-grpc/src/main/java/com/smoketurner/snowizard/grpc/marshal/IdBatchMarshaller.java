@@ -0,0 +1,422 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.marshal;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import com.smoketurner.snowizard.common.IdLayout;
+import com.smoketurner.snowizard.grpc.protos.Encoding;
+import com.smoketurner.snowizard.grpc.protos.IdRange;
+import com.smoketurner.snowizard.grpc.protos.SnowizardResponse;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Reads and writes {@link IdBatch}es in the wire format of {@code SnowizardResponse}, straight
+ * between a primitive array and gRPC's buffers. Writing produces the same bytes as the generated
+ * message would, so other clients are unaffected, and parsing accepts any valid encoding of the
+ * message, including unpacked repeated fields.
+ */
+public final class IdBatchMarshaller implements MethodDescriptor.Marshaller<IdBatch> {
+
+  public static final IdBatchMarshaller INSTANCE = new IdBatchMarshaller();
+
+  private static final int ID_FIELD = SnowizardResponse.ID_FIELD_NUMBER;
+  private static final int FIXED_ID_FIELD = SnowizardResponse.FIXED_ID_FIELD_NUMBER;
+  private static final int DELTA_ID_FIELD = SnowizardResponse.DELTA_ID_FIELD_NUMBER;
+  private static final int RANGE_FIELD = SnowizardResponse.RANGE_FIELD_NUMBER;
+
+  private static final int MAX_BUFFER_SIZE = 4096;
+  private static final int INITIAL_CAPACITY = 64;
+  // far above the largest batch the service sends, and bounds what a run of ranges can expand to
+  private static final int MAX_COUNT = 1 << 20;
+
+  private IdBatchMarshaller() {}
+
+  @Override
+  public InputStream stream(final IdBatch batch) {
+    return new BatchInputStream(batch);
+  }
+
+  @Override
+  public IdBatch parse(final InputStream stream) {
+    try {
+      return read(CodedInputStream.newInstance(stream));
+    } catch (final IOException e) {
+      throw Status.INTERNAL
+          .withDescription("Invalid protobuf byte sequence")
+          .withCause(e)
+          .asRuntimeException();
+    }
+  }
+
+  /**
+   * Compute the number of bytes the IDs take up, excluding their field's tag and length
+   *
+   * @param batch IDs to measure
+   * @return the size of the packed IDs, or of all ranges including their tags for {@link
+   *     Encoding#RANGES}
+   */
+  private static int computeDataSize(final IdBatch batch) {
+    final long[] ids = batch.getIds();
+    final int count = batch.getCount();
+    int size = 0;
+    switch (batch.getEncoding()) {
+      case FIXED64:
+        return count * Long.BYTES;
+      case DELTA:
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+          size += CodedOutputStream.computeUInt64SizeNoTag(ids[i] - previous);
+          previous = ids[i];
+        }
+        return size;
+      case RANGES:
+        final int[] rangeSize = {0};
+        IdLayout.forEachRun(
+            ids,
+            count,
+            (timestamp, datacenterId, workerId, first, last) ->
+                rangeSize[0] +=
+                    CodedOutputStream.computeMessageSize(
+                        RANGE_FIELD, toRange(timestamp, datacenterId, workerId, first, last)));
+        return rangeSize[0];
+      default:
+        for (int i = 0; i < count; i++) {
+          size += CodedOutputStream.computeInt64SizeNoTag(ids[i]);
+        }
+        return size;
+    }
+  }
+
+  /**
+   * Build the range descriptor for a run of IDs. There is one run per millisecond at most, so these
+   * are few and small next to the IDs they stand for.
+   *
+   * @param timestamp Timestamp of the run
+   * @param datacenterId Datacenter ID of the run
+   * @param workerId Worker ID of the run
+   * @param first Sequence of the first ID in the run
+   * @param last Sequence of the last ID in the run
+   * @return range descriptor
+   */
+  private static IdRange toRange(
+      final long timestamp,
+      final int datacenterId,
+      final int workerId,
+      final int first,
+      final int last) {
+    return IdRange.newBuilder()
+        .setTimestamp(timestamp)
+        .setDatacenterId(datacenterId)
+        .setWorkerId(workerId)
+        .setFirstSequence(first)
+        .setLastSequence(last)
+        .build();
+  }
+
+  /**
+   * Compute the size of the whole message
+   *
+   * @param batch IDs being written
+   * @param dataSize Result of {@link #computeDataSize(IdBatch)}
+   * @return the serialized size
+   */
+  private static int computeMessageSize(final IdBatch batch, final int dataSize) {
+    if (dataSize == 0 || batch.getEncoding() == Encoding.RANGES) {
+      return dataSize;
+    }
+    return CodedOutputStream.computeTagSize(ID_FIELD)
+        + CodedOutputStream.computeUInt32SizeNoTag(dataSize)
+        + dataSize;
+  }
+
+  /**
+   * Write the message
+   *
+   * @param batch IDs to write
+   * @param dataSize Result of {@link #computeDataSize(IdBatch)}
+   * @param output Stream to write to
+   * @throws IOException if unable to write to the stream
+   */
+  private static void write(final IdBatch batch, final int dataSize, final CodedOutputStream output)
+      throws IOException {
+    final long[] ids = batch.getIds();
+    final int count = batch.getCount();
+    if (count == 0) {
+      return;
+    }
+
+    switch (batch.getEncoding()) {
+      case FIXED64:
+        output.writeTag(FIXED_ID_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(dataSize);
+        for (int i = 0; i < count; i++) {
+          output.writeFixed64NoTag(ids[i]);
+        }
+        break;
+      case DELTA:
+        output.writeTag(DELTA_ID_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(dataSize);
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+          output.writeUInt64NoTag(ids[i] - previous);
+          previous = ids[i];
+        }
+        break;
+      case RANGES:
+        IdLayout.forEachRun(
+            ids,
+            count,
+            (timestamp, datacenterId, workerId, first, last) ->
+                output.writeMessage(
+                    RANGE_FIELD, toRange(timestamp, datacenterId, workerId, first, last)));
+        break;
+      default:
+        output.writeTag(ID_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(dataSize);
+        for (int i = 0; i < count; i++) {
+          output.writeInt64NoTag(ids[i]);
+        }
+        break;
+    }
+  }
+
+  /**
+   * Read a message, expanding whichever ID field it uses into a primitive array
+   *
+   * @param input Serialized message
+   * @return the IDs in the message
+   * @throws IOException if the message is malformed
+   */
+  private static IdBatch read(final CodedInputStream input) throws IOException {
+    long[] ids = new long[INITIAL_CAPACITY];
+    int count = 0;
+    Encoding encoding = Encoding.VARINT;
+    long previous = 0L;
+
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      final int field = WireFormat.getTagFieldNumber(tag);
+      final boolean packed = WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED;
+      switch (field) {
+        case ID_FIELD:
+        case FIXED_ID_FIELD:
+        case DELTA_ID_FIELD:
+          if (field == FIXED_ID_FIELD) {
+            encoding = Encoding.FIXED64;
+          } else if (field == DELTA_ID_FIELD) {
+            encoding = Encoding.DELTA;
+          }
+          final int limit = packed ? input.pushLimit(input.readRawVarint32()) : -1;
+          do {
+            if (packed && input.getBytesUntilLimit() == 0) {
+              break;
+            }
+            ids = ensureCapacity(ids, count, 1);
+            final long value = readValue(input, field);
+            if (field == DELTA_ID_FIELD) {
+              previous += value;
+              ids[count++] = previous;
+            } else {
+              ids[count++] = value;
+            }
+          } while (packed);
+          if (packed) {
+            input.popLimit(limit);
+          }
+          break;
+        case RANGE_FIELD:
+          encoding = Encoding.RANGES;
+          final IdRange range =
+              input.readMessage(IdRange.parser(), ExtensionRegistryLite.getEmptyRegistry());
+          checkRange(range);
+          final long first =
+              IdLayout.compose(
+                  range.getTimestamp(),
+                  range.getDatacenterId(),
+                  range.getWorkerId(),
+                  range.getFirstSequence());
+          final int length = range.getLastSequence() - range.getFirstSequence() + 1;
+          ids = ensureCapacity(ids, count, length);
+          for (int i = 0; i < length; i++) {
+            ids[count++] = first + i;
+          }
+          break;
+        default:
+          input.skipField(tag);
+          break;
+      }
+    }
+    return new IdBatch(ids, count, encoding);
+  }
+
+  /**
+   * Make room for more IDs, failing the call with {@code INVALID_ARGUMENT} rather than allocating
+   * for a message which expands to more than {@link #MAX_COUNT} IDs
+   *
+   * @param ids IDs read so far
+   * @param count Number of IDs read so far
+   * @param length Number of IDs about to be read
+   * @return an array with room for {@code count + length} IDs
+   */
+  private static long[] ensureCapacity(final long[] ids, final int count, final int length) {
+    if (length > MAX_COUNT - count) {
+      throw Status.INVALID_ARGUMENT
+          .withDescription(String.format("IdBatch holds more than %d IDs", MAX_COUNT))
+          .asRuntimeException();
+    }
+    if (count + length <= ids.length) {
+      return ids;
+    }
+    final long capacity = Math.max(ids.length * 2L, count + length);
+    return Arrays.copyOf(ids, (int) Math.min(capacity, MAX_COUNT));
+  }
+
+  /**
+   * Check that a range received from the wire fits the ID layout
+   *
+   * @param range Range to check
+   * @throws InvalidProtocolBufferException if the range is out of bounds
+   */
+  private static void checkRange(final IdRange range) throws InvalidProtocolBufferException {
+    try {
+      IdLayout.checkRun(
+          range.getDatacenterId(),
+          range.getWorkerId(),
+          range.getFirstSequence(),
+          range.getLastSequence());
+    } catch (final IllegalArgumentException e) {
+      throw new InvalidProtocolBufferException("IdRange " + e.getMessage());
+    }
+  }
+
+  /**
+   * Read one value of a repeated ID field
+   *
+   * @param input Serialized message, positioned at the value
+   * @param field Field number
+   * @return the raw value, which is a difference from the previous ID for {@code delta_id}
+   * @throws IOException if the message is malformed
+   */
+  private static long readValue(final CodedInputStream input, final int field) throws IOException {
+    switch (field) {
+      case FIXED_ID_FIELD:
+        return input.readFixed64();
+      case DELTA_ID_FIELD:
+        return input.readUInt64();
+      default:
+        return input.readInt64();
+    }
+  }
+
+  /**
+   * Serializes a batch when gRPC drains it into the outbound buffer, or into a byte array if it is
+   * read like any other stream instead.
+   */
+  private static final class BatchInputStream extends InputStream
+      implements Drainable, KnownLength {
+
+    @Nullable private IdBatch batch;
+    private final int dataSize;
+    private final int size;
+    @Nullable private ByteArrayInputStream serialized;
+
+    BatchInputStream(final IdBatch batch) {
+      this.batch = batch;
+      this.dataSize = computeDataSize(batch);
+      this.size = computeMessageSize(batch, dataSize);
+    }
+
+    @Override
+    public int drainTo(final OutputStream target) throws IOException {
+      if (batch != null) {
+        writeTo(target);
+        batch = null;
+        return size;
+      }
+      if (serialized != null) {
+        final int remaining = serialized.available();
+        serialized.transferTo(target);
+        serialized = null;
+        return remaining;
+      }
+      return 0;
+    }
+
+    @Override
+    public int available() {
+      if (batch != null) {
+        return size;
+      }
+      return serialized != null ? serialized.available() : 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+      serialize();
+      return serialized != null ? serialized.read() : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      serialize();
+      return serialized != null ? serialized.read(b, off, len) : -1;
+    }
+
+    private void serialize() throws IOException {
+      if (batch != null) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(size);
+        writeTo(buffer);
+        serialized = new ByteArrayInputStream(buffer.toByteArray());
+        batch = null;
+      }
+    }
+
+    private void writeTo(final OutputStream target) throws IOException {
+      if (size == 0) {
+        return;
+      }
+      final CodedOutputStream output =
+          CodedOutputStream.newInstance(target, Math.min(size, MAX_BUFFER_SIZE));
+      write(batch, dataSize, output);
+      output.flush();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.marshal;
+
+import com.google.protobuf.Empty;
+import com.smoketurner.snowizard.grpc.protos.IdCredit;
+import com.smoketurner.snowizard.grpc.protos.SnowizardGrpc;
+import com.smoketurner.snowizard.grpc.protos.SnowizardRequest;
+import io.grpc.MethodDescriptor;
+
+/**
+ * The methods of the {@code Snowizard} service, with responses marshalled by {@link
+ * IdBatchMarshaller} instead of as {@code SnowizardResponse} messages. Names and wire formats are
+ * unchanged, so these interoperate with the generated stubs.
+ */
+public final class IdMethods {
+
+  public static final MethodDescriptor<Empty, IdBatch> GET_ID =
+      SnowizardGrpc.getGetIdMethod()
+          .toBuilder(
+              SnowizardGrpc.getGetIdMethod().getRequestMarshaller(), IdBatchMarshaller.INSTANCE)
+          .build();
+
+  public static final MethodDescriptor<SnowizardRequest, IdBatch> GET_IDS =
+      SnowizardGrpc.getGetIdsMethod()
+          .toBuilder(
+              SnowizardGrpc.getGetIdsMethod().getRequestMarshaller(), IdBatchMarshaller.INSTANCE)
+          .build();
+
+  public static final MethodDescriptor<IdCredit, IdBatch> STREAM_IDS =
+      SnowizardGrpc.getStreamIdsMethod()
+          .toBuilder(
+              SnowizardGrpc.getStreamIdsMethod().getRequestMarshaller(), IdBatchMarshaller.INSTANCE)
+          .build();
+
+  private IdMethods() {}
+}
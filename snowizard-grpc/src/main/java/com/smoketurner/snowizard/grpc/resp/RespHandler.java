@@ -0,0 +1,319 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.resp;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.redis.ArrayRedisMessage;
+import io.netty.handler.codec.redis.ErrorRedisMessage;
+import io.netty.handler.codec.redis.FullBulkStringRedisMessage;
+import io.netty.handler.codec.redis.IntegerRedisMessage;
+import io.netty.handler.codec.redis.RedisMessage;
+import io.netty.handler.codec.redis.SimpleStringRedisMessage;
+import io.netty.util.AttributeKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves IDs over the Redis serialization protocol (RESP), so any Redis client library can fetch
+ * IDs without a Snowizard-specific client:
+ *
+ * <pre>
+ * NEXTID              -> (integer) ID
+ * NEXTIDS count       -> (array) of count integer IDs
+ * PING [message]      -> PONG, or the message
+ * INFO                -> (bulk string) worker_id, datacenter_id and timestamp
+ * CLIENT SETNAME name -> OK, and use name as the user agent of later commands
+ * QUIT                -> OK, then close the connection
+ * </pre>
+ *
+ * <p>Commands on a connection are answered in order, and the replies to all commands in one read
+ * are flushed together, so clients may pipeline requests. Connections use the agent {@value
+ * #DEFAULT_AGENT} until they name themselves with {@code CLIENT SETNAME}.
+ */
+@Sharable
+public class RespHandler extends SimpleChannelInboundHandler<RedisMessage> {
+
+  public static final String DEFAULT_AGENT = "resp";
+  public static final int MAX_COUNT = 10_000;
+  public static final int MAX_ECHOED_LENGTH = 128;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RespHandler.class);
+  private static final AttributeKey<String> AGENT = AttributeKey.valueOf("snowizard.agent");
+  private static final SimpleStringRedisMessage OK = new SimpleStringRedisMessage("OK");
+  private static final SimpleStringRedisMessage PONG = new SimpleStringRedisMessage("PONG");
+
+  private final IdWorker worker;
+  private final AgentRateLimiter limiter;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID generator
+   * @param limiter Per-agent rate limiter
+   */
+  public RespHandler(final IdWorker worker, final AgentRateLimiter limiter) {
+    this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
+  }
+
+  @Override
+  protected void channelRead0(final ChannelHandlerContext ctx, final RedisMessage msg) {
+    if (!(msg instanceof ArrayRedisMessage)) {
+      ctx.write(error("ERR Protocol error: expected a command array"), ctx.voidPromise());
+      return;
+    }
+
+    final List<String> args = readArguments((ArrayRedisMessage) msg);
+    if (args == null || args.isEmpty()) {
+      ctx.write(error("ERR Protocol error: invalid command"), ctx.voidPromise());
+      return;
+    }
+
+    final String command = args.get(0).toUpperCase(Locale.ENGLISH);
+    switch (command) {
+      case "NEXTID":
+        if (args.size() != 1) {
+          ctx.write(wrongArity(command), ctx.voidPromise());
+        } else {
+          ctx.write(nextIds(agent(ctx), 1, false), ctx.voidPromise());
+        }
+        break;
+      case "NEXTIDS":
+        if (args.size() != 2) {
+          ctx.write(wrongArity(command), ctx.voidPromise());
+        } else {
+          ctx.write(nextIds(agent(ctx), args.get(1)), ctx.voidPromise());
+        }
+        break;
+      case "PING":
+        if (args.size() > 2) {
+          ctx.write(wrongArity(command), ctx.voidPromise());
+        } else if (args.size() == 2) {
+          ctx.write(bulkString(ctx, args.get(1)), ctx.voidPromise());
+        } else {
+          ctx.write(PONG, ctx.voidPromise());
+        }
+        break;
+      case "INFO":
+        ctx.write(bulkString(ctx, info()), ctx.voidPromise());
+        break;
+      case "CLIENT":
+        ctx.write(client(ctx, args), ctx.voidPromise());
+        break;
+      case "QUIT":
+        ctx.writeAndFlush(OK).addListener(ChannelFutureListener.CLOSE);
+        break;
+      default:
+        ctx.write(error("ERR unknown command '" + truncate(args.get(0)) + "'"), ctx.voidPromise());
+        break;
+    }
+  }
+
+  @Override
+  public void channelReadComplete(final ChannelHandlerContext ctx) {
+    // flush once per read so pipelined commands share a single write
+    ctx.flush();
+  }
+
+  @Override
+  public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+    LOGGER.warn("Closing connection after unexpected error", cause);
+    ctx.close();
+  }
+
+  /**
+   * Parse the count argument of {@code NEXTIDS} and generate that many IDs
+   *
+   * @param agent User Agent
+   * @param value Count argument
+   * @return the reply
+   */
+  private RedisMessage nextIds(final String agent, final String value) {
+    final int count;
+    try {
+      count = Integer.parseInt(value);
+    } catch (final NumberFormatException e) {
+      return error("ERR value is not an integer or out of range");
+    }
+    if (count < 1 || count > MAX_COUNT) {
+      return error("ERR count must be between 1 and " + MAX_COUNT);
+    }
+    return nextIds(agent, count, true);
+  }
+
+  /**
+   * Generate new IDs
+   *
+   * @param agent User Agent
+   * @param count Number of IDs to generate
+   * @param array Whether to reply with an array, rather than a single integer
+   * @return the reply
+   */
+  private RedisMessage nextIds(final String agent, final int count, final boolean array) {
+    if (!limiter.tryAcquire(agent, count)) {
+      LOGGER.debug("Rate limit exceeded for agent ({})", agent);
+      return error("ERR rate limit exceeded");
+    }
+
+    final long[] ids = new long[count];
+    try {
+      worker.getIds(agent, ids, 0, count);
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      return error("ERR invalid user agent");
+    } catch (final InvalidSystemClock e) {
+      LOGGER.error("Invalid system clock", e);
+      return error("ERR invalid system clock");
+    }
+
+    if (!array) {
+      return new IntegerRedisMessage(ids[0]);
+    }
+    final List<RedisMessage> children = new ArrayList<>(count);
+    for (final long id : ids) {
+      children.add(new IntegerRedisMessage(id));
+    }
+    return new ArrayRedisMessage(children);
+  }
+
+  /**
+   * Handle the {@code CLIENT} subcommands. Only {@code SETNAME} and {@code GETNAME} are supported.
+   *
+   * @param ctx Channel context
+   * @param args Command arguments
+   * @return the reply
+   */
+  private RedisMessage client(final ChannelHandlerContext ctx, final List<String> args) {
+    if (args.size() < 2) {
+      return wrongArity("CLIENT");
+    }
+    final String subcommand = args.get(1).toUpperCase(Locale.ENGLISH);
+    if ("SETNAME".equals(subcommand) && args.size() == 3) {
+      final String agent = args.get(2);
+      if (!worker.isValidUserAgent(agent)) {
+        return error("ERR invalid user agent");
+      }
+      ctx.channel().attr(AGENT).set(agent);
+      return OK;
+    }
+    if ("GETNAME".equals(subcommand) && args.size() == 2) {
+      return bulkString(ctx, agent(ctx));
+    }
+    return error("ERR unsupported CLIENT subcommand or wrong number of arguments");
+  }
+
+  private String info() {
+    return "# Snowizard\r\n"
+        + "worker_id:"
+        + worker.getWorkerId()
+        + "\r\n"
+        + "datacenter_id:"
+        + worker.getDatacenterId()
+        + "\r\n"
+        + "timestamp:"
+        + worker.getTimestamp()
+        + "\r\n";
+  }
+
+  private static String agent(final ChannelHandlerContext ctx) {
+    final String agent = ctx.channel().attr(AGENT).get();
+    return agent == null ? DEFAULT_AGENT : agent;
+  }
+
+  /**
+   * Decode the arguments of a command
+   *
+   * @param msg Command array
+   * @return the arguments, or null if the array holds anything other than bulk strings
+   */
+  private static List<String> readArguments(final ArrayRedisMessage msg) {
+    if (msg.isNull()) {
+      return null;
+    }
+    final List<String> args = new ArrayList<>(msg.children().size());
+    for (final RedisMessage child : msg.children()) {
+      if (!(child instanceof FullBulkStringRedisMessage)) {
+        return null;
+      }
+      final FullBulkStringRedisMessage arg = (FullBulkStringRedisMessage) child;
+      if (arg.isNull()) {
+        return null;
+      }
+      args.add(arg.content().toString(StandardCharsets.UTF_8));
+    }
+    return args;
+  }
+
+  private static FullBulkStringRedisMessage bulkString(
+      final ChannelHandlerContext ctx, final String value) {
+    return new FullBulkStringRedisMessage(ByteBufUtil.writeUtf8(ctx.alloc(), value));
+  }
+
+  private static ErrorRedisMessage wrongArity(final String command) {
+    return error(
+        "ERR wrong number of arguments for '" + command.toLowerCase(Locale.ENGLISH) + "' command");
+  }
+
+  /**
+   * Shorten a client-supplied argument before echoing it in an error, as Redis does
+   *
+   * @param arg Argument
+   * @return the first {@value #MAX_ECHOED_LENGTH} characters of the argument
+   */
+  private static String truncate(final String arg) {
+    return arg.length() > MAX_ECHOED_LENGTH ? arg.substring(0, MAX_ECHOED_LENGTH) : arg;
+  }
+
+  /**
+   * Build an error reply. Control characters are replaced by spaces, as Redis does, since a CR or
+   * LF in a simple error would end the reply early and let the rest be read as another reply.
+   *
+   * @param message Error message
+   * @return error reply
+   */
+  private static ErrorRedisMessage error(final String message) {
+    final StringBuilder sb = new StringBuilder(message.length());
+    for (int i = 0; i < message.length(); i++) {
+      final char c = message.charAt(i);
+      sb.append(Character.isISOControl(c) ? ' ' : c);
+    }
+    return new ErrorRedisMessage(sb.toString());
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.resp;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.redis.ArrayHeaderRedisMessage;
+import io.netty.handler.codec.redis.BulkStringHeaderRedisMessage;
+import io.netty.handler.codec.redis.ErrorRedisMessage;
+import io.netty.util.ReferenceCountUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rejects commands with more arguments, or longer arguments, than any command of {@link
+ * RespHandler} takes, before the aggregators behind it allocate room for them. The client gets the
+ * same protocol error Redis sends, and the connection is closed; anything it sent after the bad
+ * header is discarded.
+ *
+ * <p>It must sit between the {@code RedisDecoder} and the aggregators, after the {@code
+ * RedisEncoder}. It keeps state, so each connection needs its own instance.
+ */
+public class RespLimitHandler extends ChannelInboundHandlerAdapter {
+
+  public static final int MAX_ARGUMENTS = 8;
+  public static final int MAX_ARGUMENT_LENGTH = 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RespLimitHandler.class);
+
+  private boolean rejected;
+
+  @Override
+  public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+    if (rejected) {
+      ReferenceCountUtil.release(msg);
+      return;
+    }
+    if (msg instanceof ArrayHeaderRedisMessage
+        && ((ArrayHeaderRedisMessage) msg).length() > MAX_ARGUMENTS) {
+      reject(ctx, msg, "ERR Protocol error: invalid multibulk length");
+    } else if (msg instanceof BulkStringHeaderRedisMessage
+        && ((BulkStringHeaderRedisMessage) msg).bulkStringLength() > MAX_ARGUMENT_LENGTH) {
+      reject(ctx, msg, "ERR Protocol error: invalid bulk length");
+    } else {
+      ctx.fireChannelRead(msg);
+    }
+  }
+
+  private void reject(final ChannelHandlerContext ctx, final Object msg, final String error) {
+    LOGGER.debug("Closing connection after oversized message: {}", msg);
+    ReferenceCountUtil.release(msg);
+    rejected = true;
+    ctx.writeAndFlush(new ErrorRedisMessage(error)).addListener(ChannelFutureListener.CLOSE);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.thrift;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.exceptions.InvalidUserAgentError;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.CorruptedFrameException;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves Twitter Snowflake's Thrift interface from an {@link IdWorker}, so existing Snowflake
+ * clients can switch to Snowizard unchanged:
+ *
+ * <pre>
+ * service Snowflake {
+ *   i64 get_worker_id()
+ *   i64 get_timestamp()
+ *   i64 get_id(1:string useragent)
+ *   i64 get_datacenter_id()
+ * }
+ * </pre>
+ *
+ * <p>Each inbound message is one frame of the binary protocol. Calls on a connection are answered
+ * in order, and the replies to all calls in one read are flushed together, so clients may pipeline
+ * requests. Errors are returned as {@code TApplicationException}s.
+ */
+@Sharable
+public class SnowflakeHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SnowflakeHandler.class);
+  private static final int REPLY_SIZE = 64;
+
+  private final IdWorker worker;
+  private final AgentRateLimiter limiter;
+
+  /**
+   * Constructor
+   *
+   * @param worker ID generator
+   * @param limiter Per-agent rate limiter
+   */
+  public SnowflakeHandler(final IdWorker worker, final AgentRateLimiter limiter) {
+    this.worker = Objects.requireNonNull(worker);
+    this.limiter = Objects.requireNonNull(limiter);
+  }
+
+  @Override
+  protected void channelRead0(final ChannelHandlerContext ctx, final ByteBuf frame) {
+    final ThriftBinary.Header header = ThriftBinary.readHeader(frame);
+    if (header.type != ThriftBinary.CALL && header.type != ThriftBinary.ONEWAY) {
+      throw new CorruptedFrameException("Unexpected Thrift message type: " + header.type);
+    }
+
+    final ByteBuf out = ctx.alloc().buffer(REPLY_SIZE);
+    try {
+      switch (header.name) {
+        case "get_id":
+          getId(header, readUserAgent(frame), out);
+          break;
+        case "get_worker_id":
+          ThriftBinary.skip(frame, ThriftBinary.STRUCT);
+          ThriftBinary.writeI64Reply(out, header.name, header.seqId, worker.getWorkerId());
+          break;
+        case "get_datacenter_id":
+          ThriftBinary.skip(frame, ThriftBinary.STRUCT);
+          ThriftBinary.writeI64Reply(out, header.name, header.seqId, worker.getDatacenterId());
+          break;
+        case "get_timestamp":
+          ThriftBinary.skip(frame, ThriftBinary.STRUCT);
+          ThriftBinary.writeI64Reply(out, header.name, header.seqId, worker.getTimestamp());
+          break;
+        default:
+          ThriftBinary.skip(frame, ThriftBinary.STRUCT);
+          ThriftBinary.writeException(
+              out,
+              header.name,
+              header.seqId,
+              ThriftBinary.UNKNOWN_METHOD,
+              "Invalid method name: '" + header.name + "'");
+          break;
+      }
+    } catch (final RuntimeException e) {
+      out.release();
+      throw e;
+    }
+
+    if (header.type == ThriftBinary.ONEWAY) {
+      out.release();
+      return;
+    }
+    ctx.write(out, ctx.voidPromise());
+  }
+
+  @Override
+  public void channelReadComplete(final ChannelHandlerContext ctx) {
+    // flush once per read so pipelined calls share a single write
+    ctx.flush();
+  }
+
+  @Override
+  public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+    LOGGER.warn("Closing connection after unexpected error", cause);
+    ctx.close();
+  }
+
+  /**
+   * Generate a new ID and write the reply
+   *
+   * @param header Call header
+   * @param agent User Agent
+   * @param out Buffer to write the reply to
+   */
+  private void getId(final ThriftBinary.Header header, final String agent, final ByteBuf out) {
+    if (!worker.isValidUserAgent(agent)) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      ThriftBinary.writeException(
+          out, header.name, header.seqId, ThriftBinary.INTERNAL_ERROR, "Invalid User-Agent");
+      return;
+    }
+    if (!limiter.tryAcquire(agent, 1)) {
+      LOGGER.debug("Rate limit exceeded for agent ({})", agent);
+      ThriftBinary.writeException(
+          out, header.name, header.seqId, ThriftBinary.INTERNAL_ERROR, "Rate limit exceeded");
+      return;
+    }
+
+    try {
+      ThriftBinary.writeI64Reply(out, header.name, header.seqId, worker.getId(agent));
+    } catch (final InvalidUserAgentError e) {
+      LOGGER.error("Invalid user agent ({})", agent);
+      ThriftBinary.writeException(
+          out, header.name, header.seqId, ThriftBinary.INTERNAL_ERROR, "Invalid User-Agent");
+    } catch (final InvalidSystemClock e) {
+      LOGGER.error("Invalid system clock", e);
+      ThriftBinary.writeException(
+          out, header.name, header.seqId, ThriftBinary.INTERNAL_ERROR, "Invalid system clock");
+    }
+  }
+
+  /**
+   * Read the arguments of a {@code get_id} call
+   *
+   * @param frame Frame positioned at the argument struct
+   * @return the {@code useragent} argument, or an empty string if it is missing
+   */
+  private static String readUserAgent(final ByteBuf frame) {
+    String agent = "";
+    while (true) {
+      final byte type = frame.readByte();
+      if (type == ThriftBinary.STOP) {
+        return agent;
+      }
+      final short id = frame.readShort();
+      if (id == 1 && type == ThriftBinary.STRING) {
+        agent = ThriftBinary.readString(frame);
+      } else {
+        ThriftBinary.skip(frame, type);
+      }
+    }
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.thrift;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The parts of Thrift's binary protocol needed to serve the Snowflake service: message headers,
+ * strings, i64 results, application exceptions, and skipping fields we don't read.
+ */
+final class ThriftBinary {
+
+  static final byte CALL = 1;
+  static final byte REPLY = 2;
+  static final byte EXCEPTION = 3;
+  static final byte ONEWAY = 4;
+
+  static final byte STOP = 0;
+  static final byte BOOL = 2;
+  static final byte BYTE = 3;
+  static final byte DOUBLE = 4;
+  static final byte I16 = 6;
+  static final byte I32 = 8;
+  static final byte I64 = 10;
+  static final byte STRING = 11;
+  static final byte STRUCT = 12;
+  static final byte MAP = 13;
+  static final byte SET = 14;
+  static final byte LIST = 15;
+
+  // TApplicationException types
+  static final int UNKNOWN_METHOD = 1;
+  static final int INTERNAL_ERROR = 6;
+
+  private static final int VERSION_1 = 0x80010000;
+  private static final int VERSION_MASK = 0xffff0000;
+  private static final int MAX_DEPTH = 64;
+
+  private ThriftBinary() {}
+
+  /** The header of a message: method name, message type and sequence ID */
+  static final class Header {
+    final String name;
+    final byte type;
+    final int seqId;
+
+    private Header(final String name, final byte type, final int seqId) {
+      this.name = name;
+      this.type = type;
+      this.seqId = seqId;
+    }
+  }
+
+  /**
+   * Read a message header, in either the strict (versioned) or the old unversioned form
+   *
+   * @param in Frame to read from
+   * @return message header
+   * @throws CorruptedFrameException if the header is invalid
+   */
+  static Header readHeader(final ByteBuf in) {
+    final int first = in.readInt();
+    if (first < 0) {
+      if ((first & VERSION_MASK) != VERSION_1) {
+        throw new CorruptedFrameException("Bad Thrift version: " + Integer.toHexString(first));
+      }
+      final String name = readString(in);
+      return new Header(name, (byte) (first & 0xff), in.readInt());
+    }
+    final String name = readString(in, first);
+    final byte type = in.readByte();
+    return new Header(name, type, in.readInt());
+  }
+
+  /**
+   * Read a string argument
+   *
+   * @param in Frame to read from
+   * @return the string
+   */
+  static String readString(final ByteBuf in) {
+    return readString(in, in.readInt());
+  }
+
+  private static String readString(final ByteBuf in, final int length) {
+    checkLength(in, length);
+    final String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+    in.skipBytes(length);
+    return value;
+  }
+
+  private static int checkLength(final ByteBuf in, final int length) {
+    if (length < 0 || length > in.readableBytes()) {
+      throw new CorruptedFrameException("Bad Thrift string length: " + length);
+    }
+    return length;
+  }
+
+  /**
+   * Skip over a value of a given type
+   *
+   * @param in Frame to read from
+   * @param type Thrift type of the value
+   */
+  static void skip(final ByteBuf in, final byte type) {
+    skip(in, type, 0);
+  }
+
+  private static void skip(final ByteBuf in, final byte type, final int depth) {
+    if (depth > MAX_DEPTH) {
+      throw new CorruptedFrameException("Thrift value nested too deeply");
+    }
+    switch (type) {
+      case BOOL:
+      case BYTE:
+        in.skipBytes(1);
+        break;
+      case I16:
+        in.skipBytes(2);
+        break;
+      case I32:
+        in.skipBytes(4);
+        break;
+      case DOUBLE:
+      case I64:
+        in.skipBytes(8);
+        break;
+      case STRING:
+        in.skipBytes(checkLength(in, in.readInt()));
+        break;
+      case STRUCT:
+        while (true) {
+          final byte fieldType = in.readByte();
+          if (fieldType == STOP) {
+            break;
+          }
+          in.skipBytes(2);
+          skip(in, fieldType, depth + 1);
+        }
+        break;
+      case MAP:
+        {
+          final byte keyType = in.readByte();
+          final byte valueType = in.readByte();
+          final int size = in.readInt();
+          for (int i = 0; i < size; i++) {
+            skip(in, keyType, depth + 1);
+            skip(in, valueType, depth + 1);
+          }
+          break;
+        }
+      case SET:
+      case LIST:
+        {
+          final byte elementType = in.readByte();
+          final int size = in.readInt();
+          for (int i = 0; i < size; i++) {
+            skip(in, elementType, depth + 1);
+          }
+          break;
+        }
+      default:
+        throw new CorruptedFrameException("Unknown Thrift type: " + type);
+    }
+  }
+
+  /**
+   * Write a strict message header
+   *
+   * @param out Buffer to write to
+   * @param name Method name
+   * @param type Message type
+   * @param seqId Sequence ID of the call being answered
+   */
+  static void writeHeader(final ByteBuf out, final String name, final byte type, final int seqId) {
+    out.writeInt(VERSION_1 | type);
+    writeString(out, name);
+    out.writeInt(seqId);
+  }
+
+  /**
+   * Write a successful reply carrying an i64
+   *
+   * @param out Buffer to write to
+   * @param name Method name
+   * @param seqId Sequence ID of the call being answered
+   * @param value Return value
+   */
+  static void writeI64Reply(
+      final ByteBuf out, final String name, final int seqId, final long value) {
+    writeHeader(out, name, REPLY, seqId);
+    // result struct: field 0 ("success") of type i64
+    out.writeByte(I64);
+    out.writeShort(0);
+    out.writeLong(value);
+    out.writeByte(STOP);
+  }
+
+  /**
+   * Write a TApplicationException reply
+   *
+   * @param out Buffer to write to
+   * @param name Method name
+   * @param seqId Sequence ID of the call being answered
+   * @param type TApplicationException type
+   * @param message Error message
+   */
+  static void writeException(
+      final ByteBuf out, final String name, final int seqId, final int type, final String message) {
+    writeHeader(out, name, EXCEPTION, seqId);
+    out.writeByte(STRING);
+    out.writeShort(1);
+    writeString(out, message);
+    out.writeByte(I32);
+    out.writeShort(2);
+    out.writeInt(type);
+    out.writeByte(STOP);
+  }
+
+  private static void writeString(final ByteBuf out, final String value) {
+    final int lengthIndex = out.writerIndex();
+    out.writeInt(0);
+    final int length = out.writeCharSequence(value, StandardCharsets.UTF_8);
+    out.setInt(lengthIndex, length);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.util;
+
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A server interceptor which fails calls with {@code UNAVAILABLE} once the number of calls in
+ * flight reaches the limit of an {@link AdaptiveConcurrencyLimiter}, instead of letting them queue
+ * up on the executor.
+ *
+ * <p>Calls in which the client streams, such as {@code StreamIds}, are passed through untouched.
+ * They stay open for as long as the client keeps sending credit, so they would hold a permit
+ * indefinitely and feed the whole lifetime of the stream to the limiter as a single latency sample,
+ * which would collapse the limit for every other call. Their work is bounded per message by the
+ * rate limiter instead.
+ *
+ * <p>Calls in which only the server streams, such as {@code GetIds}, do hold a permit, but their
+ * duration depends on how fast the client reads, so they end without a latency sample.
+ */
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyLimitInterceptor.class);
+  private final AdaptiveConcurrencyLimiter limiter;
+
+  /**
+   * Constructor
+   *
+   * @param limiter Concurrency limiter
+   */
+  public ConcurrencyLimitInterceptor(final AdaptiveConcurrencyLimiter limiter) {
+    this.limiter = Objects.requireNonNull(limiter);
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+
+    if (!call.getMethodDescriptor().getType().clientSendsOneMessage()) {
+      return next.startCall(call, headers);
+    }
+
+    if (!limiter.tryAcquire()) {
+      LOGGER.debug("Concurrency limit ({}) reached, shedding call", limiter.getLimit());
+      call.close(Status.UNAVAILABLE.withDescription("Server overloaded"), new Metadata());
+      return new ServerCall.Listener<ReqT>() {};
+    }
+
+    final long start = limiter.nanoTime();
+    final boolean sampled = call.getMethodDescriptor().getType().serverSendsOneMessage();
+    final AtomicBoolean released = new AtomicBoolean();
+
+    final ServerCall<ReqT, RespT> limitedCall =
+        new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+          @Override
+          public void close(Status status, Metadata trailers) {
+            if (released.compareAndSet(false, true)) {
+              if (sampled && status.isOk()) {
+                limiter.release(start);
+              } else {
+                limiter.cancel();
+              }
+            }
+            super.close(status, trailers);
+          }
+        };
+
+    return new ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT>(
+        next.startCall(limitedCall, headers)) {
+      @Override
+      public void onCancel() {
+        if (released.compareAndSet(false, true)) {
+          limiter.cancel();
+        }
+        super.onCancel();
+      }
+    };
+  }
+}
@@ -30,12 +30,21 @@ import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
 import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.Socket;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +53,10 @@ public class Netty {
   private static final Logger LOGGER = LoggerFactory.getLogger(Netty.class);
   private static final int WORKER_THREADS = Runtime.getRuntime().availableProcessors() * 2;
 
+  // file type bits of st_mode
+  private static final int S_IFMT = 0170000;
+  private static final int S_IFSOCK = 0140000;
+
   static {
     if (Epoll.isAvailable()) {
       LOGGER.info("Using epoll");
@@ -79,4 +92,57 @@ public class Netty {
     }
     return NioSocketChannel.class;
   }
+
+  public static Class<? extends ServerChannel> serverDomainSocketChannelType() {
+    requireEpoll();
+    return EpollServerDomainSocketChannel.class;
+  }
+
+  public static Class<? extends Channel> clientDomainSocketChannelType() {
+    requireEpoll();
+    return EpollDomainSocketChannel.class;
+  }
+
+  /**
+   * Return a Unix domain socket address to bind to, removing the socket file left behind by a
+   * previous run first. Anything else at the path, or a socket which a running process is still
+   * listening on, is left alone and fails the bind.
+   */
+  public static DomainSocketAddress bindableDomainSocket(final String path) throws IOException {
+    requireEpoll();
+    final DomainSocketAddress address = new DomainSocketAddress(path);
+    final Path file = Paths.get(path);
+    if (!Files.exists(file, LinkOption.NOFOLLOW_LINKS)) {
+      return address;
+    }
+    final int mode = (Integer) Files.getAttribute(file, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+    if ((mode & S_IFMT) != S_IFSOCK) {
+      throw new IOException("Refusing to replace " + path + ", which is not a socket");
+    }
+    if (isListening(address)) {
+      throw new IOException("Another process is already listening on " + path);
+    }
+    Files.delete(file);
+    return address;
+  }
+
+  private static boolean isListening(final DomainSocketAddress address) throws IOException {
+    final Socket socket = Socket.newSocketDomain();
+    try {
+      socket.connect(address);
+      return true;
+    } catch (final IOException e) {
+      return false;
+    } finally {
+      socket.close();
+    }
+  }
+
+  // domain sockets are only available with native epoll
+  private static void requireEpoll() {
+    if (!Epoll.isAvailable()) {
+      throw new IllegalStateException(
+          "Unix domain sockets require native epoll", Epoll.unavailabilityCause());
+    }
+  }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.util;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** A plain Netty server listening on a TCP port or a Unix domain socket. */
+public class NettyServer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(NettyServer.class);
+
+  private final EventLoopGroup bossEventLoopGroup;
+  private final EventLoopGroup workerEventLoopGroup;
+  private final ServerBootstrap bootstrap;
+  private final SocketAddress address;
+  private final String name;
+
+  /**
+   * Constructor
+   *
+   * @param name Name of the protocol, for logging
+   * @param port Port to listen on
+   * @param socketPath Unix domain socket to listen on instead of the port, or null
+   * @param initializer Sets up the pipeline of each accepted connection
+   * @throws IOException if unable to set up the domain socket
+   */
+  public NettyServer(
+      String name, int port, @Nullable String socketPath, ChannelInitializer<Channel> initializer)
+      throws IOException {
+    this.name = Objects.requireNonNull(name);
+    this.bossEventLoopGroup = Netty.newBossEventLoopGroup();
+    this.workerEventLoopGroup = Netty.newWorkerEventLoopGroup();
+
+    this.bootstrap = new ServerBootstrap().group(bossEventLoopGroup, workerEventLoopGroup);
+    if (socketPath != null) {
+      this.address = Netty.bindableDomainSocket(socketPath);
+      bootstrap.channel(Netty.serverDomainSocketChannelType());
+    } else {
+      this.address = new InetSocketAddress(port);
+      bootstrap.channel(Netty.serverChannelType()).childOption(ChannelOption.TCP_NODELAY, true);
+    }
+    bootstrap.childHandler(initializer);
+  }
+
+  /**
+   * Start listening without blocking
+   *
+   * @return the listening channel
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public Channel bind() throws InterruptedException {
+    final Channel channel = bootstrap.bind(address).sync().channel();
+    LOGGER.info("{} server started, listening on {}", name, channel.localAddress());
+    return channel;
+  }
+
+  /**
+   * Start listening and block until the server is closed
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void start() throws InterruptedException {
+    final Channel channel = bind();
+    Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+    channel.closeFuture().sync();
+  }
+
+  /** Close the server and its connections */
+  public void stop() {
+    bossEventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+    workerEventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.util;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import javax.annotation.Nullable;
+
+/** A server interceptor which makes the calling user agent available to services. */
+public class UserAgentInterceptor implements ServerInterceptor {
+
+  public static final Context.Key<String> USER_AGENT = Context.key("user-agent");
+
+  private static final String UNKNOWN_AGENT = "unknown";
+  private static final Metadata.Key<String> USER_AGENT_KEY =
+      Metadata.Key.of("user-agent", Metadata.ASCII_STRING_MARSHALLER);
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    final Context context =
+        Context.current().withValue(USER_AGENT, parse(headers.get(USER_AGENT_KEY)));
+    return Contexts.interceptCall(context, call, headers, next);
+  }
+
+  /**
+   * Return the current user agent
+   *
+   * @return user agent of the current call
+   */
+  public static String current() {
+    final String agent = USER_AGENT.get();
+    if (agent == null) {
+      return UNKNOWN_AGENT;
+    }
+    return agent;
+  }
+
+  /**
+   * Extract the application name from a gRPC user-agent header, such as {@code snowizard-client
+   * grpc-java-netty/1.20.0}.
+   *
+   * @param header User-agent header
+   * @return application name
+   */
+  private static String parse(@Nullable String header) {
+    if (header == null || header.isEmpty()) {
+      return UNKNOWN_AGENT;
+    }
+    int end = header.indexOf(' ');
+    if (end < 0) {
+      end = header.length();
+    }
+    final int slash = header.indexOf('/');
+    if (slash >= 0 && slash < end) {
+      end = slash;
+    }
+    if (end == 0) {
+      return UNKNOWN_AGENT;
+    }
+    return header.substring(0, end);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.grpc.marshal.IdBatch;
+import com.smoketurner.snowizard.grpc.marshal.IdMethods;
+import com.smoketurner.snowizard.grpc.protos.Encoding;
+import com.smoketurner.snowizard.grpc.protos.IdCredit;
+import com.smoketurner.snowizard.grpc.protos.SnowizardRequest;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnowizardImplTest {
+
+  private final IdWorker worker = spy(IdWorker.builder(1, 1).withValidateUserAgent(false).build());
+  private Server server;
+  private ManagedChannel channel;
+
+  @Before
+  public void setUp() throws Exception {
+    // direct executors run each call synchronously, so every assertion sees a settled call
+    final String name = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(name)
+            .directExecutor()
+            .addService(new SnowizardImpl(worker))
+            .build()
+            .start();
+    channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    channel.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testSlowReaderIsNotOverrun() throws Exception {
+    final Recorder recorder = new Recorder();
+    final ClientCall<SnowizardRequest, IdBatch> call =
+        channel.newCall(IdMethods.GET_IDS, CallOptions.DEFAULT);
+    call.start(recorder, new Metadata());
+    call.request(1);
+    call.sendMessage(SnowizardRequest.newBuilder().setCount(1_000_000).build());
+    call.halfClose();
+
+    // the reader asked for one response, so only one batch is generated
+    assertThat(recorder.batches).hasSize(1);
+    assertThat(generated()).isEqualTo(recorder.received()).isLessThan(1_000_000L);
+
+    call.request(1);
+
+    assertThat(recorder.batches).hasSize(2);
+    assertThat(generated()).isEqualTo(recorder.received()).isLessThan(1_000_000L);
+    assertThat(recorder.status).isNull();
+
+    call.cancel("done", null);
+  }
+
+  @Test
+  public void testCancelStopsGeneration() throws Exception {
+    final Recorder recorder = new Recorder();
+    final ClientCall<SnowizardRequest, IdBatch> call =
+        channel.newCall(IdMethods.GET_IDS, CallOptions.DEFAULT);
+    call.start(recorder, new Metadata());
+    call.request(1);
+    call.sendMessage(SnowizardRequest.newBuilder().setCount(1_000_000).build());
+    call.halfClose();
+
+    assertThat(recorder.batches).hasSize(1);
+    final long generated = generated();
+
+    call.cancel("done", null);
+    call.request(Integer.MAX_VALUE);
+
+    assertThat(recorder.status.getCode()).isEqualTo(Status.Code.CANCELLED);
+    assertThat(recorder.batches).hasSize(1);
+    assertThat(generated()).isEqualTo(generated);
+  }
+
+  @Test
+  public void testStreamIdsNeverExceedsCredit() throws Exception {
+    final Recorder recorder = new Recorder();
+    final ClientCall<IdCredit, IdBatch> call =
+        channel.newCall(IdMethods.STREAM_IDS, CallOptions.DEFAULT);
+    call.start(recorder, new Metadata());
+    call.request(Integer.MAX_VALUE);
+
+    call.sendMessage(IdCredit.newBuilder().setCount(10_000).build());
+    assertThat(recorder.received()).isEqualTo(10_000L);
+
+    call.sendMessage(IdCredit.newBuilder().setCount(1).setEncoding(Encoding.FIXED64).build());
+    call.sendMessage(IdCredit.newBuilder().setCount(5).setEncoding(Encoding.RANGES).build());
+    assertThat(recorder.received()).isEqualTo(10_006L);
+
+    call.halfClose();
+
+    assertThat(recorder.status.getCode()).isEqualTo(Status.Code.OK);
+    assertThat(recorder.received()).isEqualTo(10_006L);
+    assertThat(recorder.batches.stream().flatMapToLong(IdBatch::stream).distinct().count())
+        .isEqualTo(10_006L);
+    assertThat(generated()).isEqualTo(10_006L);
+  }
+
+  @Test
+  public void testStreamIdsHoldsCreditForSlowReader() throws Exception {
+    final Recorder recorder = new Recorder();
+    final ClientCall<IdCredit, IdBatch> call =
+        channel.newCall(IdMethods.STREAM_IDS, CallOptions.DEFAULT);
+    call.start(recorder, new Metadata());
+    call.sendMessage(IdCredit.newBuilder().setCount(10).build());
+    call.halfClose();
+
+    // credit alone doesn't generate IDs until the reader is ready for them
+    assertThat(recorder.batches).isEmpty();
+    assertThat(generated()).isZero();
+
+    call.request(Integer.MAX_VALUE);
+
+    assertThat(recorder.received()).isEqualTo(10L);
+    assertThat(recorder.status.getCode()).isEqualTo(Status.Code.OK);
+  }
+
+  @Test
+  public void testStreamIdsCancelStopsGeneration() throws Exception {
+    final Recorder recorder = new Recorder();
+    final ClientCall<IdCredit, IdBatch> call =
+        channel.newCall(IdMethods.STREAM_IDS, CallOptions.DEFAULT);
+    call.start(recorder, new Metadata());
+    call.request(1);
+    call.sendMessage(IdCredit.newBuilder().setCount(1_000_000).build());
+
+    assertThat(recorder.batches).hasSize(1);
+    final long generated = generated();
+
+    call.cancel("done", null);
+    call.request(Integer.MAX_VALUE);
+
+    assertThat(recorder.status.getCode()).isEqualTo(Status.Code.CANCELLED);
+    assertThat(recorder.batches).hasSize(1);
+    assertThat(generated()).isEqualTo(generated);
+  }
+
+  /**
+   * Number of IDs generated by the worker so far
+   *
+   * @return the number of IDs
+   */
+  private long generated() {
+    return mockingDetails(worker).getInvocations().stream()
+        .filter(invocation -> invocation.getMethod().getName().equals("nextIds"))
+        .mapToLong(invocation -> invocation.<Integer>getArgument(2))
+        .sum();
+  }
+
+  private static final class Recorder extends ClientCall.Listener<IdBatch> {
+    private final List<IdBatch> batches = new ArrayList<>();
+    private Status status;
+
+    @Override
+    public void onMessage(IdBatch message) {
+      batches.add(message);
+    }
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      this.status = status;
+    }
+
+    long received() {
+      return batches.stream().mapToLong(IdBatch::getCount).sum();
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import com.smoketurner.snowizard.exceptions.InvalidSystemClock;
+import com.smoketurner.snowizard.grpc.protos.SnowizardResponse;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AsciiString;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdHttpHandlerTest {
+
+  private static final String AGENT = "test-agent";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private final IdWorker worker = mock(IdWorker.class);
+  private final EmbeddedChannel channel =
+      new EmbeddedChannel(new IdHttpHandler(worker, AgentRateLimiter.unlimited()));
+  private FullHttpResponse response;
+
+  @Before
+  public void setUp() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+    when(worker.getId(AGENT)).thenReturn(1234L);
+  }
+
+  @After
+  public void tearDown() {
+    if (response != null) {
+      response.release();
+    }
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testText() throws Exception {
+    response = get("/", AGENT, null);
+    assertThat(response.status().code()).isEqualTo(200);
+    assertThat(response.headers().get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("text/plain");
+    assertThat(body()).isEqualTo("1234");
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    response = get("/", AGENT, "application/json");
+    assertThat(response.status().code()).isEqualTo(200);
+    assertThat(response.headers().get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("application/json");
+    assertThat(body()).isEqualTo("{\"id\":1234,\"id_str\":\"1234\"}");
+  }
+
+  @Test
+  public void testProtobuf() throws Exception {
+    response = get("/", AGENT, "application/x-protobuf");
+    assertThat(response.status().code()).isEqualTo(200);
+    assertThat(response.headers().get(HttpHeaderNames.CONTENT_TYPE))
+        .isEqualTo("application/x-protobuf");
+    final SnowizardResponse message =
+        SnowizardResponse.parseFrom(new ByteBufInputStream(response.content()));
+    assertThat(message.getIdList()).containsExactly(1234L);
+  }
+
+  @Test
+  public void testQualityValues() throws Exception {
+    response = get("/", AGENT, "application/x-protobuf;q=0.5, application/json");
+    assertThat(response.headers().get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("application/json");
+  }
+
+  @Test
+  public void testNotAcceptable() throws Exception {
+    response = get("/", AGENT, "image/png, text/plain;q=0");
+    assertThat(response.status().code()).isEqualTo(406);
+    verify(worker, never()).getId(AGENT);
+  }
+
+  @Test
+  public void testNegotiate() throws Exception {
+    assertThat(negotiate(null)).isEqualTo("text/plain");
+    assertThat(negotiate("*/*")).isEqualTo("text/plain");
+    assertThat(negotiate("application/*")).isEqualTo("application/json");
+    assertThat(negotiate("application/JSON; charset=utf-8")).isEqualTo("application/json");
+    assertThat(negotiate("text/plain;q=0, */*")).isEqualTo("application/json");
+    assertThat(negotiate("text/plain;q=0.1, application/x-protobuf;q=0.2"))
+        .isEqualTo("application/x-protobuf");
+    // the accept header of a browser
+    assertThat(negotiate("text/html,application/xml;q=0.9,*/*;q=0.8")).isEqualTo("text/plain");
+    assertThat(negotiate("text/plain;q=abc")).isNull();
+  }
+
+  @Test
+  public void testMissingUserAgent() throws Exception {
+    response = get("/", null, null);
+    assertThat(response.status().code()).isEqualTo(400);
+    assertThat(response.headers().get(HttpHeaderNames.CONTENT_TYPE)).isEqualTo("application/json");
+    final JsonNode error = MAPPER.readTree(body());
+    assertThat(error.get("code").asInt()).isEqualTo(400);
+    assertThat(error.get("message").asText()).isEqualTo("Invalid User-Agent header");
+  }
+
+  @Test
+  public void testErrorMessageIsEscaped() throws Exception {
+    when(worker.getId(AGENT)).thenThrow(new InvalidSystemClock("Clock moved \"backwards\"\n"));
+
+    response = get("/", AGENT, null);
+    assertThat(response.status().code()).isEqualTo(500);
+    final JsonNode error = MAPPER.readTree(body());
+    assertThat(error.get("message").asText()).isEqualTo("Clock moved \"backwards\"\n");
+  }
+
+  @Test
+  public void testKeepAlive() throws Exception {
+    response = get("/", AGENT, null);
+    assertThat(response.headers().get(HttpHeaderNames.CONNECTION)).isEqualTo("keep-alive");
+    assertThat(response.headers().getInt(HttpHeaderNames.CONTENT_LENGTH)).isEqualTo(4);
+    assertThat(channel.isOpen()).isTrue();
+  }
+
+  @Test
+  public void testConnectionClose() throws Exception {
+    final FullHttpRequest request = request("/", AGENT, null);
+    request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+    response = send(request);
+    assertThat(response.status().code()).isEqualTo(200);
+    assertThat(response.headers().contains(HttpHeaderNames.CONNECTION)).isFalse();
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testPing() throws Exception {
+    response = get("/ping", null, null);
+    assertThat(response.status().code()).isEqualTo(200);
+    assertThat(body()).isEqualTo("pong");
+  }
+
+  private static String negotiate(final String accept) {
+    final AsciiString type = IdHttpHandler.negotiate(accept);
+    return type == null ? null : type.toString();
+  }
+
+  private FullHttpResponse get(final String uri, final String agent, final String accept) {
+    return send(request(uri, agent, accept));
+  }
+
+  private static FullHttpRequest request(
+      final String uri, final String agent, final String accept) {
+    final FullHttpRequest request =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+    if (agent != null) {
+      request.headers().set(HttpHeaderNames.USER_AGENT, agent);
+    }
+    if (accept != null) {
+      request.headers().set(HttpHeaderNames.ACCEPT, accept);
+    }
+    return request;
+  }
+
+  private FullHttpResponse send(final FullHttpRequest request) {
+    channel.writeInbound(request);
+    return channel.readOutbound();
+  }
+
+  private String body() {
+    return response.content().toString(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.marshal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedOutputStream;
+import com.smoketurner.snowizard.common.IdLayout;
+import com.smoketurner.snowizard.grpc.protos.Encoding;
+import com.smoketurner.snowizard.grpc.protos.IdRange;
+import com.smoketurner.snowizard.grpc.protos.SnowizardResponse;
+import io.grpc.Drainable;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import org.junit.Test;
+
+public class IdBatchMarshallerTest {
+
+  private static final long TIMESTAMP = IdLayout.TWEPOCH + 1_000_000L;
+
+  // two runs within a millisecond, the second ending at the top of the sequence space
+  private static final long[] IDS = {
+    IdLayout.compose(TIMESTAMP, 1, 2, 0),
+    IdLayout.compose(TIMESTAMP, 1, 2, 1),
+    IdLayout.compose(TIMESTAMP, 1, 2, 2),
+    IdLayout.compose(TIMESTAMP + 1, 1, 2, 4094),
+    IdLayout.compose(TIMESTAMP + 1, 1, 2, 4095),
+    IdLayout.compose(TIMESTAMP + 2, 1, 2, 0)
+  };
+
+  private final IdBatchMarshaller marshaller = IdBatchMarshaller.INSTANCE;
+
+  @Test
+  public void testVarint() throws Exception {
+    final SnowizardResponse.Builder expected = SnowizardResponse.newBuilder();
+    for (final long id : IDS) {
+      expected.addId(id);
+    }
+    assertRoundTrip(Encoding.VARINT, expected.build());
+  }
+
+  @Test
+  public void testFixed64() throws Exception {
+    final SnowizardResponse.Builder expected = SnowizardResponse.newBuilder();
+    for (final long id : IDS) {
+      expected.addFixedId(id);
+    }
+    assertRoundTrip(Encoding.FIXED64, expected.build());
+  }
+
+  @Test
+  public void testDelta() throws Exception {
+    final SnowizardResponse.Builder expected = SnowizardResponse.newBuilder();
+    long previous = 0L;
+    for (final long id : IDS) {
+      expected.addDeltaId(id - previous);
+      previous = id;
+    }
+    assertRoundTrip(Encoding.DELTA, expected.build());
+  }
+
+  @Test
+  public void testRanges() throws Exception {
+    final SnowizardResponse expected =
+        SnowizardResponse.newBuilder()
+            .addRange(range(TIMESTAMP, 0, 2))
+            .addRange(range(TIMESTAMP + 1, 4094, 4095))
+            .addRange(range(TIMESTAMP + 2, 0, 0))
+            .build();
+    assertRoundTrip(Encoding.RANGES, expected);
+  }
+
+  @Test
+  public void testEmptyBatch() throws Exception {
+    for (final Encoding encoding :
+        new Encoding[] {Encoding.VARINT, Encoding.FIXED64, Encoding.DELTA, Encoding.RANGES}) {
+      final IdBatch batch = new IdBatch(new long[0], 0, encoding);
+      assertThat(drain(batch)).isEmpty();
+      assertThat(read(batch)).isEmpty();
+      assertThat(parse(new byte[0]).getCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testOnlyCountedIdsAreWritten() throws Exception {
+    final long[] ids = {1L, 2L, 3L, 4L};
+    final byte[] bytes = drain(new IdBatch(ids, 2, Encoding.VARINT));
+    assertThat(SnowizardResponse.parseFrom(bytes).getIdList()).containsExactly(1L, 2L);
+  }
+
+  @Test
+  public void testParseUnpacked() throws Exception {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+    for (final long id : IDS) {
+      output.writeInt64(SnowizardResponse.ID_FIELD_NUMBER, id);
+    }
+    output.flush();
+    assertThat(parse(buffer.toByteArray()).stream().toArray()).containsExactly(IDS);
+
+    buffer.reset();
+    for (final long id : IDS) {
+      output.writeFixed64(SnowizardResponse.FIXED_ID_FIELD_NUMBER, id);
+    }
+    output.flush();
+    final IdBatch fixed = parse(buffer.toByteArray());
+    assertThat(fixed.getEncoding()).isEqualTo(Encoding.FIXED64);
+    assertThat(fixed.stream().toArray()).containsExactly(IDS);
+
+    buffer.reset();
+    long previous = 0L;
+    for (final long id : IDS) {
+      output.writeUInt64(SnowizardResponse.DELTA_ID_FIELD_NUMBER, id - previous);
+      previous = id;
+    }
+    output.flush();
+    final IdBatch delta = parse(buffer.toByteArray());
+    assertThat(delta.getEncoding()).isEqualTo(Encoding.DELTA);
+    assertThat(delta.stream().toArray()).containsExactly(IDS);
+  }
+
+  @Test
+  public void testParseSkipsUnknownFields() throws Exception {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+    output.writeString(15, "unknown");
+    output.writeInt64(SnowizardResponse.ID_FIELD_NUMBER, 42L);
+    output.flush();
+    assertThat(parse(buffer.toByteArray()).stream().toArray()).containsExactly(42L);
+  }
+
+  @Test
+  public void testParseRejectsInvalidRanges() throws Exception {
+    assertRejected(range(TIMESTAMP, 10, 9));
+    assertRejected(range(TIMESTAMP, -1, 9));
+    assertRejected(range(TIMESTAMP, 0, 4096));
+    assertRejected(range(TIMESTAMP, 0, Integer.MAX_VALUE));
+    assertRejected(range(TIMESTAMP, 0, 0).toBuilder().setDatacenterId(32).build());
+    assertRejected(range(TIMESTAMP, 0, 0).toBuilder().setWorkerId(-1).build());
+  }
+
+  @Test
+  public void testParseRejectsTooManyIds() throws Exception {
+    // 256 full ranges are exactly the most IDs a message may expand to
+    final SnowizardResponse.Builder response = SnowizardResponse.newBuilder();
+    for (int i = 0; i < 256; i++) {
+      response.addRange(range(TIMESTAMP + i, 0, 4095));
+    }
+    assertThat(parse(response.build().toByteArray()).getCount()).isEqualTo(1 << 20);
+
+    response.addRange(range(TIMESTAMP + 256, 0, 0));
+    try {
+      parse(response.build().toByteArray());
+      failBecauseExceptionWasNotThrown(StatusRuntimeException.class);
+    } catch (StatusRuntimeException e) {
+      assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+    }
+  }
+
+  @Test
+  public void testGetIdChecksIndex() throws Exception {
+    final IdBatch batch = new IdBatch(IDS, 2, Encoding.VARINT);
+
+    assertThat(batch.getId(1)).isEqualTo(IDS[1]);
+    assertThatThrownBy(() -> batch.getId(2)).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> batch.getId(-1)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  public void testParseRejectsMalformedInput() throws Exception {
+    // a packed id field claiming more bytes than follow
+    try {
+      parse(new byte[] {0x0a, 0x10, 0x01});
+      failBecauseExceptionWasNotThrown(StatusRuntimeException.class);
+    } catch (StatusRuntimeException e) {
+      assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INTERNAL);
+    }
+  }
+
+  private void assertRoundTrip(final Encoding encoding, final SnowizardResponse expected)
+      throws Exception {
+    final IdBatch batch = new IdBatch(IDS.clone(), IDS.length, encoding);
+
+    // gRPC drains the stream into its buffers, but it must also work as a plain stream
+    final byte[] drained = drain(batch);
+    assertThat(drained).isEqualTo(expected.toByteArray());
+    assertThat(SnowizardResponse.parseFrom(drained)).isEqualTo(expected);
+    assertThat(read(batch)).isEqualTo(expected.toByteArray());
+
+    final IdBatch parsed = parse(expected.toByteArray());
+    assertThat(parsed.getEncoding()).isEqualTo(encoding);
+    assertThat(parsed.getCount()).isEqualTo(IDS.length);
+    assertThat(parsed.stream().toArray()).containsExactly(IDS);
+  }
+
+  private void assertRejected(final IdRange range) {
+    final byte[] bytes = SnowizardResponse.newBuilder().addRange(range).build().toByteArray();
+    try {
+      parse(bytes);
+      failBecauseExceptionWasNotThrown(StatusRuntimeException.class);
+    } catch (StatusRuntimeException e) {
+      assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.INTERNAL);
+    }
+  }
+
+  private static IdRange range(final long timestamp, final int first, final int last) {
+    return IdRange.newBuilder()
+        .setTimestamp(timestamp)
+        .setDatacenterId(1)
+        .setWorkerId(2)
+        .setFirstSequence(first)
+        .setLastSequence(last)
+        .build();
+  }
+
+  private byte[] drain(final IdBatch batch) throws Exception {
+    final InputStream stream = marshaller.stream(batch);
+    assertThat(stream).isInstanceOf(Drainable.class);
+    final int available = stream.available();
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    assertThat(((Drainable) stream).drainTo(buffer)).isEqualTo(available);
+    return buffer.toByteArray();
+  }
+
+  private byte[] read(final IdBatch batch) throws Exception {
+    return ByteStreams.toByteArray(marshaller.stream(batch));
+  }
+
+  private IdBatch parse(final byte[] bytes) {
+    return marshaller.parse(new ByteArrayInputStream(bytes));
+  }
+}
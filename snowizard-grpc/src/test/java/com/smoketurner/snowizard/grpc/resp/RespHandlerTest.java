@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.resp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.redis.ArrayRedisMessage;
+import io.netty.handler.codec.redis.FullBulkStringRedisMessage;
+import io.netty.handler.codec.redis.RedisArrayAggregator;
+import io.netty.handler.codec.redis.RedisBulkStringAggregator;
+import io.netty.handler.codec.redis.RedisDecoder;
+import io.netty.handler.codec.redis.RedisEncoder;
+import io.netty.handler.codec.redis.RedisMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class RespHandlerTest {
+
+  private final EmbeddedChannel channel =
+      new EmbeddedChannel(
+          new RedisEncoder(), new RespHandler(mock(IdWorker.class), AgentRateLimiter.unlimited()));
+
+  @Test
+  public void testUnknownCommand() throws Exception {
+    assertThat(send("FOO")).isEqualTo("-ERR unknown command 'FOO'\r\n");
+  }
+
+  @Test
+  public void testUnknownCommandControlCharactersAreReplaced() throws Exception {
+    assertThat(send("FOO\r\n+OK\u0000")).isEqualTo("-ERR unknown command 'FOO  +OK '\r\n");
+  }
+
+  @Test
+  public void testUnknownCommandIsTruncated() throws Exception {
+    final StringBuilder command = new StringBuilder();
+    for (int i = 0; i < RespHandler.MAX_ECHOED_LENGTH; i++) {
+      command.append('A');
+    }
+    final String echoed = command.toString();
+    command.append("\r\nBBB");
+
+    assertThat(send(command.toString())).isEqualTo("-ERR unknown command '" + echoed + "'\r\n");
+  }
+
+  @Test
+  public void testPing() throws Exception {
+    assertThat(send("PING")).isEqualTo("+PONG\r\n");
+  }
+
+  @Test
+  public void testTooManyArgumentsClosesConnection() throws Exception {
+    final EmbeddedChannel channel = newServerChannel();
+    channel.writeInbound(ascii("*2147483647\r\n$6\r\nNEXTID\r\n"));
+
+    assertThat(readReply(channel)).isEqualTo("-ERR Protocol error: invalid multibulk length\r\n");
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testArgumentTooLongClosesConnection() throws Exception {
+    final EmbeddedChannel channel = newServerChannel();
+    channel.writeInbound(ascii("*2\r\n$4\r\nPING\r\n$100000\r\nAAAA"));
+
+    assertThat(readReply(channel)).isEqualTo("-ERR Protocol error: invalid bulk length\r\n");
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testCommandWithinLimits() throws Exception {
+    final EmbeddedChannel channel = newServerChannel();
+    channel.writeInbound(ascii("*2\r\n$4\r\nPING\r\n$5\r\nhello\r\n"));
+
+    assertThat(readReply(channel)).isEqualTo("$5\r\nhello\r\n");
+    assertThat(channel.isOpen()).isTrue();
+    channel.finishAndReleaseAll();
+  }
+
+  /**
+   * Create a channel with the pipeline of the RESP server, which decodes raw bytes
+   *
+   * @return channel
+   */
+  private static EmbeddedChannel newServerChannel() {
+    return new EmbeddedChannel(
+        new RedisDecoder(),
+        new RedisEncoder(),
+        new RespLimitHandler(),
+        new RedisBulkStringAggregator(),
+        new RedisArrayAggregator(),
+        new RespHandler(mock(IdWorker.class), AgentRateLimiter.unlimited()));
+  }
+
+  private static ByteBuf ascii(final String value) {
+    return Unpooled.copiedBuffer(value, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Send a command and return the encoded reply
+   *
+   * @param args Command and arguments
+   * @return reply as written to the connection
+   */
+  private String send(final String... args) {
+    final List<RedisMessage> children = new ArrayList<>(args.length);
+    for (final String arg : args) {
+      children.add(
+          new FullBulkStringRedisMessage(
+              ByteBufUtil.writeUtf8(UnpooledByteBufAllocator.DEFAULT, arg)));
+    }
+    channel.writeInbound(new ArrayRedisMessage(children));
+    return readReply(channel);
+  }
+
+  /**
+   * Read everything written to a channel
+   *
+   * @param channel Channel
+   * @return reply as written to the connection
+   */
+  private static String readReply(final EmbeddedChannel channel) {
+    final StringBuilder reply = new StringBuilder();
+    ByteBuf buf;
+    while ((buf = channel.readOutbound()) != null) {
+      reply.append(buf.toString(StandardCharsets.UTF_8));
+      buf.release();
+    }
+    return reply.toString();
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.thrift;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.smoketurner.snowizard.core.IdWorker;
+import com.smoketurner.snowizard.core.limits.AgentRateLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnowflakeHandlerTest {
+
+  private static final String AGENT = "test-agent";
+  private final IdWorker worker = mock(IdWorker.class);
+  private final EmbeddedChannel channel =
+      new EmbeddedChannel(new SnowflakeHandler(worker, AgentRateLimiter.unlimited()));
+
+  @Before
+  public void setUp() throws Exception {
+    when(worker.isValidUserAgent(AGENT)).thenReturn(true);
+    when(worker.getId(AGENT)).thenReturn(1234L);
+    when(worker.getWorkerId()).thenReturn(1L);
+  }
+
+  @After
+  public void tearDown() {
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testGetIdStrictHeader() throws Exception {
+    final ByteBuf call = Unpooled.buffer();
+    ThriftBinary.writeHeader(call, "get_id", ThriftBinary.CALL, 7);
+    writeUserAgent(call, AGENT);
+    channel.writeInbound(call);
+
+    assertI64Reply(channel.readOutbound(), "get_id", 7, 1234L);
+  }
+
+  @Test
+  public void testGetIdOldHeader() throws Exception {
+    final ByteBuf call = Unpooled.buffer();
+    final byte[] name = "get_id".getBytes(StandardCharsets.UTF_8);
+    call.writeInt(name.length);
+    call.writeBytes(name);
+    call.writeByte(ThriftBinary.CALL);
+    call.writeInt(7);
+    writeUserAgent(call, AGENT);
+    channel.writeInbound(call);
+
+    assertI64Reply(channel.readOutbound(), "get_id", 7, 1234L);
+  }
+
+  @Test
+  public void testGetIdWithoutUserAgent() throws Exception {
+    final ByteBuf call = Unpooled.buffer();
+    ThriftBinary.writeHeader(call, "get_id", ThriftBinary.CALL, 7);
+    call.writeByte(ThriftBinary.STOP);
+    channel.writeInbound(call);
+
+    assertException(
+        channel.readOutbound(), "get_id", 7, ThriftBinary.INTERNAL_ERROR, "Invalid User-Agent");
+  }
+
+  @Test
+  public void testGetWorkerId() throws Exception {
+    channel.writeInbound(call("get_worker_id", ThriftBinary.CALL, 3));
+
+    assertI64Reply(channel.readOutbound(), "get_worker_id", 3, 1L);
+  }
+
+  @Test
+  public void testUnknownMethod() throws Exception {
+    channel.writeInbound(call("get_foo", ThriftBinary.CALL, 3));
+
+    assertException(
+        channel.readOutbound(),
+        "get_foo",
+        3,
+        ThriftBinary.UNKNOWN_METHOD,
+        "Invalid method name: 'get_foo'");
+    assertThat(channel.isOpen()).isTrue();
+  }
+
+  @Test
+  public void testOnewayHasNoReply() throws Exception {
+    final ByteBuf call = Unpooled.buffer();
+    ThriftBinary.writeHeader(call, "get_id", ThriftBinary.ONEWAY, 7);
+    writeUserAgent(call, AGENT);
+    channel.writeInbound(call);
+
+    verify(worker).getId(AGENT);
+    assertThat((Object) channel.readOutbound()).isNull();
+    assertThat(channel.isOpen()).isTrue();
+  }
+
+  @Test
+  public void testTruncatedCallClosesConnection() throws Exception {
+    final ByteBuf call = call("get_id", ThriftBinary.CALL, 7);
+    channel.writeInbound(call.retainedSlice(0, call.readableBytes() - 6));
+    call.release();
+
+    assertThat((Object) channel.readOutbound()).isNull();
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testNegativeNameLengthClosesConnection() throws Exception {
+    final ByteBuf call = Unpooled.buffer();
+    call.writeInt(0x80010000 | ThriftBinary.CALL);
+    call.writeInt(-1);
+    call.writeInt(7);
+    channel.writeInbound(call);
+
+    assertThat((Object) channel.readOutbound()).isNull();
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testNegativeSkippedStringLengthClosesConnection() throws Exception {
+    final ByteBuf call = Unpooled.buffer();
+    ThriftBinary.writeHeader(call, "get_id", ThriftBinary.CALL, 7);
+    call.writeByte(ThriftBinary.STRING);
+    call.writeShort(2);
+    call.writeInt(-1);
+    call.writeByte(ThriftBinary.STOP);
+    channel.writeInbound(call);
+
+    assertThat((Object) channel.readOutbound()).isNull();
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void testPipelinedCallsAnsweredInOrder() throws Exception {
+    when(worker.getId(AGENT)).thenReturn(1L, 2L, 3L);
+    final ByteBuf[] calls = new ByteBuf[3];
+    for (int i = 0; i < calls.length; i++) {
+      calls[i] = Unpooled.buffer();
+      ThriftBinary.writeHeader(calls[i], "get_id", ThriftBinary.CALL, i + 1);
+      writeUserAgent(calls[i], AGENT);
+    }
+    channel.writeInbound((Object[]) calls);
+
+    for (int i = 1; i <= calls.length; i++) {
+      assertI64Reply(channel.readOutbound(), "get_id", i, i);
+    }
+  }
+
+  private static ByteBuf call(final String name, final byte type, final int seqId) {
+    final ByteBuf call = Unpooled.buffer();
+    ThriftBinary.writeHeader(call, name, type, seqId);
+    call.writeByte(ThriftBinary.STOP);
+    return call;
+  }
+
+  private static void writeUserAgent(final ByteBuf call, final String agent) {
+    final byte[] bytes = agent.getBytes(StandardCharsets.UTF_8);
+    call.writeByte(ThriftBinary.STRING);
+    call.writeShort(1);
+    call.writeInt(bytes.length);
+    call.writeBytes(bytes);
+    call.writeByte(ThriftBinary.STOP);
+  }
+
+  private static void assertI64Reply(
+      final ByteBuf reply, final String name, final int seqId, final long value) {
+    try {
+      final ThriftBinary.Header header = ThriftBinary.readHeader(reply);
+      assertThat(header.name).isEqualTo(name);
+      assertThat(header.type).isEqualTo(ThriftBinary.REPLY);
+      assertThat(header.seqId).isEqualTo(seqId);
+      assertThat(reply.readByte()).isEqualTo(ThriftBinary.I64);
+      assertThat(reply.readShort()).isEqualTo((short) 0);
+      assertThat(reply.readLong()).isEqualTo(value);
+      assertThat(reply.readByte()).isEqualTo(ThriftBinary.STOP);
+      assertThat(reply.isReadable()).isFalse();
+    } finally {
+      reply.release();
+    }
+  }
+
+  private static void assertException(
+      final ByteBuf reply,
+      final String name,
+      final int seqId,
+      final int type,
+      final String message) {
+    try {
+      final ThriftBinary.Header header = ThriftBinary.readHeader(reply);
+      assertThat(header.name).isEqualTo(name);
+      assertThat(header.type).isEqualTo(ThriftBinary.EXCEPTION);
+      assertThat(header.seqId).isEqualTo(seqId);
+      assertThat(reply.readByte()).isEqualTo(ThriftBinary.STRING);
+      assertThat(reply.readShort()).isEqualTo((short) 1);
+      assertThat(ThriftBinary.readString(reply)).isEqualTo(message);
+      assertThat(reply.readByte()).isEqualTo(ThriftBinary.I32);
+      assertThat(reply.readShort()).isEqualTo((short) 2);
+      assertThat(reply.readInt()).isEqualTo(type);
+      assertThat(reply.readByte()).isEqualTo(ThriftBinary.STOP);
+    } finally {
+      reply.release();
+    }
+  }
+}
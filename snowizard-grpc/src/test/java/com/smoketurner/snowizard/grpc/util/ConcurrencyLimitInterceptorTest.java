@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.smoketurner.snowizard.core.limits.AdaptiveConcurrencyLimiter;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class ConcurrencyLimitInterceptorTest {
+
+  private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10);
+  private final ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(limiter);
+  private final List<ServerCall<Object, Object>> started = new ArrayList<>();
+  private final ServerCallHandler<Object, Object> next =
+      (call, headers) -> {
+        started.add(call);
+        return new ServerCall.Listener<Object>() {};
+      };
+
+  @Test
+  public void testShedsUnaryCallsAboveLimit() throws Exception {
+    final ServerCall<Object, Object> first = call(MethodType.UNARY);
+    final ServerCall<Object, Object> second = call(MethodType.UNARY);
+
+    interceptor.interceptCall(first, new Metadata(), next);
+    interceptor.interceptCall(second, new Metadata(), next);
+
+    assertThat(started).hasSize(1);
+    assertThat(limiter.getInflight()).isEqualTo(1);
+    verify(second).close(argThat(s -> s.getCode() == Status.Code.UNAVAILABLE), any());
+
+    started.get(0).close(Status.OK, new Metadata());
+    assertThat(limiter.getInflight()).isEqualTo(0);
+  }
+
+  @Test
+  public void testPassesClientStreamingCallsThrough() throws Exception {
+    final ServerCall<Object, Object> stream = call(MethodType.BIDI_STREAMING);
+    interceptor.interceptCall(stream, new Metadata(), next);
+    interceptor.interceptCall(call(MethodType.BIDI_STREAMING), new Metadata(), next);
+
+    assertThat(started).hasSize(2);
+    assertThat(started.get(0)).isSameAs(stream);
+    assertThat(limiter.getInflight()).isEqualTo(0);
+
+    // an open stream does not take the permit a unary call needs
+    final ServerCall<Object, Object> unary = call(MethodType.UNARY);
+    interceptor.interceptCall(unary, new Metadata(), next);
+    assertThat(started).hasSize(3);
+    verify(unary, never()).close(any(), any());
+  }
+
+  @Test
+  public void testSlowServerStreamingCallDoesNotLowerLimit() throws Exception {
+    final AtomicLong clock = new AtomicLong();
+    final AdaptiveConcurrencyLimiter limiter =
+        new AdaptiveConcurrencyLimiter(6, 1, 100) {
+          @Override
+          public long nanoTime() {
+            return clock.get();
+          }
+        };
+    final ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(limiter);
+
+    // record a 1ms baseline
+    interceptor.interceptCall(call(MethodType.UNARY), new Metadata(), next);
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    started.get(0).close(Status.OK, new Metadata());
+
+    // keep enough calls in flight for the limit to be adjusted
+    interceptor.interceptCall(call(MethodType.UNARY), new Metadata(), next);
+    interceptor.interceptCall(call(MethodType.UNARY), new Metadata(), next);
+
+    interceptor.interceptCall(call(MethodType.SERVER_STREAMING), new Metadata(), next);
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    started.get(3).close(Status.OK, new Metadata());
+
+    assertThat(limiter.getInflight()).isEqualTo(2);
+    assertThat(limiter.getLimit()).isEqualTo(6);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ServerCall<Object, Object> call(final MethodType type) {
+    final MethodDescriptor.Marshaller<Object> marshaller = mock(MethodDescriptor.Marshaller.class);
+    final MethodDescriptor<Object, Object> method =
+        MethodDescriptor.newBuilder(marshaller, marshaller)
+            .setType(type)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName("test.Test", "Call"))
+            .build();
+    final ServerCall<Object, Object> call = mock(ServerCall.class);
+    when(call.getMethodDescriptor()).thenReturn(method);
+    return call;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.grpc.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assume.assumeTrue;
+
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.channel.unix.Socket;
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NettyTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    assumeTrue(Epoll.isAvailable());
+    file = new File(folder.getRoot(), "test.sock");
+  }
+
+  @Test
+  public void testMissingSocket() throws Exception {
+    assertThat(Netty.bindableDomainSocket(file.getPath()).path()).isEqualTo(file.getPath());
+  }
+
+  @Test
+  public void testRemovesStaleSocket() throws Exception {
+    // closing a socket leaves its file behind
+    listen().close();
+    assertThat(file).exists();
+
+    Netty.bindableDomainSocket(file.getPath());
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void testKeepsSocketInUse() throws Exception {
+    final Socket socket = listen();
+    try {
+      assertThatThrownBy(() -> Netty.bindableDomainSocket(file.getPath()))
+          .isInstanceOf(IOException.class)
+          .hasMessage("Another process is already listening on " + file.getPath());
+      assertThat(file).exists();
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testKeepsOtherFiles() throws Exception {
+    assertThat(file.createNewFile()).isTrue();
+
+    assertThatThrownBy(() -> Netty.bindableDomainSocket(file.getPath()))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Refusing to replace " + file.getPath() + ", which is not a socket");
+    assertThat(file).exists();
+  }
+
+  private Socket listen() throws IOException {
+    final Socket socket = Socket.newSocketDomain();
+    socket.bind(new DomainSocketAddress(file));
+    socket.listen(1);
+    return socket;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Claims IDs published by a Snowizard process into a memory-mapped ring. Claiming is a
+ * compare-and-set on the shared read index, without any system calls, so a reader may be shared by
+ * any number of threads in the consumer process.
+ *
+ * <p>The ring only holds what the producer has published ahead of demand, so callers must handle it
+ * running dry, e.g. by falling back to a network client.
+ */
+public class IdRingReader implements Closeable {
+
+  /** Returned by {@link #next()} when the ring is empty, as IDs are never negative */
+  public static final long EMPTY = -1L;
+
+  private final RingFile ring;
+
+  private IdRingReader(final RingFile ring) {
+    this.ring = ring;
+  }
+
+  /**
+   * Map a ring created by a Snowizard process
+   *
+   * @param path Ring file
+   * @return a reader for the ring
+   * @throws IOException if unable to map the file, or it does not hold a valid ring
+   */
+  public static IdRingReader open(final Path path) throws IOException {
+    return new IdRingReader(RingFile.open(path));
+  }
+
+  /** @return the number of IDs which can currently be claimed */
+  public int getAvailable() {
+    return (int) Math.max(0L, ring.getWriteIndex() - ring.getReadIndex());
+  }
+
+  /**
+   * Claim the next ID
+   *
+   * @return the ID, or {@link #EMPTY} if the ring is empty
+   */
+  public long next() {
+    while (true) {
+      final long read = ring.getReadIndex();
+      if (read >= ring.getWriteIndex()) {
+        return EMPTY;
+      }
+      // the slot cannot be overwritten until the read index moves past it, so the value read
+      // here is only ours to keep if the read index has not moved in the meantime
+      final long id = ring.getSlot(read);
+      if (ring.compareAndSetReadIndex(read, read + 1)) {
+        return id;
+      }
+    }
+  }
+
+  /**
+   * Claim up to {@code length} IDs
+   *
+   * @param ids Array to fill
+   * @param offset Index of the first ID to write
+   * @param length Maximum number of IDs to claim
+   * @return the number of IDs claimed, or 0 if the ring is empty
+   */
+  public int next(final long[] ids, final int offset, final int length) {
+    while (true) {
+      final long read = ring.getReadIndex();
+      final int count = (int) Math.min(length, ring.getWriteIndex() - read);
+      if (count <= 0) {
+        return 0;
+      }
+      for (int i = 0; i < count; i++) {
+        ids[offset + i] = ring.getSlot(read + i);
+      }
+      if (ring.compareAndSetReadIndex(read, read + count)) {
+        return count;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    ring.close();
+  }
+}
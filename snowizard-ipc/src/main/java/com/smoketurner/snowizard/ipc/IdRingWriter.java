@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publishes IDs into a memory-mapped ring for one consumer process to claim with {@link
+ * IdRingReader}. Each ring must have exactly one writer, and a writer must only be used from one
+ * thread at a time.
+ *
+ * <p>A writer holds an exclusive lock on {@code <ring>.lock} next to the ring file until it is
+ * closed, so a second writer for the same ring fails to start instead of corrupting it. The lock
+ * file is left in place, as deleting it would let two writers lock different files.
+ */
+public class IdRingWriter implements Closeable {
+
+  private final RingFile ring;
+  private final FileChannel lock;
+  private long writeIndex;
+
+  private IdRingWriter(final RingFile ring, final FileChannel lock) {
+    this.ring = ring;
+    this.lock = lock;
+    this.writeIndex = ring.getWriteIndex();
+  }
+
+  /**
+   * Create a ring file, or take over an existing one of the same capacity
+   *
+   * @param path Ring file
+   * @param capacity Number of IDs the ring can hold, a power of two
+   * @return a writer for the ring
+   * @throws IOException if another writer is using the ring, or unable to create or map the file
+   */
+  public static IdRingWriter create(final Path path, final int capacity) throws IOException {
+    final FileChannel lock = lock(path);
+    try {
+      return new IdRingWriter(RingFile.create(path, capacity), lock);
+    } catch (final IOException | RuntimeException e) {
+      lock.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Take the writer lock of a ring
+   *
+   * @param path Ring file
+   * @return the locked lock file, which releases the lock when closed
+   * @throws IOException if another writer holds the lock
+   */
+  private static FileChannel lock(final Path path) throws IOException {
+    final FileChannel channel =
+        FileChannel.open(
+            path.resolveSibling(path.getFileName() + ".lock"),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+    try {
+      if (channel.tryLock() != null) {
+        return channel;
+      }
+    } catch (final OverlappingFileLockException e) {
+      // held by another writer in this process
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    channel.close();
+    throw new IOException("Another writer is using ring " + path);
+  }
+
+  /** @return the number of IDs the ring can hold */
+  public int getCapacity() {
+    return ring.capacity();
+  }
+
+  /** @return the number of published IDs which have not been claimed yet */
+  public int getAvailable() {
+    return (int) (writeIndex - ring.getReadIndex());
+  }
+
+  /** @return the number of IDs which can be published without overwriting unclaimed ones */
+  public int getFree() {
+    return ring.capacity() - getAvailable();
+  }
+
+  /**
+   * Publish IDs to consumers
+   *
+   * @param ids IDs to publish
+   * @param offset Index of the first ID to publish
+   * @param length Number of IDs to publish, at most {@link #getFree()}
+   * @throws IllegalStateException if the ring does not have room for all of the IDs
+   */
+  public void publish(final long[] ids, final int offset, final int length) {
+    if (length > getFree()) {
+      throw new IllegalStateException("Ring does not have room for " + length + " IDs");
+    }
+    for (int i = 0; i < length; i++) {
+      ring.setSlot(writeIndex + i, ids[offset + i]);
+    }
+    writeIndex += length;
+    ring.setWriteIndex(writeIndex);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      ring.close();
+    } finally {
+      lock.close();
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.ipc;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Layout of a memory-mapped ID ring shared by one producer and the threads of one consumer process.
+ * All fields are in native byte order:
+ *
+ * <pre>
+ * 0    int   magic
+ * 4    int   version
+ * 8    int   capacity (a power of two)
+ * 64   long  write index, the number of IDs ever published
+ * 128  long  read index, the number of IDs ever claimed
+ * 192  long[capacity] slots
+ * </pre>
+ *
+ * <p>The indexes sit on separate cache lines so the producer and consumers do not false-share, and
+ * slot {@code i} holds the ID published at index {@code i & (capacity - 1)}.
+ */
+final class RingFile {
+
+  static final int MAGIC = 0x534e5752; // "SNWR"
+  static final int VERSION = 1;
+  static final int MIN_CAPACITY = 64;
+  static final int MAX_CAPACITY = 1 << 24;
+
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 4;
+  private static final int CAPACITY_OFFSET = 8;
+  private static final int WRITE_OFFSET = 64;
+  private static final int READ_OFFSET = 128;
+  private static final int SLOTS_OFFSET = 192;
+
+  private static final VarHandle INT =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+  private static final VarHandle LONG =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final int mask;
+
+  private RingFile(final FileChannel channel, final MappedByteBuffer buffer, final int capacity) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Map an existing ring, or create a new empty one if the file is missing, invalid or was created
+   * with a different capacity
+   *
+   * @param path Ring file
+   * @param capacity Number of slots
+   * @return the mapped ring
+   * @throws IOException if unable to create or map the file
+   */
+  static RingFile create(final Path path, final int capacity) throws IOException {
+    if (capacity < MIN_CAPACITY || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "capacity must be a power of two between %d and %d", MIN_CAPACITY, MAX_CAPACITY));
+    }
+
+    final long size = SLOTS_OFFSET + (long) capacity * Long.BYTES;
+    if (Files.exists(path)) {
+      try {
+        final RingFile existing = open(path);
+        if (existing.capacity == capacity) {
+          // keep the IDs a previous producer published but no consumer claimed yet
+          return existing;
+        }
+        existing.close();
+      } catch (final IOException e) {
+        // not a ring, so replace it below
+      }
+    }
+
+    // replace rather than truncate the file, as consumers still mapping it would fault
+    Files.deleteIfExists(path);
+    final FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      // the file is extended with zeros, which leaves both indexes at 0
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      INT.set(buffer, VERSION_OFFSET, VERSION);
+      INT.set(buffer, CAPACITY_OFFSET, capacity);
+      // publish the magic last so consumers never see a half-written header
+      INT.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+      return new RingFile(channel, buffer, capacity);
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Map an existing ring
+   *
+   * @param path Ring file
+   * @return the mapped ring
+   * @throws IOException if unable to map the file, or it does not hold a valid ring
+   */
+  static RingFile open(final Path path) throws IOException {
+    final FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      final long size = channel.size();
+      if (size < SLOTS_OFFSET) {
+        throw new IOException("Not a Snowizard ID ring: " + path);
+      }
+      final RingFile ring = map(channel, size);
+      if (!ring.isValid()
+          || ring.capacity < MIN_CAPACITY
+          || ring.capacity > MAX_CAPACITY
+          || Integer.bitCount(ring.capacity) != 1
+          || size != SLOTS_OFFSET + (long) ring.capacity * Long.BYTES) {
+        throw new IOException("Not a Snowizard ID ring: " + path);
+      }
+      return ring;
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static RingFile map(final FileChannel channel, final long size) throws IOException {
+    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    return new RingFile(channel, buffer, (int) INT.get(buffer, CAPACITY_OFFSET));
+  }
+
+  private boolean isValid() {
+    return (int) INT.getAcquire(buffer, MAGIC_OFFSET) == MAGIC
+        && (int) INT.get(buffer, VERSION_OFFSET) == VERSION;
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  long getWriteIndex() {
+    return (long) LONG.getAcquire(buffer, WRITE_OFFSET);
+  }
+
+  void setWriteIndex(final long index) {
+    LONG.setRelease(buffer, WRITE_OFFSET, index);
+  }
+
+  long getReadIndex() {
+    return (long) LONG.getAcquire(buffer, READ_OFFSET);
+  }
+
+  boolean compareAndSetReadIndex(final long expected, final long index) {
+    return LONG.compareAndSet(buffer, READ_OFFSET, expected, index);
+  }
+
+  long getSlot(final long index) {
+    return (long) LONG.getOpaque(buffer, slotOffset(index));
+  }
+
+  void setSlot(final long index, final long id) {
+    LONG.setOpaque(buffer, slotOffset(index), id);
+  }
+
+  private int slotOffset(final long index) {
+    return SLOTS_OFFSET + (int) (index & mask) * Long.BYTES;
+  }
+
+  void close() throws IOException {
+    // the mapping itself is released once the buffer is garbage collected
+    channel.close();
+  }
+}
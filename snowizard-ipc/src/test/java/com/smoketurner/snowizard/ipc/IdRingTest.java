@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2013, General Electric Corporation
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smoketurner.snowizard.ipc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IdRingTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testPublishAndClaim() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try (IdRingWriter writer = IdRingWriter.create(path, 64);
+        IdRingReader reader = IdRingReader.open(path)) {
+      assertThat(reader.next()).isEqualTo(IdRingReader.EMPTY);
+
+      writer.publish(new long[] {1L, 2L, 3L, 4L}, 0, 4);
+      assertThat(writer.getAvailable()).isEqualTo(4);
+      assertThat(writer.getFree()).isEqualTo(60);
+      assertThat(reader.getAvailable()).isEqualTo(4);
+
+      assertThat(reader.next()).isEqualTo(1L);
+      final long[] ids = new long[10];
+      assertThat(reader.next(ids, 1, 10 - 1)).isEqualTo(3);
+      assertThat(ids).startsWith(0L, 2L, 3L, 4L);
+      assertThat(reader.next()).isEqualTo(IdRingReader.EMPTY);
+      assertThat(reader.next(ids, 0, 10)).isEqualTo(0);
+      assertThat(writer.getFree()).isEqualTo(64);
+    }
+  }
+
+  @Test
+  public void testWrapsAround() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try (IdRingWriter writer = IdRingWriter.create(path, 64);
+        IdRingReader reader = IdRingReader.open(path)) {
+      final long[] ids = new long[50];
+      long next = 0L;
+      for (int round = 0; round < 10; round++) {
+        for (int i = 0; i < ids.length; i++) {
+          ids[i] = next + i;
+        }
+        writer.publish(ids, 0, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+          assertThat(reader.next()).isEqualTo(next++);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFullRingRejectsPublish() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try (IdRingWriter writer = IdRingWriter.create(path, 64)) {
+      writer.publish(new long[64], 0, 64);
+      assertThat(writer.getFree()).isEqualTo(0);
+      try {
+        writer.publish(new long[1], 0, 1);
+        failBecauseExceptionWasNotThrown(IllegalStateException.class);
+      } catch (final IllegalStateException e) {
+        assertThat(e.getMessage()).isEqualTo("Ring does not have room for 1 IDs");
+      }
+    }
+  }
+
+  @Test
+  public void testCreateKeepsUnclaimedIds() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try (IdRingWriter writer = IdRingWriter.create(path, 64)) {
+      writer.publish(new long[] {1L, 2L, 3L}, 0, 3);
+    }
+    try (IdRingReader reader = IdRingReader.open(path)) {
+      assertThat(reader.next()).isEqualTo(1L);
+    }
+
+    try (IdRingWriter writer = IdRingWriter.create(path, 64);
+        IdRingReader reader = IdRingReader.open(path)) {
+      assertThat(writer.getAvailable()).isEqualTo(2);
+      writer.publish(new long[] {4L}, 0, 1);
+      assertThat(reader.next()).isEqualTo(2L);
+      assertThat(reader.next()).isEqualTo(3L);
+      assertThat(reader.next()).isEqualTo(4L);
+    }
+  }
+
+  @Test
+  public void testCreateReplacesRingOfOtherCapacity() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try (IdRingWriter writer = IdRingWriter.create(path, 64)) {
+      writer.publish(new long[] {1L, 2L, 3L}, 0, 3);
+    }
+
+    try (IdRingWriter writer = IdRingWriter.create(path, 128);
+        IdRingReader reader = IdRingReader.open(path)) {
+      assertThat(writer.getCapacity()).isEqualTo(128);
+      assertThat(writer.getAvailable()).isEqualTo(0);
+      assertThat(reader.next()).isEqualTo(IdRingReader.EMPTY);
+    }
+  }
+
+  @Test
+  public void testCreateRejectsInvalidCapacity() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try {
+      IdRingWriter.create(path, 100);
+      failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+    } catch (final IllegalArgumentException e) {
+      assertThat(e.getMessage())
+          .isEqualTo("capacity must be a power of two between 64 and 16777216");
+    }
+  }
+
+  @Test
+  public void testCreateRejectsSecondWriter() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    try (IdRingWriter writer = IdRingWriter.create(path, 64)) {
+      try {
+        IdRingWriter.create(path, 64);
+        failBecauseExceptionWasNotThrown(IOException.class);
+      } catch (final IOException e) {
+        assertThat(e.getMessage()).isEqualTo("Another writer is using ring " + path);
+      }
+    }
+
+    // the lock is released when the writer is closed
+    IdRingWriter.create(path, 64).close();
+  }
+
+  @Test
+  public void testOpenRejectsOtherFiles() throws Exception {
+    final Path path = folder.newFile("test.ring").toPath();
+    Files.write(path, new byte[4096]);
+    try {
+      IdRingReader.open(path);
+      failBecauseExceptionWasNotThrown(IOException.class);
+    } catch (final IOException e) {
+      assertThat(e.getMessage()).isEqualTo("Not a Snowizard ID ring: " + path);
+    }
+  }
+
+  @Test
+  public void testConcurrentReadersClaimEachIdOnce() throws Exception {
+    final Path path = folder.getRoot().toPath().resolve("test.ring");
+    final int total = 100_000;
+    final int threads = 4;
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try (IdRingWriter writer = IdRingWriter.create(path, 1024);
+        IdRingReader reader = IdRingReader.open(path)) {
+      final List<Future<List<Long>>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  final List<Long> claimed = new ArrayList<>();
+                  final long[] batch = new long[8];
+                  while (true) {
+                    final long id = reader.next();
+                    if (id != IdRingReader.EMPTY) {
+                      claimed.add(id);
+                    } else {
+                      final int count = reader.next(batch, 0, batch.length);
+                      for (int i = 0; i < count; i++) {
+                        claimed.add(batch[i]);
+                      }
+                      if (count == 0 && Thread.currentThread().isInterrupted()) {
+                        return claimed;
+                      }
+                    }
+                  }
+                }));
+      }
+
+      final long[] ids = new long[256];
+      long next = 0L;
+      while (next < total) {
+        final int count = (int) Math.min(Math.min(ids.length, writer.getFree()), total - next);
+        for (int i = 0; i < count; i++) {
+          ids[i] = next++;
+        }
+        writer.publish(ids, 0, count);
+      }
+      while (writer.getAvailable() > 0) {
+        Thread.yield();
+      }
+      executor.shutdownNow();
+      assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+      final Set<Long> seen = new HashSet<>();
+      for (final Future<List<Long>> future : futures) {
+        for (final Long id : future.get()) {
+          assertThat(seen.add(id)).isTrue();
+        }
+      }
+      assertThat(seen).hasSize(total);
+    }
+  }
+}